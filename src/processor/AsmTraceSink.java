@@ -0,0 +1,61 @@
+package processor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+
+// Writes the executed instructions as an .asm listing:
+//   Address     Code        Basic
+//   0x00000000  0x00500293  addi x5, x0, 5
+// The file is created on the first record. Lines are batched and written by an
+// AsyncTraceWriter, so they reach the file on flush(), close() or when a buffer fills.
+public class AsmTraceSink implements TraceSink {
+    private static final String HEADER = "Address     Code        Basic\n";
+
+    private final String fileName;
+    private AsyncTraceWriter writer;
+    private final StringBuilder line = new StringBuilder(64);
+
+    public AsmTraceSink(String fileName) {
+        this.fileName = fileName;
+    }
+
+    @Override
+    public void record(int programCounter, DecodedInstruction instruction, int rdValue) throws IOException {
+        if (writer == null) {
+            // Open the file for writing
+            writer = new AsyncTraceWriter(Paths.get(fileName));
+            put(HEADER);
+        }
+        line.setLength(0);
+        Disassembler.appendHex(line, programCounter);
+        line.append("  ");
+        Disassembler.appendHex(line, instruction.instruction);
+        line.append("  ");
+        Disassembler.appendTo(line, instruction);
+        line.append('\n');
+        put(line);
+    }
+
+    // The listing is plain ASCII, so each char is one byte
+    private void put(CharSequence text) throws IOException {
+        ByteBuffer buffer = writer.reserve(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            buffer.put((byte) text.charAt(i));
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package processor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+
+// Writes trace bytes to a file from a background thread. The producer fills large
+// direct buffers and hands each full one to the writer through a bounded queue.
+// When every buffer is waiting to be written, the producer blocks (back-pressure)
+// rather than growing memory. Only one thread may produce; flush() and close()
+// wait for everything handed over so far to reach the file. If the JVM exits
+// before close(), one shared shutdown hook lets each writer thread finish the
+// buffers already handed over. It never touches the buffer being filled, since
+// the producer may still be putting into it, so that last part is lost.
+public class AsyncTraceWriter implements Closeable {
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+    public static final int DEFAULT_QUEUE_DEPTH = 8;
+    private static final ByteBuffer END = ByteBuffer.allocate(0);   // tells the writer thread to stop
+    private static final Set<AsyncTraceWriter> OPEN = new LinkedHashSet<>();  // guarded by itself
+    private static boolean hookAdded;
+
+    private final FileChannel channel;
+    private final ArrayBlockingQueue<ByteBuffer> full;    // filled buffers waiting to be written
+    private final ArrayBlockingQueue<ByteBuffer> free;    // written buffers ready for reuse
+    private final Thread writerThread;
+    private final Object lock = new Object();
+    private ByteBuffer current;
+    private long submitted;             // buffers handed to the writer thread
+    private long written;               // buffers the writer thread has finished, guarded by lock
+    private volatile IOException failure;
+    private volatile boolean exiting;   // the JVM is exiting, stop once the queue is empty
+    private boolean closed;
+
+    public AsyncTraceWriter(Path path) throws IOException {
+        this(path, DEFAULT_BUFFER_SIZE, DEFAULT_QUEUE_DEPTH);
+    }
+
+    public AsyncTraceWriter(Path path, int bufferSize, int queueDepth) throws IOException {
+        if (bufferSize <= 0 || queueDepth <= 0) {
+            throw new IllegalArgumentException("Trace buffer size and queue depth must be positive");
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.full = new ArrayBlockingQueue<>(queueDepth + 1);
+        this.free = new ArrayBlockingQueue<>(queueDepth);
+        for (int i = 0; i < queueDepth; i++) {
+            free.add(ByteBuffer.allocateDirect(bufferSize));
+        }
+        this.current = ByteBuffer.allocateDirect(bufferSize);
+        this.writerThread = new Thread(this::drain, "trace-writer " + path.getFileName());
+        writerThread.setDaemon(true);
+        writerThread.start();
+        synchronized (OPEN) {
+            if (!hookAdded) {
+                Runtime.getRuntime().addShutdownHook(new Thread(AsyncTraceWriter::finishAll, "trace-writer shutdown"));
+                hookAdded = true;
+            }
+            OPEN.add(this);
+        }
+    }
+
+    // Buffer with at least bytes free for the caller to put into; bytes must not
+    // exceed the buffer size
+    public ByteBuffer reserve(int bytes) throws IOException {
+        if (closed) {
+            throw new IOException("Trace writer is closed");
+        }
+        if (current.remaining() < bytes) {
+            submit();
+        }
+        return current;
+    }
+
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            ByteBuffer buffer = reserve(1);
+            int chunk = Math.min(length, buffer.remaining());
+            buffer.put(bytes, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    // Hand the current buffer to the writer thread and wait for everything to be written
+    public void flush() throws IOException {
+        if (closed) {
+            return;
+        }
+        if (current.position() > 0) {
+            submit();
+        }
+        synchronized (lock) {
+            while (written < submitted) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while flushing trace", e);
+                }
+            }
+        }
+        checkFailure();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            closed = true;
+            putQuietly(END);
+            try {
+                writerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            channel.close();
+            synchronized (OPEN) {
+                OPEN.remove(this);
+            }
+        }
+    }
+
+    // Shutdown hook: finish the writers that were never closed
+    private static void finishAll() {
+        List<AsyncTraceWriter> writers;
+        synchronized (OPEN) {
+            writers = new ArrayList<>(OPEN);
+        }
+        for (AsyncTraceWriter writer : writers) {
+            writer.finish();
+        }
+    }
+
+    // Let the writer thread write what it was handed and stop, without taking the
+    // producer's buffer
+    private void finish() {
+        // Interrupting would close the channel under a write; END wakes the writer
+        // thread if it waits, and if the queue is full it is not waiting
+        exiting = true;
+        full.offer(END);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            Log.EXEC.error("ERROR: Could not finish writing the trace: " + failure.getMessage());
+        }
+    }
+
+    private void submit() throws IOException {
+        checkFailure();
+        current.flip();
+        submitted++;
+        putQuietly(current);
+        try {
+            current = free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a trace buffer", e);
+        }
+    }
+
+    private void putQuietly(ByteBuffer buffer) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                full.put(buffer);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Writing trace failed", failure);
+        }
+    }
+
+    // Writer thread: write buffers in order until END arrives, or until the queue
+    // is empty once the JVM is exiting
+    private void drain() {
+        while (true) {
+            ByteBuffer buffer;
+            try {
+                buffer = exiting ? full.poll() : full.take();
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (buffer == null || buffer == END) {
+                return;
+            }
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+            buffer.clear();
+            free.offer(buffer);
+            synchronized (lock) {
+                written++;
+                lock.notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package processor;
+
+import java.io.IOException;
+import java.util.Locale;
+
+// One headless run of a guest program on its own Simulator: load, run until the
+// program halts, hits an unknown instruction or an unhandled trap, the instruction
+// limit or the timeout, then summarize the result in one JSON or CSV line. The
+// limit counts every instruction executed, so those that trap count too; a guest
+// that only traps for a whole timeout check interval, such as a handler that
+// faults itself, stops at LIMIT as well. Nothing here is static, so many runs can
+// share a JVM.
+//
+//   java processor.SimulatorMain --batch <program> [--data <file>] [--limit <instructions>]
+//                                [--timeout <ms>] [--format json|csv]
+public class BatchRun {
+
+    public enum Exit {
+        HALT,       // reached an all-zero instruction
+        ILLEGAL,    // no handler for the instruction
+        TRAP,       // an exception with no trap handler
+        LIMIT,      // instruction limit reached, or stuck taking traps
+        TIMEOUT,    // wall clock limit reached
+        ERROR       // load failure or exception
+    }
+
+    // Fields written to each CSV line, in order
+    public static final String CSV_HEADER = "program,exit,instret,ns,mips,pc,reg_hash,mem_hash,message";
+
+    private static final int TIMEOUT_CHECK_INTERVAL = 4096;   // steps between looks at the clock
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final String programFile;
+    private final String dataFile;           // "" for none
+    private final long instructionLimit;     // Long.MAX_VALUE for none
+    private final long timeoutNanos;         // 0 for none
+
+    public BatchRun(String programFile, String dataFile, long instructionLimit, long timeoutNanos) {
+        this.programFile = programFile;
+        this.dataFile = dataFile == null ? "" : dataFile;
+        this.instructionLimit = instructionLimit;
+        this.timeoutNanos = timeoutNanos;
+    }
+
+    public static final class Result {
+        public final String program;
+        public final Exit exit;
+        public final long instructionsRetired;
+        public final long nanos;            // execution only, loading is not included
+        public final int pc;
+        public final long registerHash;     // FNV-1a of pc and x0..x31
+        public final long memoryHash;       // FNV-1a of every non-zero page and its address
+        public final String message;        // error message, or ""
+
+        Result(String program, Exit exit, long instructionsRetired, long nanos, int pc,
+               long registerHash, long memoryHash, String message) {
+            this.program = program;
+            this.exit = exit;
+            this.instructionsRetired = instructionsRetired;
+            this.nanos = nanos;
+            this.pc = pc;
+            this.registerHash = registerHash;
+            this.memoryHash = memoryHash;
+            this.message = message;
+        }
+
+        // Millions of guest instructions per second of execution
+        public double mips() {
+            return nanos == 0 ? 0 : instructionsRetired * 1e3 / nanos;
+        }
+
+        public String toJson() {
+            return String.format(Locale.ROOT,
+                    "{\"program\":\"%s\",\"exit\":\"%s\",\"instret\":%d,\"ns\":%d,\"mips\":%.3f,"
+                            + "\"pc\":\"%s\",\"reg_hash\":\"%016x\",\"mem_hash\":\"%016x\",\"message\":\"%s\"}",
+                    escapeJson(program), exit.name().toLowerCase(Locale.ROOT), instructionsRetired, nanos, mips(),
+                    Disassembler.hex(pc), registerHash, memoryHash, escapeJson(message));
+        }
+
+        public String toCsv() {
+            return String.format(Locale.ROOT, "%s,%s,%d,%d,%.3f,%s,%016x,%016x,%s",
+                    escapeCsv(program), exit.name().toLowerCase(Locale.ROOT), instructionsRetired, nanos, mips(),
+                    Disassembler.hex(pc), registerHash, memoryHash, escapeCsv(message));
+        }
+    }
+
+    public Result run() {
+        return run(new Simulator());
+    }
+
+    // Run on the given simulator, e.g. a pooled one; it is reset by the load
+    public Result run(Simulator simulator) {
+        Registers registers = simulator.getRegisters();
+        try {
+            simulator.load(programFile, dataFile);
+        } catch (IOException e) {
+            return new Result(programFile, Exit.ERROR, 0, 0, registers.getPc(), 0, 0,
+                    "Could not load file(s): " + e.getMessage());
+        }
+
+        Exit exit;
+        String message = "";
+        long start = System.nanoTime();
+        try {
+            exit = execute(simulator, start);
+        } catch (IOException | RuntimeException e) {
+            exit = Exit.ERROR;
+            message = e.toString();
+        }
+        long nanos = System.nanoTime() - start;
+        return new Result(programFile, exit, simulator.getInstructionsRetired(), nanos, registers.getPc(),
+                registerHash(registers), memoryHash(simulator.getMemory()), message);
+    }
+
+    private Exit execute(Simulator simulator, long start) throws IOException {
+        long steps = 0;
+        while (true) {
+            long remaining = instructionLimit - steps;
+            if (remaining <= 0) {
+                return Exit.LIMIT;
+            }
+            if (timeoutNanos > 0 && System.nanoTime() - start >= timeoutNanos) {
+                return Exit.TIMEOUT;
+            }
+            long retired = simulator.getInstructionsRetired();
+            long count = Math.min(remaining, TIMEOUT_CHECK_INTERVAL);
+            switch (simulator.step(count)) {
+                case HALT:
+                    return Exit.HALT;
+                case ILLEGAL:
+                    return Exit.ILLEGAL;
+                case TRAP:
+                    return Exit.TRAP;
+                default:
+                    break;
+            }
+            steps += count;
+            // A trap loop retires nothing and would otherwise never reach the limit
+            if (count == TIMEOUT_CHECK_INTERVAL && simulator.getInstructionsRetired() == retired) {
+                return Exit.LIMIT;
+            }
+        }
+    }
+
+    public static long registerHash(Registers registers) {
+        long hash = mixInt(FNV_OFFSET, registers.getPc());
+        for (int i = 0; i < 32; i++) {
+            hash = mixInt(hash, registers.getInt(i));
+        }
+        return hash;
+    }
+
+    // Pages are visited in address order and all-zero pages are skipped, so the
+    // hash only depends on the memory contents
+    public static long memoryHash(Memory memory) {
+        long hash = FNV_OFFSET;
+        byte[] page = new byte[Memory.PAGE_SIZE];
+        for (int address : memory.pageAddresses()) {
+            memory.readPage(address, page);
+            if (isZero(page)) {
+                continue;
+            }
+            hash = mixInt(hash, address);
+            for (byte b : page) {
+                hash = (hash ^ (b & 0xFF)) * FNV_PRIME;
+            }
+        }
+        return hash;
+    }
+
+    private static long mixInt(long hash, int value) {
+        for (int shift = 0; shift < 32; shift += 8) {
+            hash = (hash ^ ((value >>> shift) & 0xFF)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static boolean isZero(byte[] page) {
+        for (byte b : page) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String escapeJson(String text) {
+        StringBuilder result = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                result.append('\\').append(c);
+            } else if (c < 0x20) {
+                result.append(String.format("\\u%04x", (int) c));
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    private static String escapeCsv(String text) {
+        if (text.indexOf(',') == -1 && text.indexOf('"') == -1 && text.indexOf('\n') == -1) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+
+    // Parse the batch flags, run once and print the result line. Returns the
+    // process exit status: 0 if the program ran, 1 if it could not be loaded or
+    // failed, 2 on bad usage.
+    static int runCommandLine(String[] args) {
+        String program = null;
+        String data = "";
+        long limit = Long.MAX_VALUE;
+        long timeoutMillis = 0;
+        boolean csv = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--data":
+                        data = Utility.flagValue(args, i++);
+                        break;
+                    case "--limit":
+                        limit = Long.parseLong(Utility.flagValue(args, i++));
+                        break;
+                    case "--timeout":
+                        timeoutMillis = Long.parseLong(Utility.flagValue(args, i++));
+                        break;
+                    case "--format":
+                        String format = Utility.flagValue(args, i++);
+                        if (!format.equals("json") && !format.equals("csv")) {
+                            throw new IllegalArgumentException("Unknown format " + format);
+                        }
+                        csv = format.equals("csv");
+                        break;
+                    default:
+                        if (args[i].startsWith("--") || program != null) {
+                            throw new IllegalArgumentException("Unexpected argument " + args[i]);
+                        }
+                        program = args[i];
+                }
+            }
+            if (program == null) {
+                throw new IllegalArgumentException("No program file given");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("ERROR: " + e.getMessage());
+            System.err.println("Usage: --batch <program> [--data <file>] [--limit <instructions>] [--timeout <ms>] [--format json|csv]");
+            return 2;
+        }
+
+        // Quiet unless the log level was chosen explicitly
+        if (System.getProperty(Log.PROPERTY) == null) {
+            Log.setAll(Log.Level.OFF);
+        }
+        Result result = new BatchRun(program, data, limit, timeoutMillis * 1_000_000L).run();
+        System.out.println(csv ? result.toCsv() : result.toJson());
+        return result.exit == Exit.ERROR ? 1 : 0;
+    }
+}
@@ -0,0 +1,215 @@
+package processor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+// Runs a manifest of guest programs concurrently in one JVM. Every job is a
+// BatchRun scheduled on a work-stealing pool sized to the cores; each worker
+// thread resets and reuses one Simulator for its jobs, and results are handed
+// back as each job completes. The manifest has one job per line,
+// "<program> [<data file> | -] [<instruction limit>]"; blank lines and text
+// after '#' are ignored. Relative paths are taken from the manifest's directory.
+//
+//   java processor.SimulatorMain --manifest <file> [--threads <n>] [--timeout <ms>] [--format json|csv]
+public class BatchRunner {
+
+    public static final class Job {
+        public final String program;
+        public final String data;           // "" for none
+        public final long limit;            // Long.MAX_VALUE for none
+
+        public Job(String program, String data, long limit) {
+            this.program = program;
+            this.data = data;
+            this.limit = limit;
+        }
+    }
+
+    // Totals over every job of a run
+    public static final class Summary {
+        public final Map<BatchRun.Exit, Integer> exits = new EnumMap<>(BatchRun.Exit.class);
+        public int jobs;
+        public long instructionsRetired;
+        public long executionNanos;         // summed over jobs
+        public long wallNanos;
+
+        private void add(BatchRun.Result result) {
+            jobs++;
+            exits.merge(result.exit, 1, Integer::sum);
+            instructionsRetired += result.instructionsRetired;
+            executionNanos += result.nanos;
+        }
+
+        public int count(BatchRun.Exit exit) {
+            return exits.getOrDefault(exit, 0);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder result = new StringBuilder();
+            result.append(jobs).append(" jobs");
+            for (Map.Entry<BatchRun.Exit, Integer> entry : exits.entrySet()) {
+                result.append(", ").append(entry.getValue()).append(' ')
+                        .append(entry.getKey().name().toLowerCase(Locale.ROOT));
+            }
+            result.append(String.format(Locale.ROOT, "; %d instructions in %.3f ms wall, %.3f MIPS aggregate",
+                    instructionsRetired, wallNanos / 1e6, wallNanos == 0 ? 0 : instructionsRetired * 1e3 / wallNanos));
+            return result.toString();
+        }
+    }
+
+    private final int threads;
+    private final long timeoutNanos;        // per job, 0 for none
+    // Each worker reuses one simulator for all of its jobs
+    private final ThreadLocal<Simulator> simulators = ThreadLocal.withInitial(Simulator::new);
+
+    public BatchRunner(int threads, long timeoutNanos) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+        this.threads = threads;
+        this.timeoutNanos = timeoutNanos;
+    }
+
+    public static List<Job> readManifest(Path manifest) throws IOException {
+        Path directory = manifest.toAbsolutePath().getParent();
+        List<Job> jobs = new ArrayList<>();
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(manifest)) {
+            lineNumber++;
+            int comment = line.indexOf('#');
+            if (comment != -1) {
+                line = line.substring(0, comment);
+            }
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] fields = line.split("\\s+");
+            if (fields.length > 3) {
+                throw new IOException(manifest + ":" + lineNumber + ": expected <program> [<data>] [<limit>]");
+            }
+            String data = fields.length > 1 && !fields[1].equals("-") ? resolve(directory, fields[1]) : "";
+            long limit = Long.MAX_VALUE;
+            if (fields.length > 2) {
+                try {
+                    limit = Long.parseLong(fields[2]);
+                } catch (NumberFormatException e) {
+                    throw new IOException(manifest + ":" + lineNumber + ": invalid instruction limit " + fields[2]);
+                }
+            }
+            jobs.add(new Job(resolve(directory, fields[0]), data, limit));
+        }
+        return jobs;
+    }
+
+    private static String resolve(Path directory, String file) {
+        return directory == null ? file : directory.resolve(file).normalize().toString();
+    }
+
+    // Run every job and pass each result to onResult, in completion order and on
+    // the calling thread
+    public Summary run(List<Job> jobs, Consumer<BatchRun.Result> onResult) throws InterruptedException {
+        Summary summary = new Summary();
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            CompletionService<BatchRun.Result> completion = new ExecutorCompletionService<>(pool);
+            for (Job job : jobs) {
+                completion.submit(() -> new BatchRun(job.program, job.data, job.limit, timeoutNanos).run(simulators.get()));
+            }
+            for (int i = 0; i < jobs.size(); i++) {
+                BatchRun.Result result;
+                try {
+                    result = completion.take().get();
+                } catch (ExecutionException e) {
+                    // BatchRun reports its own failures, so this is a bug in the pool itself
+                    throw new IllegalStateException(e.getCause());
+                }
+                summary.add(result);
+                onResult.accept(result);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        summary.wallNanos = System.nanoTime() - start;
+        return summary;
+    }
+
+    // Parse the manifest flags, run the jobs, print one line per result and the
+    // summary on stderr. Returns the process exit status: 0 if every job ran, 1 if
+    // any job failed or the manifest could not be read, 2 on bad usage.
+    static int runCommandLine(String[] args) throws InterruptedException {
+        String manifest = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long timeoutMillis = 0;
+        boolean csv = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--threads":
+                        threads = Integer.parseInt(Utility.flagValue(args, i++));
+                        if (threads < 1) {
+                            throw new IllegalArgumentException("--threads must be at least 1");
+                        }
+                        break;
+                    case "--timeout":
+                        timeoutMillis = Long.parseLong(Utility.flagValue(args, i++));
+                        break;
+                    case "--format":
+                        String format = Utility.flagValue(args, i++);
+                        if (!format.equals("json") && !format.equals("csv")) {
+                            throw new IllegalArgumentException("Unknown format " + format);
+                        }
+                        csv = format.equals("csv");
+                        break;
+                    default:
+                        if (args[i].startsWith("--") || manifest != null) {
+                            throw new IllegalArgumentException("Unexpected argument " + args[i]);
+                        }
+                        manifest = args[i];
+                }
+            }
+            if (manifest == null) {
+                throw new IllegalArgumentException("No manifest file given");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("ERROR: " + e.getMessage());
+            System.err.println("Usage: --manifest <file> [--threads <n>] [--timeout <ms>] [--format json|csv]");
+            return 2;
+        }
+
+        List<Job> jobs;
+        try {
+            jobs = readManifest(Paths.get(manifest));
+        } catch (IOException e) {
+            System.err.println("ERROR: Could not read manifest: " + e.getMessage());
+            return 1;
+        }
+
+        // Quiet unless the log level was chosen explicitly
+        if (System.getProperty(Log.PROPERTY) == null) {
+            Log.setAll(Log.Level.OFF);
+        }
+        if (csv) {
+            System.out.println(BatchRun.CSV_HEADER);
+        }
+        boolean asCsv = csv;
+        Summary summary = new BatchRunner(threads, timeoutMillis * 1_000_000L)
+                .run(jobs, result -> System.out.println(asCsv ? result.toCsv() : result.toJson()));
+        System.err.println(summary);
+        return summary.count(BatchRun.Exit.ERROR) > 0 ? 1 : 0;
+    }
+}
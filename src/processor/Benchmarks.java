@@ -0,0 +1,526 @@
+package processor;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// Benchmarks for the simulator itself, in the style of JMH: every case is
+// calibrated so one iteration takes about --time ms, warmed up, then measured over
+// several iterations and reported as the mean and spread of ns per operation.
+// Suites:
+//   decode     Decoder.decode and Pipeline.machineToAsm
+//   handlers   Instructions handlers called directly
+//   memory     sequential, strided and random loads and stores
+//   e2e        the bundled input_files programs and larger synthetic loops
+// Results are one line per case in a fixed order, as CSV (default) or JSON, so
+// runs of two revisions can be diffed; --baseline <csv> adds the change against
+// an earlier run and lists regressions beyond --threshold percent on stderr.
+//
+//   java processor.Benchmarks [--suite <name>] [--filter <regex>] [--warmup <n>] [--iterations <n>]
+//                             [--time <ms>] [--format csv|json] [--inputs <dir>] [--baseline <csv>]
+//                             [--threshold <pct>]
+public final class Benchmarks {
+
+    public static final String CSV_HEADER =
+            "suite,benchmark,iterations,ops,ns_per_op,error_pct,instr_per_op,ns_per_instr,mips,bytes_per_op";
+
+    private static final int DATA_ADDRESS = Integer.parseUnsignedInt(Utility.DATA_MEMORY_ADDRESS, 2);
+
+    // Keeps results alive so the JIT cannot drop the measured work
+    private static volatile long sink;
+
+    // One benchmark operation repeated ops times; returns a value to consume
+    @FunctionalInterface
+    interface Body {
+        long run(long ops) throws IOException;
+    }
+
+    static final class Case {
+        final String suite;
+        final String name;
+        final long instructionsPerOp;   // guest instructions per operation, 0 if not a guest run
+        final Body body;
+
+        Case(String suite, String name, long instructionsPerOp, Body body) {
+            this.suite = suite;
+            this.name = name;
+            this.instructionsPerOp = instructionsPerOp;
+            this.body = body;
+        }
+    }
+
+    static final class Result {
+        final Case benchmark;
+        final int iterations;
+        final long ops;                 // operations per iteration
+        final double nanosPerOp;
+        final double errorPercent;      // standard deviation over iterations, relative to the mean
+        final double bytesPerOp;        // allocated on the benchmark thread, -1 if unknown
+        double changePercent = Double.NaN;
+
+        Result(Case benchmark, int iterations, long ops, double nanosPerOp, double errorPercent, double bytesPerOp) {
+            this.benchmark = benchmark;
+            this.iterations = iterations;
+            this.ops = ops;
+            this.nanosPerOp = nanosPerOp;
+            this.errorPercent = errorPercent;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        double nanosPerInstruction() {
+            return benchmark.instructionsPerOp == 0 ? 0 : nanosPerOp / benchmark.instructionsPerOp;
+        }
+
+        double mips() {
+            return benchmark.instructionsPerOp == 0 ? 0 : 1e3 / nanosPerInstruction();
+        }
+
+        String toCsv() {
+            String line = String.format(Locale.ROOT, "%s,%s,%d,%d,%.3f,%.2f,%d,%.3f,%.3f,%.1f",
+                    benchmark.suite, benchmark.name, iterations, ops, nanosPerOp, errorPercent,
+                    benchmark.instructionsPerOp, nanosPerInstruction(), mips(), bytesPerOp);
+            return Double.isNaN(changePercent) ? line : line + String.format(Locale.ROOT, ",%+.2f", changePercent);
+        }
+
+        String toJson() {
+            String line = String.format(Locale.ROOT,
+                    "{\"suite\":\"%s\",\"benchmark\":\"%s\",\"iterations\":%d,\"ops\":%d,\"ns_per_op\":%.3f,"
+                            + "\"error_pct\":%.2f,\"instr_per_op\":%d,\"ns_per_instr\":%.3f,\"mips\":%.3f,\"bytes_per_op\":%.1f",
+                    benchmark.suite, benchmark.name, iterations, ops, nanosPerOp, errorPercent,
+                    benchmark.instructionsPerOp, nanosPerInstruction(), mips(), bytesPerOp);
+            if (!Double.isNaN(changePercent)) {
+                line += String.format(Locale.ROOT, ",\"change_pct\":%.2f", changePercent);
+            }
+            return line + "}";
+        }
+    }
+
+    private int warmup = 3;
+    private int iterations = 5;
+    private long iterationNanos = 200_000_000L;
+
+    private Benchmarks() {
+    }
+
+    // Calibrate, warm up and measure one case
+    Result measure(Case benchmark) throws IOException {
+        // The first pass runs cold code, so calibrate again once it has been compiled
+        calibrate(benchmark);
+        long ops = calibrate(benchmark);
+        for (int i = 0; i < warmup; i++) {
+            time(benchmark, ops);
+        }
+
+        double[] samples = new double[iterations];
+        long allocated = 0;
+        for (int i = 0; i < iterations; i++) {
+            long before = allocatedBytes();
+            samples[i] = (double) time(benchmark, ops) / ops;
+            allocated += allocatedBytes() - before;
+        }
+        double mean = 0;
+        for (double sample : samples) {
+            mean += sample;
+        }
+        mean /= samples.length;
+        double variance = 0;
+        for (double sample : samples) {
+            variance += (sample - mean) * (sample - mean);
+        }
+        double deviation = samples.length > 1 ? Math.sqrt(variance / (samples.length - 1)) : 0;
+        double bytesPerOp = allocatedBytes() < 0 ? -1 : (double) allocated / ((double) ops * iterations);
+        return new Result(benchmark, iterations, ops, mean, mean == 0 ? 0 : 100 * deviation / mean, bytesPerOp);
+    }
+
+    // Operations that take about one iteration time
+    private long calibrate(Case benchmark) throws IOException {
+        long ops = 1;
+        while (true) {
+            long nanos = time(benchmark, ops);
+            if (nanos >= iterationNanos / 10 || ops >= 1L << 40) {
+                return Math.max(1, (long) (ops * (double) iterationNanos / Math.max(nanos, 1)));
+            }
+            ops *= 2;
+        }
+    }
+
+    private static long time(Case benchmark, long ops) throws IOException {
+        long start = System.nanoTime();
+        sink += benchmark.body.run(ops);
+        return System.nanoTime() - start;
+    }
+
+    // Bytes allocated so far by this thread, or -1 if the JVM cannot tell
+    static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    // Suites in report order
+    static final List<String> SUITES = List.of("decode", "handlers", "memory", "e2e");
+
+    // Cases of one suite in report order. Suites set up their data (16 MiB for
+    // memory, a first run of every program for e2e) when built, so each is built
+    // only when it is about to run.
+    static List<Case> cases(String suite, String inputs) throws IOException {
+        List<Case> cases = new ArrayList<>();
+        switch (suite) {
+            case "decode":
+                decodeCases(cases, inputs);
+                break;
+            case "handlers":
+                handlerCases(cases);
+                break;
+            case "memory":
+                memoryCases(cases);
+                break;
+            case "e2e":
+                endToEndCases(cases, inputs);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown suite " + suite);
+        }
+        return cases;
+    }
+
+    // Instruction words of the bundled programs, topped up with a mix of synthetic ones
+    private static int[] sampleInstructions(String inputs) throws IOException {
+        List<Integer> words = new ArrayList<>();
+        for (Path program : bundledPrograms(inputs)) {
+            byte[] bytes = Loader.readDat(program.toString());
+            for (int i = 0; i + 3 < bytes.length; i += 4) {
+                words.add((bytes[i] & 0xFF) | (bytes[i + 1] & 0xFF) << 8 | (bytes[i + 2] & 0xFF) << 16 | bytes[i + 3] << 24);
+            }
+        }
+        int[] synthetic = {
+                Encoder.addi(5, 6, -7), Encoder.add(7, 8, 9), Encoder.lw(10, 2, 16), Encoder.sw(11, 2, -8),
+                Encoder.bne(5, 0, -12), Encoder.jal(1, 2048), Encoder.lui(12, 0x10010), Encoder.srai(13, 14, 3)
+        };
+        int[] sample = new int[1024];
+        for (int i = 0; i < sample.length; i++) {
+            sample[i] = i < words.size() ? words.get(i) : synthetic[i % synthetic.length];
+        }
+        return sample;
+    }
+
+    private static void decodeCases(List<Case> cases, String inputs) throws IOException {
+        int[] words = sampleInstructions(inputs);
+        String[] binary = new String[words.length];
+        for (int i = 0; i < words.length; i++) {
+            binary[i] = Utility.leftPadSigned(words[i]);
+        }
+        int mask = words.length - 1;
+        cases.add(new Case("decode", "decoder", 0, ops -> {
+            long sum = 0;
+            for (long i = 0; i < ops; i++) {
+                sum += Decoder.decode(words[(int) i & mask]).imm;
+            }
+            return sum;
+        }));
+        Pipeline pipeline = new Pipeline(new Memory(), new Registers(), (TraceSink) null);
+        cases.add(new Case("decode", "machineToAsm", 0, ops -> {
+            long sum = 0;
+            for (long i = 0; i < ops; i++) {
+                sum += pipeline.machineToAsm(binary[(int) i & mask]).size();
+            }
+            return sum;
+        }));
+    }
+
+    private static void handlerCases(List<Case> cases) {
+        Memory memory = new Memory();
+        Registers registers = new Registers();
+        Instructions instructions = new Instructions(memory, registers);
+        registers.setInt(2, DATA_ADDRESS);
+        cases.add(new Case("handlers", "addi", 0, ops -> {
+            for (long i = 0; i < ops; i++) {
+                instructions.ADDI(5 + ((int) i & 7), 5 + ((int) (i >>> 3) & 7), 0, 17);
+            }
+            return registers.getInt(5);
+        }));
+        cases.add(new Case("handlers", "add", 0, ops -> {
+            for (long i = 0; i < ops; i++) {
+                instructions.ADD(5 + ((int) i & 7), 5 + ((int) (i >>> 3) & 7), 6, 0);
+            }
+            return registers.getInt(5);
+        }));
+        cases.add(new Case("handlers", "lw", 0, ops -> {
+            for (long i = 0; i < ops; i++) {
+                instructions.LW(5 + ((int) i & 7), 2, 0, ((int) i & 255) << 2);
+            }
+            return registers.getInt(5);
+        }));
+        cases.add(new Case("handlers", "sw", 0, ops -> {
+            for (long i = 0; i < ops; i++) {
+                instructions.SW(0, 2, 5 + ((int) i & 7), ((int) i & 255) << 2);
+            }
+            return memory.loadWord2(DATA_ADDRESS);
+        }));
+        cases.add(new Case("handlers", "bne", 0, ops -> {
+            for (long i = 0; i < ops; i++) {
+                instructions.BNE(0, 5 + ((int) i & 7), 6, -8);
+            }
+            return registers.getPc();
+        }));
+    }
+
+    private static void memoryCases(List<Case> cases) {
+        Memory memory = new Memory();
+        int span = 16 << 20;        // 16 MiB of data
+        int spanMask = span - 1;
+        byte[] fill = new byte[Memory.PAGE_SIZE];
+        new Random(1).nextBytes(fill);
+        for (int offset = 0; offset < span; offset += fill.length) {
+            memory.writePage(DATA_ADDRESS + offset, fill);
+        }
+        int[] random = new int[1 << 16];
+        Random addresses = new Random(42);
+        for (int i = 0; i < random.length; i++) {
+            random[i] = DATA_ADDRESS + (addresses.nextInt(span) & ~3);
+        }
+        int randomMask = random.length - 1;
+
+        cases.add(new Case("memory", "load.sequential", 0, ops -> {
+            long sum = 0;
+            for (long i = 0; i < ops; i++) {
+                sum += memory.loadWord2(DATA_ADDRESS + ((int) (i << 2) & spanMask));
+            }
+            return sum;
+        }));
+        cases.add(new Case("memory", "load.stride64", 0, ops -> {
+            long sum = 0;
+            for (long i = 0; i < ops; i++) {
+                sum += memory.loadWord2(DATA_ADDRESS + ((int) (i << 6) & spanMask));
+            }
+            return sum;
+        }));
+        cases.add(new Case("memory", "load.stride4096", 0, ops -> {
+            long sum = 0;
+            for (long i = 0; i < ops; i++) {
+                // Walk every page, then move 4 bytes into the next round
+                sum += memory.loadWord2(DATA_ADDRESS + ((int) (i << 12) + ((int) (i >>> 12) << 2) & spanMask));
+            }
+            return sum;
+        }));
+        cases.add(new Case("memory", "load.random", 0, ops -> {
+            long sum = 0;
+            for (long i = 0; i < ops; i++) {
+                sum += memory.loadWord2(random[(int) i & randomMask]);
+            }
+            return sum;
+        }));
+        cases.add(new Case("memory", "store.sequential", 0, ops -> {
+            for (long i = 0; i < ops; i++) {
+                memory.storeWord(DATA_ADDRESS + ((int) (i << 2) & spanMask), (int) i);
+            }
+            return memory.loadWord2(DATA_ADDRESS);
+        }));
+        cases.add(new Case("memory", "store.random", 0, ops -> {
+            for (long i = 0; i < ops; i++) {
+                memory.storeWord(random[(int) i & randomMask], (int) i);
+            }
+            return memory.loadWord2(random[0]);
+        }));
+    }
+
+    private static List<Path> bundledPrograms(String inputs) throws IOException {
+        List<Path> programs = new ArrayList<>();
+        Path directory = Paths.get(inputs);
+        if (!Files.isDirectory(directory)) {
+            return programs;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.getFileName().toString().endsWith(".dat"))
+                    .filter(file -> !file.getFileName().toString().equals("dmem.dat"))
+                    .sorted()
+                    .forEach(programs::add);
+        }
+        return programs;
+    }
+
+    private static void endToEndCases(List<Case> cases, String inputs) throws IOException {
+        Path data = Paths.get(inputs, "dmem.dat");
+        for (Path program : bundledPrograms(inputs)) {
+            Simulator simulator = new Simulator();
+            simulator.load(program.toString(), Files.exists(data) ? data.toString() : "");
+            String name = program.getFileName().toString().replace(".dat", "");
+            cases.add(guestCase(name, simulator));
+        }
+        if (bundledPrograms(inputs).isEmpty()) {
+            System.err.println("No programs in " + inputs + ", skipping the bundled end-to-end cases");
+        }
+
+        // Counting loop: two ALU instructions and a taken branch per iteration
+        Simulator count = new Simulator();
+        storeProgram(count.getMemory(), 0,
+                Encoder.li(5, 100_000),
+                new int[] {
+                        Encoder.addi(6, 6, 1),
+                        Encoder.addi(5, 5, -1),
+                        Encoder.bne(5, 0, -8)
+                });
+        cases.add(guestCase("loop.count", count));
+
+        // Sum a 16 KiB array: a load in every iteration
+        Simulator sum = new Simulator();
+        storeProgram(sum.getMemory(), 0,
+                Encoder.li(10, DATA_ADDRESS),
+                Encoder.li(5, 4096),
+                new int[] {
+                        Encoder.lw(7, 10, 0),
+                        Encoder.add(6, 6, 7),
+                        Encoder.addi(10, 10, 4),
+                        Encoder.addi(5, 5, -1),
+                        Encoder.bne(5, 0, -16)
+                });
+        cases.add(guestCase("loop.memsum", sum));
+    }
+
+    // Write instruction words from address; the zero word after them halts
+    static void storeProgram(Memory memory, int address, int[]... parts) {
+        for (int[] part : parts) {
+            for (int word : part) {
+                memory.storeWord(address, word);
+                address += 4;
+            }
+        }
+    }
+
+    // Run the loaded program from pc 0 with zeroed registers once per operation.
+    // Memory is left as the previous run wrote it.
+    private static Case guestCase(String name, Simulator simulator) throws IOException {
+        int[] zeros = new int[32];
+        simulator.getRegisters().setAll(zeros, 0);
+        long before = simulator.getInstructionsRetired();
+        simulator.run();
+        long instructions = simulator.getInstructionsRetired() - before;
+        return new Case("e2e", name, instructions, ops -> {
+            for (long i = 0; i < ops; i++) {
+                simulator.getRegisters().setAll(zeros, 0);
+                simulator.run();
+            }
+            return simulator.getRegisters().getInt(6);
+        });
+    }
+
+    // ns per op of each suite,benchmark in a CSV written by an earlier run
+    private static Map<String, Double> readBaseline(Path file) throws IOException {
+        Map<String, Double> baseline = new HashMap<>();
+        for (String line : Files.readAllLines(file)) {
+            String[] fields = line.split(",");
+            if (fields.length < 5 || fields[0].equals("suite")) {
+                continue;
+            }
+            try {
+                baseline.put(fields[0] + "," + fields[1], Double.parseDouble(fields[4]));
+            } catch (NumberFormatException e) {
+                throw new IOException(file + ": invalid ns_per_op in line: " + line);
+            }
+        }
+        return baseline;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Benchmarks harness = new Benchmarks();
+        String suite = null;
+        Pattern filter = null;
+        String inputs = "src/processor/input_files";
+        String baselineFile = null;
+        double threshold = 5;
+        boolean json = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--suite":
+                        suite = Utility.flagValue(args, i++);
+                        if (!SUITES.contains(suite)) {
+                            throw new IllegalArgumentException("Unknown suite " + suite);
+                        }
+                        break;
+                    case "--filter":
+                        filter = Pattern.compile(Utility.flagValue(args, i++));
+                        break;
+                    case "--warmup":
+                        harness.warmup = Integer.parseInt(Utility.flagValue(args, i++));
+                        break;
+                    case "--iterations":
+                        harness.iterations = Math.max(1, Integer.parseInt(Utility.flagValue(args, i++)));
+                        break;
+                    case "--time":
+                        harness.iterationNanos = Long.parseLong(Utility.flagValue(args, i++)) * 1_000_000L;
+                        break;
+                    case "--format":
+                        String format = Utility.flagValue(args, i++);
+                        if (!format.equals("json") && !format.equals("csv")) {
+                            throw new IllegalArgumentException("Unknown format " + format);
+                        }
+                        json = format.equals("json");
+                        break;
+                    case "--inputs":
+                        inputs = Utility.flagValue(args, i++);
+                        break;
+                    case "--baseline":
+                        baselineFile = Utility.flagValue(args, i++);
+                        break;
+                    case "--threshold":
+                        threshold = Double.parseDouble(Utility.flagValue(args, i++));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unexpected argument " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("ERROR: " + e.getMessage());
+            System.err.println("Usage: [--suite decode|handlers|memory|e2e] [--filter <regex>] [--warmup <n>] [--iterations <n>]"
+                    + " [--time <ms>] [--format csv|json] [--inputs <dir>] [--baseline <csv>] [--threshold <pct>]");
+            System.exit(2);
+        }
+
+        // The handlers and the pipeline must not spend the time printing
+        if (System.getProperty(Log.PROPERTY) == null) {
+            Log.setAll(Log.Level.OFF);
+        }
+        Map<String, Double> baseline = baselineFile == null ? null : readBaseline(Paths.get(baselineFile));
+        if (!json) {
+            System.out.println(baseline == null ? CSV_HEADER : CSV_HEADER + ",change_pct");
+        }
+        List<String> regressions = new ArrayList<>();
+        for (String name : SUITES) {
+            if (suite != null && !name.equals(suite)) {
+                continue;
+            }
+            for (Case benchmark : cases(name, inputs)) {
+                if (filter != null && !filter.matcher(benchmark.suite + "." + benchmark.name).find()) {
+                    continue;
+                }
+                Result result = harness.measure(benchmark);
+                Double previous = baseline == null ? null : baseline.get(benchmark.suite + "," + benchmark.name);
+                if (previous != null && previous > 0) {
+                    result.changePercent = 100 * (result.nanosPerOp - previous) / previous;
+                    if (result.changePercent > threshold) {
+                        regressions.add(String.format(Locale.ROOT, "%s.%s: %.3f -> %.3f ns/op (%+.2f%%)",
+                                benchmark.suite, benchmark.name, previous, result.nanosPerOp, result.changePercent));
+                    }
+                }
+                System.out.println(json ? result.toJson() : result.toCsv());
+            }
+        }
+        for (String regression : regressions) {
+            System.err.println("REGRESSION: " + regression);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package processor;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+// Reads a trace written by BinaryTraceSink one record at a time:
+//   while (reader.next()) { reader.getProgramCounter() ... }
+public class BinaryTraceReader implements Closeable {
+    private final DataInputStream input;
+    private final Inflater inflater = new Inflater();
+    private byte[] block = new byte[BinaryTraceSink.BLOCK_SIZE];
+    private byte[] stored = new byte[BinaryTraceSink.BLOCK_SIZE];
+    private int position;
+    private int recordsLeft;               // records still to read from block
+    private int previousPc;
+    private final int[] previousValues = new int[32];
+    private final InstructionCache decoded = new InstructionCache(1 << 12);
+
+    private int programCounter;
+    private DecodedInstruction instruction;
+    private int rdValue;
+    private long recordCount;
+
+    public BinaryTraceReader(String fileName) throws IOException {
+        this.input = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName), 1 << 16));
+        byte[] header = new byte[BinaryTraceSink.HEADER_SIZE];
+        try {
+            input.readFully(header);
+        } catch (EOFException e) {
+            input.close();
+            throw new IOException(fileName + " is not a binary trace (too short)");
+        }
+        if (!Arrays.equals(Arrays.copyOf(header, 4), BinaryTraceSink.MAGIC)) {
+            input.close();
+            throw new IOException(fileName + " is not a binary trace (bad magic)");
+        }
+        if (header[4] != BinaryTraceSink.VERSION) {
+            input.close();
+            throw new IOException(fileName + " has unsupported trace version " + header[4]);
+        }
+    }
+
+    // Advance to the next record; false at the end of the trace
+    public boolean next() throws IOException {
+        while (recordsLeft == 0) {
+            if (!readBlock()) {
+                return false;
+            }
+        }
+        programCounter = previousPc + 4 + unzigzag(getVarint());
+        previousPc = programCounter;
+        int word = (block[position] & 0xFF) | (block[position + 1] & 0xFF) << 8
+                | (block[position + 2] & 0xFF) << 16 | block[position + 3] << 24;
+        position += 4;
+        instruction = decode(word);
+        int rd = instruction.rd;
+        if (rd != 0 && instruction.opcode.writesRd()) {
+            rdValue = previousValues[rd] + unzigzag(getVarint());
+            previousValues[rd] = rdValue;
+        } else {
+            rdValue = 0;
+        }
+        recordsLeft--;
+        recordCount++;
+        return true;
+    }
+
+    // Most traces repeat a small set of words, so keep their decodings by value
+    private DecodedInstruction decode(int word) {
+        DecodedInstruction cached = decoded.get(word);
+        if (cached == null) {
+            cached = Decoder.decode(word);
+            decoded.put(word, cached);
+        }
+        return cached;
+    }
+
+    private boolean readBlock() throws IOException {
+        int rawLength;
+        try {
+            rawLength = Integer.reverseBytes(input.readInt());
+        } catch (EOFException e) {
+            return false;
+        }
+        int storedLength = Integer.reverseBytes(input.readInt());
+        int records = Integer.reverseBytes(input.readInt());
+        if (rawLength < 0 || storedLength < 0 || storedLength > rawLength || records < 0) {
+            throw new IOException("Corrupt trace block header after record " + recordCount);
+        }
+        if (block.length < rawLength) {
+            block = new byte[rawLength];
+        }
+        if (storedLength == rawLength) {
+            input.readFully(block, 0, rawLength);
+        } else {
+            if (stored.length < storedLength) {
+                stored = new byte[storedLength];
+            }
+            input.readFully(stored, 0, storedLength);
+            inflater.reset();
+            inflater.setInput(stored, 0, storedLength);
+            try {
+                if (inflater.inflate(block, 0, rawLength) != rawLength) {
+                    throw new IOException("Truncated compressed trace block after record " + recordCount);
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt compressed trace block after record " + recordCount, e);
+            }
+        }
+        position = 0;
+        recordsLeft = records;
+        previousPc = -4;
+        Arrays.fill(previousValues, 0);
+        return true;
+    }
+
+    private int getVarint() {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = block[position++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public int getProgramCounter() {
+        return programCounter;
+    }
+
+    public DecodedInstruction getInstruction() {
+        return instruction;
+    }
+
+    // Value written to rd, or 0 when the instruction does not write a register
+    public int getRdValue() {
+        return rdValue;
+    }
+
+    public boolean writesRd() {
+        return instruction.rd != 0 && instruction.opcode.writesRd();
+    }
+
+    // Records read so far
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        input.close();
+    }
+}
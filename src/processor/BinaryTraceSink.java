@@ -0,0 +1,144 @@
+package processor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+// Compact binary execution trace, read back by BinaryTraceReader and TraceTool.
+//
+// File header (8 bytes): "RVTR", version byte, flags byte (bit 0: blocks may be
+// deflated), two zero bytes. Then a sequence of blocks, each with a 12-byte header
+// of little-endian ints: raw length, stored length, record count. The block body is
+// deflated when the stored length is smaller than the raw length, raw otherwise.
+//
+// Each record holds the pc, the raw instruction word and the rd writeback value:
+//   zigzag varint   pc - (previous pc + 4)         usually 0, one byte
+//   4 bytes LE      instruction word
+//   zigzag varint   rd value - previous rd value   only if the opcode writes rd != x0
+// Delta state (previous pc = -4, all previous register values 0) restarts with
+// every block, so blocks can be decoded independently.
+public class BinaryTraceSink implements TraceSink {
+    public static final byte[] MAGIC = {'R', 'V', 'T', 'R'};
+    public static final int VERSION = 1;
+    public static final int FLAG_DEFLATE = 1;
+    public static final int HEADER_SIZE = 8;
+    public static final int BLOCK_HEADER_SIZE = 12;
+    public static final int BLOCK_SIZE = 1 << 16;
+    private static final int MAX_RECORD_SIZE = 5 + 4 + 5;
+
+    private final String fileName;
+    private final boolean deflate;
+    private AsyncTraceWriter writer;
+    private final byte[] block = new byte[BLOCK_SIZE];
+    private int length;                   // bytes used in block
+    private int records;                  // records in block
+    private int previousPc;
+    private final int[] previousValues = new int[32];
+    private Deflater deflater;
+    private byte[] deflated;
+
+    public BinaryTraceSink(String fileName, boolean deflate) {
+        this.fileName = fileName;
+        this.deflate = deflate;
+        startBlock();
+    }
+
+    @Override
+    public void record(int programCounter, DecodedInstruction instruction, int rdValue) throws IOException {
+        if (writer == null) {
+            open();
+        }
+        if (length + MAX_RECORD_SIZE > BLOCK_SIZE) {
+            endBlock();
+        }
+        putVarint(zigzag(programCounter - (previousPc + 4)));
+        previousPc = programCounter;
+        int word = instruction.instruction;
+        block[length] = (byte) word;
+        block[length + 1] = (byte) (word >>> 8);
+        block[length + 2] = (byte) (word >>> 16);
+        block[length + 3] = (byte) (word >>> 24);
+        length += 4;
+        int rd = instruction.rd;
+        if (rd != 0 && instruction.opcode.writesRd()) {
+            putVarint(zigzag(rdValue - previousValues[rd]));
+            previousValues[rd] = rdValue;
+        }
+        records++;
+    }
+
+    private void open() throws IOException {
+        writer = new AsyncTraceWriter(Paths.get(fileName));
+        ByteBuffer header = writer.reserve(HEADER_SIZE);
+        header.put(MAGIC).put((byte) VERSION).put((byte) (deflate ? FLAG_DEFLATE : 0)).put((byte) 0).put((byte) 0);
+        if (deflate) {
+            deflater = new Deflater(Deflater.BEST_SPEED);
+            deflated = new byte[BLOCK_SIZE];
+        }
+    }
+
+    private void putVarint(int value) {
+        while ((value & ~0x7F) != 0) {
+            block[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        block[length++] = (byte) value;
+    }
+
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private void startBlock() {
+        length = 0;
+        records = 0;
+        previousPc = -4;
+        Arrays.fill(previousValues, 0);
+    }
+
+    // Write the current block, deflating it when that makes it smaller
+    private void endBlock() throws IOException {
+        if (records == 0) {
+            return;
+        }
+        byte[] body = block;
+        int stored = length;
+        if (deflate) {
+            deflater.reset();
+            deflater.setInput(block, 0, length);
+            deflater.finish();
+            int size = deflater.deflate(deflated);
+            if (deflater.finished() && size < length) {
+                body = deflated;
+                stored = size;
+            }
+        }
+        ByteBuffer header = writer.reserve(BLOCK_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(length).putInt(stored).putInt(records);
+        writer.write(body, 0, stored);
+        startBlock();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (writer != null) {
+            endBlock();
+            writer.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            endBlock();
+            writer.close();
+            if (deflater != null) {
+                deflater.end();
+                deflater = null;
+            }
+        }
+    }
+}
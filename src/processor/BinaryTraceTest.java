@@ -0,0 +1,87 @@
+package processor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryTraceTest {
+
+    // Enough records to span several blocks
+    private static final int RECORDS = 50000;
+
+    private static final int[] INSTRUCTIONS = {
+            Encoder.addi(5, 5, 1),      // writes x5
+            Encoder.addi(0, 0, 0),      // nop, writes nothing
+            Encoder.sw(5, 2, -8),       // no rd
+            Encoder.lui(31, 0x80000),   // writes x31
+            Encoder.jal(1, -64),        // writes the return address
+    };
+
+    // Write a reproducible trace with sequential runs, jumps in both directions and
+    // rd values of any sign, then read it back and compare every record
+    private static void roundTrip(boolean deflate) throws IOException {
+        Path path = Files.createTempFile("trace", ".bin");
+        try {
+            Random random = new Random(42);
+            BinaryTraceSink sink = new BinaryTraceSink(path.toString(), deflate);
+            int pc = 0;
+            for (int i = 0; i < RECORDS; i++) {
+                pc = random.nextInt(8) == 0 ? random.nextInt() & ~3 : pc + 4;
+                sink.record(pc, Decoder.decode(INSTRUCTIONS[random.nextInt(INSTRUCTIONS.length)]), random.nextInt());
+            }
+            sink.close();
+
+            random = new Random(42);
+            try (BinaryTraceReader reader = new BinaryTraceReader(path.toString())) {
+                pc = 0;
+                for (int i = 0; i < RECORDS; i++) {
+                    pc = random.nextInt(8) == 0 ? random.nextInt() & ~3 : pc + 4;
+                    DecodedInstruction instruction = Decoder.decode(INSTRUCTIONS[random.nextInt(INSTRUCTIONS.length)]);
+                    int rdValue = random.nextInt();
+                    assertTrue(reader.next(), "record " + i);
+                    assertEquals(pc, reader.getProgramCounter(), "pc of record " + i);
+                    assertEquals(instruction.instruction, reader.getInstruction().instruction, "instruction of record " + i);
+                    assertEquals(instruction.rd != 0 && instruction.opcode.writesRd(), reader.writesRd());
+                    if (reader.writesRd()) {
+                        assertEquals(rdValue, reader.getRdValue(), "rd value of record " + i);
+                    }
+                }
+                assertFalse(reader.next());
+                assertEquals(RECORDS, reader.getRecordCount());
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    void RoundTripRaw() throws IOException {
+        roundTrip(false);
+    }
+
+    @Test
+    void RoundTripDeflated() throws IOException {
+        roundTrip(true);
+    }
+
+    @Test
+    void RejectsOtherFiles() throws IOException {
+        Path path = Files.createTempFile("trace", ".bin");
+        try {
+            Files.write(path, "not a trace".getBytes(StandardCharsets.US_ASCII));
+            assertThrows(IOException.class, () -> new BinaryTraceReader(path.toString()));
+            Files.write(path, new byte[3]);
+            assertThrows(IOException.class, () -> new BinaryTraceReader(path.toString()));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
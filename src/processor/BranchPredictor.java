@@ -0,0 +1,135 @@
+package processor;
+
+// Direction predictor for conditional branches, consulted by BranchUnit when a
+// branch is fetched and trained when it resolves.
+public interface BranchPredictor {
+
+    boolean predictTaken(int programCounter);
+
+    void update(int programCounter, boolean taken);
+
+    // Short description for reports, e.g. "gshare, 12 history bits"
+    String describe();
+
+    void reset();
+
+    // Predictor named by spec: "static", "bimodal[:entries]" or "gshare[:history bits]"
+    static BranchPredictor parse(String spec) {
+        String[] parts = spec.split(":");
+        switch (parts[0]) {
+            case "static":
+                return new StaticNotTaken();
+            case "bimodal":
+                return new Bimodal(parts.length > 1 ? Integer.parseInt(parts[1]) : 4096);
+            case "gshare":
+                return new Gshare(parts.length > 1 ? Integer.parseInt(parts[1]) : 12);
+            default:
+                throw new IllegalArgumentException("Unknown branch predictor " + parts[0]);
+        }
+    }
+
+    // Always falls through
+    final class StaticNotTaken implements BranchPredictor {
+        @Override
+        public boolean predictTaken(int programCounter) {
+            return false;
+        }
+
+        @Override
+        public void update(int programCounter, boolean taken) {
+        }
+
+        @Override
+        public String describe() {
+            return "static not taken";
+        }
+
+        @Override
+        public void reset() {
+        }
+    }
+
+    // 2-bit saturating counters indexed by pc; 0-1 predict not taken, 2-3 taken
+    final class Bimodal implements BranchPredictor {
+        private final byte[] counters;
+        private final int mask;
+
+        public Bimodal(int entries) {
+            if (entries < 1 || Integer.bitCount(entries) != 1) {
+                throw new IllegalArgumentException("bimodal entries must be a power of two: " + entries);
+            }
+            this.counters = new byte[entries];
+            this.mask = entries - 1;
+            reset();
+        }
+
+        @Override
+        public boolean predictTaken(int programCounter) {
+            return counters[(programCounter >>> 2) & mask] >= 2;
+        }
+
+        @Override
+        public void update(int programCounter, boolean taken) {
+            int index = (programCounter >>> 2) & mask;
+            counters[index] = train(counters[index], taken);
+        }
+
+        @Override
+        public String describe() {
+            return "bimodal, " + counters.length + " counters";
+        }
+
+        @Override
+        public void reset() {
+            java.util.Arrays.fill(counters, (byte) 1);
+        }
+    }
+
+    // 2-bit counters indexed by pc xor global history, 2^historyBits of them
+    final class Gshare implements BranchPredictor {
+        private final byte[] counters;
+        private final int historyBits;
+        private final int mask;
+        private int history;
+
+        public Gshare(int historyBits) {
+            if (historyBits < 1 || historyBits > 24) {
+                throw new IllegalArgumentException("gshare history must be 1 to 24 bits: " + historyBits);
+            }
+            this.historyBits = historyBits;
+            this.counters = new byte[1 << historyBits];
+            this.mask = counters.length - 1;
+            reset();
+        }
+
+        @Override
+        public boolean predictTaken(int programCounter) {
+            return counters[((programCounter >>> 2) ^ history) & mask] >= 2;
+        }
+
+        @Override
+        public void update(int programCounter, boolean taken) {
+            int index = ((programCounter >>> 2) ^ history) & mask;
+            counters[index] = train(counters[index], taken);
+            history = ((history << 1) | (taken ? 1 : 0)) & mask;
+        }
+
+        @Override
+        public String describe() {
+            return "gshare, " + historyBits + " history bits";
+        }
+
+        @Override
+        public void reset() {
+            java.util.Arrays.fill(counters, (byte) 1);
+            history = 0;
+        }
+    }
+
+    private static byte train(byte counter, boolean taken) {
+        if (taken) {
+            return counter < 3 ? (byte) (counter + 1) : counter;
+        }
+        return counter > 0 ? (byte) (counter - 1) : counter;
+    }
+}
@@ -0,0 +1,251 @@
+package processor;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+// Front end of the timing model: predicts each control transfer when it is fetched,
+// checks the prediction when it resolves and returns the bubbles it cost.
+//   conditional branches  direction from a BranchPredictor; a wrong direction is found
+//                         in EX (2 bubbles). A correct taken prediction still needs the
+//                         target: free on a BTB hit, otherwise computed in ID (1 bubble).
+//   jal                   free on a BTB hit, otherwise resolved in ID (1 bubble)
+//   jalr                  returns (jalr x0, 0(ra|t0)) are predicted by the return address
+//                         stack, other jalr by the BTB; a wrong or missing target is
+//                         found in EX (2 bubbles). Calls (rd = ra|t0) push pc + 4.
+// Jumps without a BTB hit pay their resolution bubbles and count as mispredicted.
+// Without a BTB and RAS (the default, static not taken) this is the plain pipeline:
+// taken branches cost 2, jal 1 and jalr 2.
+//
+// Configured with -Dsimulator.bpred=<predictor>[,btb=<entries>][,ras=<depth>], e.g.
+// -Dsimulator.bpred=gshare:12,btb=512,ras=16. Predictors are "static",
+// "bimodal[:entries]" and "gshare[:history bits]".
+public class BranchUnit {
+
+    public static final String PROPERTY = "simulator.bpred";
+
+    static final int DIRECTION_PENALTY = 2;     // wrong direction, resolved in EX
+    static final int ID_PENALTY = 1;            // target computed in ID
+    static final int JALR_PENALTY = 2;          // target read from a register in EX
+
+    private static final int REPORT_PCS = 10;
+
+    private final BranchPredictor predictor;
+    private final int[] btbTags;                // pc of the entry, -1 when empty
+    private final int[] btbTargets;
+    private final int btbMask;
+    private final int[] returnStack;
+    private int returnTop;                      // number of pushes, wraps over the oldest entries
+
+    private long branches;
+    private long branchMispredicts;
+    private long jumps;
+    private long jumpMispredicts;
+
+    private static final int EXECUTED = 0;      // PcCounters columns
+    private static final int MISPREDICTED = 1;
+    private final PcCounters perPc = new PcCounters(2);
+
+    public BranchUnit(BranchPredictor predictor, int btbEntries, int rasDepth) {
+        if (btbEntries < 0 || (btbEntries > 0 && Integer.bitCount(btbEntries) != 1)) {
+            throw new IllegalArgumentException("BTB entries must be a power of two: " + btbEntries);
+        }
+        if (rasDepth < 0) {
+            throw new IllegalArgumentException("RAS depth must not be negative: " + rasDepth);
+        }
+        this.predictor = predictor;
+        this.btbTags = new int[btbEntries];
+        this.btbTargets = new int[btbEntries];
+        this.btbMask = btbEntries - 1;
+        this.returnStack = new int[rasDepth];
+        Arrays.fill(btbTags, -1);
+    }
+
+    // Static not taken with no BTB or RAS
+    public BranchUnit() {
+        this(new BranchPredictor.StaticNotTaken(), 0, 0);
+    }
+
+    // Unit described by spec, e.g. "bimodal:2048,btb=256,ras=8"
+    public static BranchUnit parse(String spec) {
+        String[] parts = spec.split(",");
+        int btb = 0;
+        int ras = 0;
+        for (int i = 1; i < parts.length; i++) {
+            if (parts[i].startsWith("btb=")) {
+                btb = Integer.parseInt(parts[i].substring(4));
+            } else if (parts[i].startsWith("ras=")) {
+                ras = Integer.parseInt(parts[i].substring(4));
+            } else {
+                throw new IllegalArgumentException("Unknown branch unit option " + parts[i]);
+            }
+        }
+        return new BranchUnit(BranchPredictor.parse(parts[0]), btb, ras);
+    }
+
+    // Unit chosen with -Dsimulator.bpred, or the default if it is unset or invalid
+    public static BranchUnit fromProperty() {
+        String spec = System.getProperty(PROPERTY);
+        if (spec == null) {
+            return new BranchUnit();
+        }
+        try {
+            return parse(spec);
+        } catch (IllegalArgumentException e) {
+            Log.EXEC.error("ERROR: Invalid " + PROPERTY + " " + spec + ": " + e.getMessage() + ", using static not taken");
+            return new BranchUnit();
+        }
+    }
+
+    // Resolve the control transfer at programCounter, which went to nextPc. Returns the
+    // bubbles lost before the next instruction; 0 for anything that is not a jump or branch.
+    public int resolve(int programCounter, DecodedInstruction decoded, int nextPc) {
+        Opcode opcode = decoded.opcode;
+        int penalty;
+        boolean mispredict;
+        if (opcode.isBranch()) {
+            boolean taken = nextPc != programCounter + 4;
+            mispredict = predictor.predictTaken(programCounter) != taken;
+            predictor.update(programCounter, taken);
+            if (mispredict) {
+                penalty = DIRECTION_PENALTY;
+            } else {
+                penalty = taken && !btbHit(programCounter, nextPc) ? ID_PENALTY : 0;
+            }
+            if (taken) {
+                btbInsert(programCounter, nextPc);
+            }
+            branches++;
+            if (mispredict) {
+                branchMispredicts++;
+            }
+        } else if (opcode == Opcode.JAL || opcode == Opcode.JALR) {
+            if (opcode == Opcode.JAL) {
+                penalty = btbHit(programCounter, nextPc) ? 0 : ID_PENALTY;
+                btbInsert(programCounter, nextPc);
+            } else if (decoded.rd == 0 && isLinkRegister(decoded.rs1) && returnStack.length > 0) {
+                penalty = popReturn() == nextPc ? 0 : JALR_PENALTY;
+            } else {
+                penalty = btbHit(programCounter, nextPc) ? 0 : JALR_PENALTY;
+                btbInsert(programCounter, nextPc);
+            }
+            pushIfCall(decoded.rd, programCounter);
+            mispredict = penalty > 0;
+            jumps++;
+            if (mispredict) {
+                jumpMispredicts++;
+            }
+        } else {
+            return 0;
+        }
+        perPc.increment(programCounter, EXECUTED);
+        if (mispredict) {
+            perPc.increment(programCounter, MISPREDICTED);
+        }
+        return penalty;
+    }
+
+    private static boolean isLinkRegister(int register) {
+        return register == 1 || register == 5;
+    }
+
+    private void pushIfCall(int rd, int programCounter) {
+        if (returnStack.length > 0 && isLinkRegister(rd)) {
+            returnStack[returnTop++ % returnStack.length] = programCounter + 4;
+        }
+    }
+
+    // Predicted return address, or -1 if the stack is empty
+    private int popReturn() {
+        if (returnTop == 0) {
+            return -1;
+        }
+        return returnStack[--returnTop % returnStack.length];
+    }
+
+    private boolean btbHit(int programCounter, int target) {
+        if (btbTags.length == 0) {
+            return false;
+        }
+        int index = (programCounter >>> 2) & btbMask;
+        return btbTags[index] == programCounter && btbTargets[index] == target;
+    }
+
+    private void btbInsert(int programCounter, int target) {
+        if (btbTags.length > 0) {
+            int index = (programCounter >>> 2) & btbMask;
+            btbTags[index] = programCounter;
+            btbTargets[index] = target;
+        }
+    }
+
+    public void reset() {
+        predictor.reset();
+        Arrays.fill(btbTags, -1);
+        returnTop = 0;
+        branches = 0;
+        branchMispredicts = 0;
+        jumps = 0;
+        jumpMispredicts = 0;
+        perPc.clear();
+    }
+
+    public long getBranches() {
+        return branches;
+    }
+
+    public long getBranchMispredicts() {
+        return branchMispredicts;
+    }
+
+    public long getJumps() {
+        return jumps;
+    }
+
+    public long getJumpMispredicts() {
+        return jumpMispredicts;
+    }
+
+    // Mispredicted fraction of all control transfers, 0 if there were none
+    public double getMispredictRate() {
+        long total = branches + jumps;
+        return total == 0 ? 0 : (double) (branchMispredicts + jumpMispredicts) / total;
+    }
+
+    // Executions and mispredicts of the control transfer at programCounter
+    public long getExecuted(int programCounter) {
+        return perPc.get(programCounter, EXECUTED);
+    }
+
+    public long getMispredicted(int programCounter) {
+        return perPc.get(programCounter, MISPREDICTED);
+    }
+
+    public String describe() {
+        return predictor.describe()
+                + (btbTags.length > 0 ? ", " + btbTags.length + "-entry BTB" : "")
+                + (returnStack.length > 0 ? ", " + returnStack.length + "-entry RAS" : "");
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append("Branch prediction (").append(describe()).append(")\n");
+        report.append(String.format(Locale.ROOT, "  %-18s %d, %d mispredicted (%.2f%%)%n", "branches",
+                branches, branchMispredicts, percent(branchMispredicts, branches)));
+        report.append(String.format(Locale.ROOT, "  %-18s %d, %d mispredicted (%.2f%%)%n", "jumps",
+                jumps, jumpMispredicts, percent(jumpMispredicts, jumps)));
+        report.append(String.format(Locale.ROOT, "  %-18s %.2f%%%n", "overall", 100 * getMispredictRate()));
+
+        for (int pc : perPc.top(MISPREDICTED, REPORT_PCS)) {
+            long executed = perPc.get(pc, EXECUTED);
+            long mispredicted = perPc.get(pc, MISPREDICTED);
+            report.append(String.format(Locale.ROOT, "  pc 0x%08x  %10d executed %10d mispredicted (%.2f%%)%n",
+                    pc, executed, mispredicted, percent(mispredicted, executed)));
+        }
+        return report.toString();
+    }
+
+    private static double percent(long part, long whole) {
+        return whole == 0 ? 0 : 100.0 * part / whole;
+    }
+}
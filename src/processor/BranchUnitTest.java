@@ -0,0 +1,105 @@
+package processor;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BranchUnitTest {
+
+    private static final int BRANCH_PC = 0x100;
+    private static final DecodedInstruction BRANCH = Decoder.decode(Encoder.bne(6, 0, -8));
+
+    // Resolve the branch at BRANCH_PC once, returning the bubbles
+    private static int branch(BranchUnit unit, boolean taken) {
+        return unit.resolve(BRANCH_PC, BRANCH, taken ? BRANCH_PC - 8 : BRANCH_PC + 4);
+    }
+
+    // A loop branch taken iterations - 1 times, then falling through
+    private static void loop(BranchUnit unit, int iterations) {
+        for (int i = 1; i < iterations; i++) {
+            branch(unit, true);
+        }
+        branch(unit, false);
+    }
+
+    @Test
+    void StaticNotTaken() {
+        BranchUnit unit = new BranchUnit();
+        assertEquals(BranchUnit.DIRECTION_PENALTY, branch(unit, true));
+        assertEquals(0, branch(unit, false));
+        loop(unit, 10);
+        assertEquals(12, unit.getBranches());
+        assertEquals(10, unit.getBranchMispredicts());
+        assertEquals(10, unit.getMispredicted(BRANCH_PC));
+    }
+
+    @Test
+    void BimodalLearnsLoops() {
+        BranchUnit unit = new BranchUnit(new BranchPredictor.Bimodal(16), 0, 0);
+        // Counters start weakly not taken: the first taken and the exit are missed
+        loop(unit, 10);
+        assertEquals(2, unit.getBranchMispredicts());
+        // Strongly taken by now, so only the exit is missed
+        loop(unit, 10);
+        assertEquals(3, unit.getBranchMispredicts());
+        // A correctly predicted taken branch still computes its target in ID
+        assertEquals(BranchUnit.ID_PENALTY, branch(unit, true));
+
+        unit.reset();
+        assertEquals(0, unit.getBranches());
+        assertEquals(BranchUnit.DIRECTION_PENALTY, branch(unit, true));
+    }
+
+    @Test
+    void GshareLearnsPatterns() {
+        BranchUnit gshare = new BranchUnit(new BranchPredictor.Gshare(8), 0, 0);
+        BranchUnit bimodal = new BranchUnit(new BranchPredictor.Bimodal(16), 0, 0);
+        for (int i = 0; i < 100; i++) {
+            branch(gshare, i % 2 == 0);
+            branch(bimodal, i % 2 == 0);
+        }
+        long gshareWarm = gshare.getBranchMispredicts();
+        long bimodalWarm = bimodal.getBranchMispredicts();
+        for (int i = 100; i < 200; i++) {
+            branch(gshare, i % 2 == 0);
+            branch(bimodal, i % 2 == 0);
+        }
+        // History tells the alternating outcomes apart, a single counter cannot
+        assertEquals(0, gshare.getBranchMispredicts() - gshareWarm);
+        assertTrue(bimodal.getBranchMispredicts() - bimodalWarm >= 50);
+    }
+
+    @Test
+    void TargetBufferAndReturnStack() {
+        BranchUnit unit = BranchUnit.parse("bimodal:16,btb=64,ras=4");
+        loop(unit, 10);
+        // Predicted taken with the target in the BTB costs nothing
+        assertEquals(0, branch(unit, true));
+
+        DecodedInstruction call = Decoder.decode(Encoder.jal(1, 0x100));
+        DecodedInstruction ret = Decoder.decode(Encoder.jalr(0, 1, 0));
+        assertEquals(BranchUnit.ID_PENALTY, unit.resolve(0x200, call, 0x300));
+        assertEquals(0, unit.resolve(0x310, ret, 0x204));
+        assertEquals(0, unit.resolve(0x200, call, 0x300));
+        // A return to somewhere else is a mispredict
+        assertEquals(BranchUnit.JALR_PENALTY, unit.resolve(0x310, ret, 0x400));
+        assertEquals(4, unit.getJumps());
+        assertEquals(2, unit.getJumpMispredicts());
+
+        // Without a RAS every return pays the jalr penalty
+        BranchUnit plain = new BranchUnit();
+        plain.resolve(0x200, call, 0x300);
+        assertEquals(BranchUnit.JALR_PENALTY, plain.resolve(0x310, ret, 0x204));
+    }
+
+    @Test
+    void Parse() {
+        assertEquals("gshare, 8 history bits", BranchPredictor.parse("gshare:8").describe());
+        assertEquals("bimodal, 4096 counters", BranchPredictor.parse("bimodal").describe());
+        assertThrows(IllegalArgumentException.class, () -> BranchPredictor.parse("tage"));
+        assertThrows(IllegalArgumentException.class, () -> BranchPredictor.parse("bimodal:1000"));
+        assertThrows(IllegalArgumentException.class, () -> BranchUnit.parse("static,btb=100"));
+        assertThrows(IllegalArgumentException.class, () -> BranchUnit.parse("static,rob=8"));
+    }
+}
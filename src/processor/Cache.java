@@ -0,0 +1,260 @@
+package processor;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+// One level of the CacheHierarchy timing model. Only tags are kept, never data:
+// guest memory stays the single copy of every byte, so the model can be switched on
+// or off at any point without changing what a program computes. Not to be confused
+// with InstructionCache, which holds decoded instructions for the interpreter.
+//
+// Tag state is flat primitive arrays indexed by set * ways + way. A miss asks the
+// next level (or memory) for the line and returns the cycles that took; hits
+// return 0. Write-back caches allocate on write misses and write dirty victims
+// back; write-through caches pass every write down and do not allocate on misses.
+public class Cache {
+
+    public enum Replacement {
+        LRU,
+        PLRU,       // tree pseudo-LRU, ways must be a power of two
+        RANDOM
+    }
+
+    private final String name;
+    private final int sizeBytes;
+    private final int ways;
+    private final int lineShift;
+    private final int setMask;
+    private final Replacement replacement;
+    private final boolean writeBack;
+
+    private final int[] tags;           // line address (address >>> lineShift), -1 when invalid
+    private final boolean[] dirty;
+    private final long[] lastUse;       // LRU stamps
+    private final long[] plruBits;      // one tree per set, node n at bit n (root is 1)
+    private long clock;
+    private int randomState = 0x2545F491;
+
+    private Cache next;                 // null when misses go to memory
+    private int missLatency;            // cycles to reach the next level or memory
+
+    private long reads;
+    private long writes;
+    private long readMisses;
+    private long writeMisses;
+    private long evictions;
+    private long writebacks;
+
+    public Cache(String name, int sizeBytes, int ways, int lineBytes, Replacement replacement, boolean writeBack) {
+        if (Integer.bitCount(lineBytes) != 1 || lineBytes < 4) {
+            throw new IllegalArgumentException(name + " line size must be a power of two of at least 4: " + lineBytes);
+        }
+        if (ways < 1 || sizeBytes % (ways * lineBytes) != 0
+                || Integer.bitCount(sizeBytes / (ways * lineBytes)) != 1) {
+            throw new IllegalArgumentException(name + " size must be a power of two number of sets of "
+                    + ways + " x " + lineBytes + " bytes: " + sizeBytes);
+        }
+        if (replacement == Replacement.PLRU && (Integer.bitCount(ways) != 1 || ways > 32)) {
+            throw new IllegalArgumentException(name + " PLRU needs a power of two up to 32 ways: " + ways);
+        }
+        int sets = sizeBytes / (ways * lineBytes);
+        this.name = name;
+        this.sizeBytes = sizeBytes;
+        this.ways = ways;
+        this.lineShift = Integer.numberOfTrailingZeros(lineBytes);
+        this.setMask = sets - 1;
+        this.replacement = replacement;
+        this.writeBack = writeBack;
+        this.tags = new int[sets * ways];
+        this.dirty = new boolean[sets * ways];
+        this.lastUse = replacement == Replacement.LRU ? new long[sets * ways] : null;
+        this.plruBits = replacement == Replacement.PLRU ? new long[sets] : null;
+        Arrays.fill(tags, -1);
+    }
+
+    // Where misses go: the next level and the cycles to reach it, or memory if next is null
+    public void connect(Cache next, int missLatency) {
+        this.next = next;
+        this.missLatency = missLatency;
+    }
+
+    // Account for a read or write of the line holding address. Returns the cycles
+    // spent below this level, 0 on a hit.
+    public int access(int address, boolean write) {
+        int line = address >>> lineShift;
+        int set = line & setMask;
+        int base = set * ways;
+        if (write) {
+            writes++;
+        } else {
+            reads++;
+        }
+        for (int way = 0; way < ways; way++) {
+            if (tags[base + way] == line) {
+                touch(set, way);
+                if (write) {
+                    if (writeBack) {
+                        dirty[base + way] = true;
+                    } else if (next != null) {
+                        next.access(address, true);
+                    }
+                }
+                return 0;
+            }
+        }
+
+        if (write) {
+            writeMisses++;
+            if (!writeBack) {
+                // No write allocate: the write goes straight down, buffered
+                if (next != null) {
+                    next.access(address, true);
+                }
+                return 0;
+            }
+        } else {
+            readMisses++;
+        }
+        int cycles = missLatency + (next != null ? next.access(address, false) : 0);
+        int way = victim(set);
+        int slot = base + way;
+        if (tags[slot] != -1) {
+            evictions++;
+            if (dirty[slot]) {
+                writebacks++;
+                if (next != null) {
+                    next.access(tags[slot] << lineShift, true);
+                }
+            }
+        }
+        tags[slot] = line;
+        dirty[slot] = write;
+        touch(set, way);
+        return cycles;
+    }
+
+    private void touch(int set, int way) {
+        if (lastUse != null) {
+            lastUse[set * ways + way] = ++clock;
+        } else if (plruBits != null) {
+            // Point every node on the path away from way
+            long bits = plruBits[set];
+            int node = 1;
+            for (int level = Integer.numberOfTrailingZeros(ways) - 1; level >= 0; level--) {
+                int right = (way >>> level) & 1;
+                bits = right == 1 ? bits & ~(1L << node) : bits | (1L << node);
+                node = node * 2 + right;
+            }
+            plruBits[set] = bits;
+        }
+    }
+
+    private int victim(int set) {
+        int base = set * ways;
+        for (int way = 0; way < ways; way++) {
+            if (tags[base + way] == -1) {
+                return way;
+            }
+        }
+        switch (replacement) {
+            case LRU: {
+                int oldest = 0;
+                for (int way = 1; way < ways; way++) {
+                    if (lastUse[base + way] < lastUse[base + oldest]) {
+                        oldest = way;
+                    }
+                }
+                return oldest;
+            }
+            case PLRU: {
+                long bits = plruBits[set];
+                int node = 1;
+                int way = 0;
+                for (int level = Integer.numberOfTrailingZeros(ways) - 1; level >= 0; level--) {
+                    int right = (int) (bits >>> node) & 1;
+                    way = way << 1 | right;
+                    node = node * 2 + right;
+                }
+                return way;
+            }
+            default:
+                randomState ^= randomState << 13;
+                randomState ^= randomState >>> 17;
+                randomState ^= randomState << 5;
+                return Integer.remainderUnsigned(randomState, ways);
+        }
+    }
+
+    // Invalidate every line and zero the counters
+    public void reset() {
+        Arrays.fill(tags, -1);
+        Arrays.fill(dirty, false);
+        if (lastUse != null) {
+            Arrays.fill(lastUse, 0);
+        }
+        if (plruBits != null) {
+            Arrays.fill(plruBits, 0);
+        }
+        clock = 0;
+        randomState = 0x2545F491;
+        resetCounters();
+    }
+
+    // Zero the counters but keep the cache contents, e.g. after warming up
+    public void resetCounters() {
+        reads = 0;
+        writes = 0;
+        readMisses = 0;
+        writeMisses = 0;
+        evictions = 0;
+        writebacks = 0;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getAccesses() {
+        return reads + writes;
+    }
+
+    public long getMisses() {
+        return readMisses + writeMisses;
+    }
+
+    public long getHits() {
+        return getAccesses() - getMisses();
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getWritebacks() {
+        return writebacks;
+    }
+
+    public double getMissRate() {
+        long accesses = getAccesses();
+        return accesses == 0 ? 0 : (double) getMisses() / accesses;
+    }
+
+    public String describe() {
+        return String.format(Locale.ROOT, "%s %s, %d-way, %d-byte lines, %s, %s", name, formatSize(sizeBytes), ways,
+                1 << lineShift, replacement, writeBack ? "write-back" : "write-through");
+    }
+
+    static String formatSize(int bytes) {
+        if (bytes % (1 << 20) == 0) {
+            return (bytes >> 20) + " MiB";
+        }
+        return bytes % 1024 == 0 ? (bytes >> 10) + " KiB" : bytes + " B";
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "  %-4s %12d accesses %12d hits %10d misses (%.2f%%) %10d evictions %10d writebacks%n",
+                name, getAccesses(), getHits(), getMisses(), 100 * getMissRate(), evictions, writebacks);
+    }
+}
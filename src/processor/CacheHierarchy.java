@@ -0,0 +1,248 @@
+package processor;
+
+import java.util.Locale;
+
+// Cache timing model in front of Memory: an L1 instruction cache fed by every
+// fetch, an L1 data cache fed by the load and store handlers, and an optional
+// unified L2 behind both, all working on physical addresses. Pipeline calls
+// fetch() before executing each instruction, which also records the pc that the
+// instruction's data accesses are charged to.
+// Miss cycles are collected for the TimingModel, which adds them as memory stalls;
+// writes through and write-backs are assumed to be buffered and cost nothing.
+//
+// Configured with -Dsimulator.cache=on for the defaults below, or a list of
+//   l1i=<size>:<ways>:<line>[:lru|plru|random][:wb|wt]
+//   l1d=...  l2=...  (l2=off for no L2, the default)
+//   l2lat=<cycles to reach L2>  memlat=<cycles to reach memory>
+// e.g. -Dsimulator.cache=l1d=16k:4:32:plru:wt,l2=256k:8:64,memlat=80.
+// Sizes take a k or m suffix.
+public class CacheHierarchy {
+
+    public static final String PROPERTY = "simulator.cache";
+
+    private static final String DEFAULT_L1I = "32k:4:64:lru:wb";
+    private static final String DEFAULT_L1D = "32k:8:64:lru:wb";
+    private static final int DEFAULT_L2_LATENCY = 12;
+    private static final int DEFAULT_MEMORY_LATENCY = 100;
+    private static final int REPORT_PCS = 10;
+
+    private static final int INSTRUCTION_MISSES = 0;   // PcCounters columns
+    private static final int DATA_MISSES = 1;
+
+    private final Cache instructionCache;
+    private final Cache dataCache;
+    private final Cache l2;                 // null if there is no L2
+    private final PcCounters missesByPc = new PcCounters(2);
+    private int programCounter;             // instruction being executed
+    private long stallCycles;               // total miss cycles
+    private int pendingCycles;              // miss cycles of the current instruction, not yet taken
+
+    public CacheHierarchy(Cache instructionCache, Cache dataCache, Cache l2, int l2Latency, int memoryLatency) {
+        this.instructionCache = instructionCache;
+        this.dataCache = dataCache;
+        this.l2 = l2;
+        if (l2 != null) {
+            instructionCache.connect(l2, l2Latency);
+            dataCache.connect(l2, l2Latency);
+            l2.connect(null, memoryLatency);
+        } else {
+            instructionCache.connect(null, memoryLatency);
+            dataCache.connect(null, memoryLatency);
+        }
+    }
+
+    // Hierarchy described by spec, "on" for the defaults
+    public static CacheHierarchy parse(String spec) {
+        String l1i = DEFAULT_L1I;
+        String l1d = DEFAULT_L1D;
+        String l2 = "off";
+        int l2Latency = DEFAULT_L2_LATENCY;
+        int memoryLatency = DEFAULT_MEMORY_LATENCY;
+        if (!spec.equals("on")) {
+            for (String option : spec.split(",")) {
+                int equals = option.indexOf('=');
+                String key = equals < 0 ? option : option.substring(0, equals);
+                String value = option.substring(equals + 1);
+                switch (key) {
+                    case "l1i":
+                        l1i = value;
+                        break;
+                    case "l1d":
+                        l1d = value;
+                        break;
+                    case "l2":
+                        l2 = value;
+                        break;
+                    case "l2lat":
+                        l2Latency = Integer.parseInt(value);
+                        break;
+                    case "memlat":
+                        memoryLatency = Integer.parseInt(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown cache option " + option);
+                }
+            }
+        }
+        if (l2Latency < 1 || memoryLatency < 1) {
+            throw new IllegalArgumentException("Latencies must be at least 1 cycle");
+        }
+        return new CacheHierarchy(parseCache("L1I", l1i), parseCache("L1D", l1d),
+                l2.equals("off") ? null : parseCache("L2", l2), l2Latency, memoryLatency);
+    }
+
+    // <size>:<ways>:<line>[:lru|plru|random][:wb|wt]
+    private static Cache parseCache(String name, String spec) {
+        String[] fields = spec.split(":");
+        if (fields.length < 3) {
+            throw new IllegalArgumentException(name + " needs <size>:<ways>:<line>, got " + spec);
+        }
+        Cache.Replacement replacement = Cache.Replacement.LRU;
+        boolean writeBack = true;
+        for (int i = 3; i < fields.length; i++) {
+            switch (fields[i]) {
+                case "wb":
+                    writeBack = true;
+                    break;
+                case "wt":
+                    writeBack = false;
+                    break;
+                default:
+                    replacement = Cache.Replacement.valueOf(fields[i].toUpperCase(Locale.ROOT));
+            }
+        }
+        return new Cache(name, parseSize(fields[0]), Integer.parseInt(fields[1]), parseSize(fields[2]),
+                replacement, writeBack);
+    }
+
+    private static int parseSize(String size) {
+        String lower = size.toLowerCase(Locale.ROOT);
+        if (lower.endsWith("k")) {
+            return Integer.parseInt(lower.substring(0, lower.length() - 1)) << 10;
+        }
+        if (lower.endsWith("m")) {
+            return Integer.parseInt(lower.substring(0, lower.length() - 1)) << 20;
+        }
+        return Integer.parseInt(lower);
+    }
+
+    // Hierarchy chosen with -Dsimulator.cache, or null if it is unset, "off" or invalid
+    public static CacheHierarchy fromProperty() {
+        String spec = System.getProperty(PROPERTY, "off");
+        if (spec.equals("off")) {
+            return null;
+        }
+        try {
+            return parse(spec);
+        } catch (IllegalArgumentException e) {
+            Log.EXEC.error("ERROR: Invalid " + PROPERTY + " " + spec + ": " + e.getMessage() + ", caches off");
+            return null;
+        }
+    }
+
+    // Fetch of the instruction at programCounter from physical address, which data
+    // accesses are charged to until the next fetch
+    public void fetch(int programCounter, int address) {
+        this.programCounter = programCounter;
+        // Without a timing model nothing takes the cycles, so count them here
+        stallCycles += pendingCycles;
+        pendingCycles = 0;
+        int cycles = instructionCache.access(address, false);
+        if (cycles > 0) {
+            missesByPc.increment(programCounter, INSTRUCTION_MISSES);
+            pendingCycles += cycles;
+        }
+    }
+
+    // Load or store of the data at address by the current instruction
+    public void data(int address, boolean write) {
+        int cycles = dataCache.access(address, write);
+        if (cycles > 0) {
+            missesByPc.increment(programCounter, DATA_MISSES);
+            pendingCycles += cycles;
+        }
+    }
+
+    // Miss cycles since the last call, for the TimingModel
+    public int takeStallCycles() {
+        int cycles = pendingCycles;
+        stallCycles += cycles;
+        pendingCycles = 0;
+        return cycles;
+    }
+
+    // Empty every cache and zero the counters
+    public void reset() {
+        instructionCache.reset();
+        dataCache.reset();
+        if (l2 != null) {
+            l2.reset();
+        }
+        resetCounters();
+    }
+
+    // Zero the counters but keep the cache contents
+    public void resetCounters() {
+        instructionCache.resetCounters();
+        dataCache.resetCounters();
+        if (l2 != null) {
+            l2.resetCounters();
+        }
+        missesByPc.clear();
+        stallCycles = 0;
+        pendingCycles = 0;
+    }
+
+    public Cache getInstructionCache() {
+        return instructionCache;
+    }
+
+    public Cache getDataCache() {
+        return dataCache;
+    }
+
+    public Cache getL2() {
+        return l2;
+    }
+
+    public long getStallCycles() {
+        return stallCycles + pendingCycles;
+    }
+
+    public long getInstructionMisses(int programCounter) {
+        return missesByPc.get(programCounter, INSTRUCTION_MISSES);
+    }
+
+    public long getDataMisses(int programCounter) {
+        return missesByPc.get(programCounter, DATA_MISSES);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder("Caches\n");
+        report.append("  ").append(instructionCache.describe()).append('\n');
+        report.append("  ").append(dataCache.describe()).append('\n');
+        if (l2 != null) {
+            report.append("  ").append(l2.describe()).append('\n');
+        }
+        report.append(instructionCache).append(dataCache);
+        if (l2 != null) {
+            report.append(l2);
+        }
+        report.append(String.format(Locale.ROOT, "  %-18s %d%n", "miss cycles", getStallCycles()));
+        appendTop(report, "instruction misses", INSTRUCTION_MISSES);
+        appendTop(report, "data misses", DATA_MISSES);
+        return report.toString();
+    }
+
+    private void appendTop(StringBuilder report, String title, int column) {
+        int[] top = missesByPc.top(column, REPORT_PCS);
+        if (top.length == 0) {
+            return;
+        }
+        report.append("  ").append(title).append(" by pc\n");
+        for (int pc : top) {
+            report.append(String.format(Locale.ROOT, "    pc 0x%08x  %10d%n", pc, missesByPc.get(pc, column)));
+        }
+    }
+}
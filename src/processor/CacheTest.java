@@ -0,0 +1,119 @@
+package processor;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CacheTest {
+
+    // 8 sets of 2 ways with 16-byte lines; addresses 128 bytes apart share a set
+    private static Cache small(Cache.Replacement replacement, boolean writeBack) {
+        Cache cache = new Cache("L1D", 256, 2, 16, replacement, writeBack);
+        cache.connect(null, 10);
+        return cache;
+    }
+
+    @Test
+    void HitsAndMisses() {
+        Cache cache = small(Cache.Replacement.LRU, true);
+        assertEquals(10, cache.access(0x1000, false));
+        // Same line
+        assertEquals(0, cache.access(0x1004, false));
+        assertEquals(0, cache.access(0x100C, true));
+        // Next line
+        assertEquals(10, cache.access(0x1010, false));
+        assertEquals(4, cache.getAccesses());
+        assertEquals(2, cache.getMisses());
+        assertEquals(0.5, cache.getMissRate());
+    }
+
+    @Test
+    void Replacement() {
+        for (Cache.Replacement replacement : new Cache.Replacement[] {Cache.Replacement.LRU, Cache.Replacement.PLRU}) {
+            Cache cache = small(replacement, true);
+            cache.access(0x000, false);
+            cache.access(0x080, false);
+            cache.access(0x000, false);
+            // Set full: 0x080 is least recently used and goes
+            cache.access(0x100, false);
+            assertEquals(0, cache.access(0x000, false), replacement.name());
+            assertEquals(10, cache.access(0x080, false), replacement.name());
+            assertEquals(2, cache.getEvictions());
+        }
+    }
+
+    @Test
+    void WriteBackAndWriteThrough() {
+        Cache l2 = new Cache("L2", 4096, 4, 16, Cache.Replacement.LRU, true);
+        l2.connect(null, 100);
+        Cache writeBack = small(Cache.Replacement.LRU, true);
+        writeBack.connect(l2, 10);
+        // A write miss allocates a dirty line, written back when it is evicted
+        assertEquals(110, writeBack.access(0x000, true));
+        writeBack.access(0x080, false);
+        writeBack.access(0x100, false);
+        assertEquals(1, writeBack.getWritebacks());
+        // Three read misses and the write-back, which hits in L2
+        assertEquals(4, l2.getAccesses());
+        assertEquals(1, l2.getHits());
+
+        // A write-through cache does not allocate on a write miss
+        Cache writeThrough = small(Cache.Replacement.LRU, false);
+        assertEquals(0, writeThrough.access(0x000, true));
+        assertEquals(10, writeThrough.access(0x000, false));
+        assertEquals(0, writeThrough.access(0x000, true));
+        assertEquals(0, writeThrough.getWritebacks());
+    }
+
+    @Test
+    void Hierarchy() {
+        CacheHierarchy caches = CacheHierarchy.parse("l1i=256:2:16,l1d=256:2:16:plru:wt,l2=4k:4:16,l2lat=10,memlat=100");
+        assertEquals("L1D 256 B, 2-way, 16-byte lines, PLRU, write-through", caches.getDataCache().describe());
+
+        // Misses in both levels, then a hit
+        caches.fetch(0x40, 0x40);
+        caches.data(0x2000, false);
+        assertEquals(2 * 110, caches.takeStallCycles());
+        caches.fetch(0x44, 0x44);
+        caches.data(0x2004, false);
+        assertEquals(0, caches.takeStallCycles());
+        assertEquals(1, caches.getInstructionMisses(0x40));
+        assertEquals(1, caches.getDataMisses(0x40));
+        assertEquals(0, caches.getDataMisses(0x44));
+
+        // Pushed out of L1D by two lines in the same set, still in L2
+        caches.data(0x2080, false);
+        caches.data(0x2100, false);
+        caches.takeStallCycles();
+        caches.data(0x2000, false);
+        assertEquals(10, caches.takeStallCycles());
+        assertEquals(2 * 110 + 2 * 110 + 10, caches.getStallCycles());
+
+        caches.reset();
+        assertEquals(0, caches.getStallCycles());
+        assertEquals(0, caches.getDataCache().getAccesses());
+        assertNull(CacheHierarchy.parse("on").getL2());
+        assertThrows(IllegalArgumentException.class, () -> CacheHierarchy.parse("l1d=100:3:16"));
+        assertThrows(IllegalArgumentException.class, () -> CacheHierarchy.parse("l3=1m:8:64"));
+        assertThrows(IllegalArgumentException.class, () -> CacheHierarchy.parse("memlat=0"));
+    }
+
+    @Test
+    void MissCyclesWithoutTimingModel() throws IOException {
+        Simulator simulator = new Simulator();
+        CacheHierarchy caches = CacheHierarchy.parse("l1i=256:2:16,l1d=256:2:16,memlat=100");
+        simulator.getPipeline().setCaches(caches);
+        // Four instructions on one line, one load: one instruction and one data miss
+        int[] program = {Encoder.lui(6, 1), Encoder.lw(5, 6, 0), Encoder.addi(5, 5, 1), 0};
+        for (int i = 0; i < program.length; i++) {
+            simulator.getMemory().storeWord(4 * i, program[i]);
+        }
+        assertEquals(Simulator.Stop.HALT, simulator.run());
+        assertEquals(1, caches.getInstructionCache().getMisses());
+        assertEquals(1, caches.getDataCache().getMisses());
+        assertEquals(200, caches.getStallCycles());
+    }
+}
@@ -0,0 +1,162 @@
+package processor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+// Saves and restores the whole machine: registers, pc, supervisor CSRs and
+// privilege mode, memory pages, breakpoints and the trace position (instructions
+// retired). A snapshot is "RVCK", a version byte, then a deflated stream of
+// big-endian fields:
+//   pc, x0..x31, data byte count, instructions retired (long),
+//   breakpoint count, breakpoints, CSR state (see Csrs.saveState),
+//   page count, then (address, 4096 bytes) per page.
+// Pages that are all zero are left out. Version 1 snapshots have no CSR state and
+// restore in bare supervisor mode.
+public final class Checkpoint {
+    private static final byte[] MAGIC = {'R', 'V', 'C', 'K'};
+    private static final int VERSION = 2;
+    private static final int VERSION_WITHOUT_CSRS = 1;
+    private static final int MAX_PAGES = 1 << (32 - Memory.PAGE_SHIFT);
+    private static final int MAX_BREAKPOINTS = 1 << 20;
+
+    private Checkpoint() {
+    }
+
+    public static void save(Path path, Registers registers, Memory memory, Pipeline pipeline) throws IOException {
+        // A Deflater passed in is not ended by the stream, so its native memory is freed here
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (OutputStream file = Files.newOutputStream(path)) {
+            file.write(MAGIC);
+            file.write(VERSION);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new DeflaterOutputStream(file, deflater, 1 << 16), 1 << 16))) {
+                write(out, registers, memory, pipeline);
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void write(DataOutputStream out, Registers registers, Memory memory, Pipeline pipeline)
+            throws IOException {
+        out.writeInt(registers.getPc());
+        for (int i = 0; i < 32; i++) {
+            out.writeInt(registers.getInt(i));
+        }
+        out.writeInt(memory.dataLines);
+        out.writeLong(pipeline.getInstructionsRetired());
+
+        int[] breakpoints = pipeline.getBreakpoints();
+        out.writeInt(breakpoints.length);
+        for (int breakpoint : breakpoints) {
+            out.writeInt(breakpoint);
+        }
+        for (int value : pipeline.getCsrs().saveState()) {
+            out.writeInt(value);
+        }
+
+        int[] addresses = memory.pageAddresses();
+        byte[] page = new byte[Memory.PAGE_SIZE];
+        int pages = 0;
+        for (int address : addresses) {
+            memory.readPage(address, page);
+            if (!isZero(page)) {
+                addresses[pages++] = address;
+            }
+        }
+        out.writeInt(pages);
+        for (int i = 0; i < pages; i++) {
+            memory.readPage(addresses[i], page);
+            out.writeInt(addresses[i]);
+            out.write(page);
+        }
+    }
+
+    // Replace the machine state with the snapshot at path
+    public static void restore(Path path, Registers registers, Memory memory, Pipeline pipeline) throws IOException {
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(path))) {
+            byte[] header = new byte[MAGIC.length + 1];
+            if (file.readNBytes(header, 0, header.length) != header.length
+                    || !Arrays.equals(Arrays.copyOf(header, MAGIC.length), MAGIC)) {
+                throw new IOException(path + " is not a checkpoint");
+            }
+            int version = header[MAGIC.length];
+            if (version != VERSION && version != VERSION_WITHOUT_CSRS) {
+                throw new IOException(path + " has unsupported checkpoint version " + version);
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(file), 1 << 16))) {
+                int pc = in.readInt();
+                int[] values = new int[32];
+                for (int i = 0; i < 32; i++) {
+                    values[i] = in.readInt();
+                }
+                int dataLines = in.readInt();
+                long instructionsRetired = in.readLong();
+                int[] breakpoints = new int[checkCount(path, in.readInt(), MAX_BREAKPOINTS)];
+                for (int i = 0; i < breakpoints.length; i++) {
+                    breakpoints[i] = in.readInt();
+                }
+                int[] csrState = null;
+                if (version != VERSION_WITHOUT_CSRS) {
+                    csrState = new int[Csrs.STATE_SIZE];
+                    for (int i = 0; i < csrState.length; i++) {
+                        csrState[i] = in.readInt();
+                    }
+                }
+                int[] addresses = new int[checkCount(path, in.readInt(), MAX_PAGES)];
+                byte[][] pages = new byte[addresses.length][];
+                for (int i = 0; i < addresses.length; i++) {
+                    addresses[i] = in.readInt();
+                    pages[i] = new byte[Memory.PAGE_SIZE];
+                    in.readFully(pages[i]);
+                }
+
+                // Nothing is changed until the whole snapshot has been read, so a
+                // damaged file leaves the machine as it was
+                memory.clear();
+                for (int i = 0; i < addresses.length; i++) {
+                    memory.writePage(addresses[i], pages[i]);
+                }
+                memory.dataLines = dataLines;
+                registers.setAll(values, pc);
+                pipeline.setBreakpoints(breakpoints);
+                pipeline.setInstructionsRetired(instructionsRetired);
+                if (csrState == null) {
+                    pipeline.getCsrs().reset();
+                } else {
+                    pipeline.getCsrs().restoreState(csrState);
+                }
+            } catch (EOFException e) {
+                throw new IOException(path + " is truncated", e);
+            }
+        }
+    }
+
+    private static int checkCount(Path path, int count, int limit) throws IOException {
+        if (count < 0 || count > limit) {
+            throw new IOException(path + " is corrupt: count " + count + " out of range");
+        }
+        return count;
+    }
+
+    private static boolean isZero(byte[] page) {
+        for (byte b : page) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
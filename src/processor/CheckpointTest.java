@@ -0,0 +1,98 @@
+package processor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CheckpointTest {
+
+    private Simulator testSimulator;
+
+    @BeforeEach
+    void setUp() {
+        testSimulator = new Simulator();
+        int[] scratch = Encoder.li(8, 0x1234);
+        // Set sscratch, then add 3 to x5 ten times and store the sum at 0x100
+        int[] program = {
+                scratch[0],
+                scratch[1],
+                Encoder.csrrw(0, Csrs.SSCRATCH, 8),
+                Encoder.addi(6, 0, 10),
+                Encoder.addi(5, 5, 3),          // 16
+                Encoder.addi(6, 6, -1),
+                Encoder.bne(6, 0, -8),
+                Encoder.sw(5, 0, 0x100),
+                0,                              // halt
+        };
+        for (int i = 0; i < program.length; i++) {
+            testSimulator.getMemory().storeWord(4 * i, program[i]);
+        }
+        // A page of data far from the program
+        testSimulator.getMemory().storeWord(0x7FFF0000, 0xCAFEBABE);
+    }
+
+    @Test
+    void SaveAndRestore() throws IOException {
+        Path path = Files.createTempFile("checkpoint", ".bin");
+        try {
+            testSimulator.step(10);
+            testSimulator.addBreakpoint(0x20);
+            Checkpoint.save(path, testSimulator.getRegisters(), testSimulator.getMemory(), testSimulator.getPipeline());
+            int pc = testSimulator.getRegisters().getPc();
+            int x5 = testSimulator.getRegisters().getInt(5);
+
+            // Restore over a machine in a different state
+            Simulator restored = new Simulator();
+            restored.getMemory().storeWord(0x200, 99);
+            restored.getRegisters().setPc(0x40);
+            Checkpoint.restore(path, restored.getRegisters(), restored.getMemory(), restored.getPipeline());
+
+            assertEquals(pc, restored.getRegisters().getPc());
+            assertEquals(x5, restored.getRegisters().getInt(5));
+            assertEquals(testSimulator.getInstructionsRetired(), restored.getInstructionsRetired());
+            assertEquals(0x1234, restored.getPipeline().getCsrs().read(Csrs.SSCRATCH));
+            assertArrayEquals(new int[] {0x20}, restored.getPipeline().getBreakpoints());
+            assertEquals(0xCAFEBABE, restored.getMemory().loadWord2(0x7FFF0000));
+            assertEquals(0, restored.getMemory().loadWord2(0x200));
+
+            // Both finish the same way
+            assertEquals(Simulator.Stop.HALT, testSimulator.step(1000));
+            assertEquals(Simulator.Stop.HALT, restored.step(1000));
+            assertEquals(30, restored.getMemory().loadWord2(0x100));
+            assertEquals(testSimulator.getInstructionsRetired(), restored.getInstructionsRetired());
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    void DamagedCheckpointLeavesMachineAlone() throws IOException {
+        Path path = Files.createTempFile("checkpoint", ".bin");
+        try {
+            testSimulator.step(10);
+            Checkpoint.save(path, testSimulator.getRegisters(), testSimulator.getMemory(), testSimulator.getPipeline());
+            byte[] contents = Files.readAllBytes(path);
+
+            Simulator other = new Simulator();
+            other.getMemory().storeWord(0x200, 99);
+            for (byte[] damaged : new byte[][] {
+                    Arrays.copyOf(contents, contents.length / 2),
+                    Arrays.copyOf(contents, 3),
+                    "RVCK\u0009".getBytes(StandardCharsets.US_ASCII)}) {
+                Files.write(path, damaged);
+                assertThrows(IOException.class, () -> Checkpoint.restore(path, other.getRegisters(), other.getMemory(), other.getPipeline()));
+                assertEquals(99, other.getMemory().loadWord2(0x200));
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package processor;
+
+import java.util.Locale;
+
+// Supervisor control and status registers for the Zicsr instructions, sret,
+// sfence.vma and traps. There is no machine mode: programs start in supervisor
+// mode with paging off, a trap enters supervisor mode at stvec (direct mode) and
+// sret returns to the mode saved in sstatus.SPP. Interrupts are not modelled, so
+// SIE and SPIE are only stored. satp is kept by the Mmu.
+public class Csrs {
+
+    public static final int SSTATUS = 0x100;
+    public static final int STVEC = 0x105;
+    public static final int SSCRATCH = 0x140;
+    public static final int SEPC = 0x141;
+    public static final int SCAUSE = 0x142;
+    public static final int STVAL = 0x143;
+    public static final int SATP = 0x180;
+
+    // sstatus fields
+    private static final int SIE = 1 << 1;
+    private static final int SPIE = 1 << 5;
+    private static final int SPP = 1 << 8;
+    private static final int SUM = 1 << 18;
+    private static final int MXR = 1 << 19;
+    private static final int SSTATUS_MASK = SIE | SPIE | SPP | SUM | MXR;
+
+    private final Mmu mmu = new Mmu();
+    private int sstatus;
+    private int stvec;
+    private int sscratch;
+    private int sepc;
+    private int scause;
+    private int stval;
+
+    public Mmu getMmu() {
+        return mmu;
+    }
+
+    // Value of csr; user mode and unknown CSRs are illegal
+    public int read(int csr) {
+        checkAccess(csr);
+        switch (csr) {
+            case SSTATUS:
+                return sstatus;
+            case STVEC:
+                return stvec;
+            case SSCRATCH:
+                return sscratch;
+            case SEPC:
+                return sepc;
+            case SCAUSE:
+                return scause;
+            case STVAL:
+                return stval;
+            default:
+                return mmu.getSatp();
+        }
+    }
+
+    public void write(int csr, int value) {
+        checkAccess(csr);
+        switch (csr) {
+            case SSTATUS:
+                sstatus = value & SSTATUS_MASK;
+                mmu.setStatus((sstatus & SUM) != 0, (sstatus & MXR) != 0);
+                break;
+            case STVEC:
+                stvec = value & ~3;     // direct mode only
+                break;
+            case SSCRATCH:
+                sscratch = value;
+                break;
+            case SEPC:
+                sepc = value & ~3;
+                break;
+            case SCAUSE:
+                scause = value;
+                break;
+            case STVAL:
+                stval = value;
+                break;
+            default:
+                mmu.setSatp(value);
+        }
+    }
+
+    private void checkAccess(int csr) {
+        switch (csr) {
+            case SSTATUS:
+            case STVEC:
+            case SSCRATCH:
+            case SEPC:
+            case SCAUSE:
+            case STVAL:
+            case SATP:
+                if (mmu.isSupervisor()) {
+                    return;
+                }
+                break;
+            default:
+                break;
+        }
+        throw new Trap(Trap.ILLEGAL_INSTRUCTION, 0);
+    }
+
+    // Supervisor-only instructions (sret, sfence.vma) are illegal in user mode
+    public void checkSupervisor() {
+        if (!mmu.isSupervisor()) {
+            throw new Trap(Trap.ILLEGAL_INSTRUCTION, 0);
+        }
+    }
+
+    public boolean hasTrapHandler() {
+        return stvec != 0;
+    }
+
+    // Enter the trap handler for trap raised by the instruction at programCounter;
+    // returns the handler address
+    public int trap(Trap trap, int programCounter) {
+        sepc = programCounter;
+        scause = trap.getCode();
+        stval = trap.getValue();
+        int spp = mmu.isSupervisor() ? SPP : 0;
+        int spie = (sstatus & SIE) != 0 ? SPIE : 0;
+        sstatus = (sstatus & ~(SPP | SPIE | SIE)) | spp | spie;
+        mmu.setSupervisor(true);
+        return stvec;
+    }
+
+    // sret: back to the saved mode; returns sepc
+    public int returnFromTrap() {
+        checkSupervisor();
+        int sie = (sstatus & SPIE) != 0 ? SIE : 0;
+        boolean toSupervisor = (sstatus & SPP) != 0;
+        sstatus = (sstatus & ~(SPP | SIE)) | SPIE | sie;
+        mmu.setSupervisor(toSupervisor);
+        return sepc;
+    }
+
+    public void reset() {
+        sstatus = 0;
+        stvec = 0;
+        sscratch = 0;
+        sepc = 0;
+        scause = 0;
+        stval = 0;
+        mmu.reset();
+    }
+
+    // Registers and privilege mode for a checkpoint: sstatus, stvec, sscratch, sepc,
+    // scause, stval, satp, then 1 in supervisor mode or 0 in user mode
+    public static final int STATE_SIZE = 8;
+
+    public int[] saveState() {
+        return new int[] {sstatus, stvec, sscratch, sepc, scause, stval, mmu.getSatp(), mmu.isSupervisor() ? 1 : 0};
+    }
+
+    // Back to a saveState() result, with an empty TLB
+    public void restoreState(int[] state) {
+        reset();
+        sstatus = state[0] & SSTATUS_MASK;
+        stvec = state[1] & ~3;
+        sscratch = state[2];
+        sepc = state[3] & ~3;
+        scause = state[4];
+        stval = state[5];
+        mmu.setStatus((sstatus & SUM) != 0, (sstatus & MXR) != 0);
+        mmu.setSatp(state[6]);
+        mmu.setSupervisor(state[7] != 0);
+    }
+
+    // Copy every register and the translation state, e.g. for a fork
+    public void copyFrom(Csrs other) {
+        sstatus = other.sstatus;
+        stvec = other.stvec;
+        sscratch = other.sscratch;
+        sepc = other.sepc;
+        scause = other.scause;
+        stval = other.stval;
+        mmu.copyFrom(other.mmu);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%s mode, sstatus 0x%08x, stvec 0x%08x, sepc 0x%08x, scause %d, stval 0x%08x%n",
+                mmu.isSupervisor() ? "supervisor" : "user", sstatus, stvec, sepc, scause, stval) + mmu;
+    }
+}
@@ -0,0 +1,72 @@
+package processor;
+
+import java.util.HashMap;
+
+// An instruction word split into its fields. Instances are immutable so they can be
+// cached and shared; imm is already sign-extended and, for lui/auipc, shifted into
+// the upper 20 bits. For the immediate shifts imm holds the shift amount.
+public final class DecodedInstruction {
+    public final int instruction;   // raw 32-bit instruction word
+    public final Opcode opcode;
+    public final int rd;
+    public final int rs1;
+    public final int rs2;
+    public final int imm;
+
+    public DecodedInstruction(int instruction, Opcode opcode, int rd, int rs1, int rs2, int imm) {
+        this.instruction = instruction;
+        this.opcode = opcode;
+        this.rd = rd;
+        this.rs1 = rs1;
+        this.rs2 = rs2;
+        this.imm = imm;
+    }
+
+    // Component map in the layout produced by the old string decoder:
+    // register names as "x#" and immediates as binary strings of the field width
+    public HashMap<String, String> toComponents() {
+        HashMap<String, String> components = new HashMap<>();
+        components.put("instructionName", opcode.getMnemonic());
+        components.put("rd", "x" + rd);
+        components.put("rs1", "x" + rs1);
+        components.put("rs2", "x" + rs2);
+        switch (opcode) {
+            case LUI:
+            case AUIPC:
+                components.put("imm", bits(imm >> 12, 20));
+                break;
+            case JAL:
+                components.put("imm", bits(imm, 21));
+                break;
+            case BEQ:
+            case BNE:
+            case BLT:
+            case BGE:
+            case BLTU:
+            case BGEU:
+                components.put("imm", bits(imm, 13));
+                break;
+            case SLLI:
+            case SRLI:
+            case SRAI:
+                components.put("shamt", bits(imm, 5));
+                components.put("imm", bits(instruction >> 20, 12));
+                break;
+            default:
+                components.put("imm", bits(imm, 12));
+                break;
+        }
+        return components;
+    }
+
+    // Low width bits of value as a binary string
+    private static String bits(int value, int width) {
+        return Utility.leftPadSigned(value).substring(32 - width);
+    }
+
+    @Override
+    public String toString() {
+        return opcode.getMnemonic() + " {rd=" + rd + ", rs1=" + rs1 + ", rs2=" + rs2 + ", imm=" + imm
+                + ", instruction=0x" + Integer.toHexString(instruction) + "}";
+    }
+}
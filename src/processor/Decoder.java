@@ -0,0 +1,156 @@
+package processor;
+
+// Decodes 32-bit RV32I instruction words with shifts and masks
+public final class Decoder {
+
+    private Decoder() {
+    }
+
+    public static DecodedInstruction decode(int instruction) {
+        int oc = instruction & 0x7F;              // opcode
+        int rd = (instruction >>> 7) & 0x1F;      // destination register
+        int fc = (instruction >>> 12) & 0x7;      // function code
+        int rs1 = (instruction >>> 15) & 0x1F;    // source register 1
+        int rs2 = (instruction >>> 20) & 0x1F;    // source register 2
+        int funct7 = instruction >>> 25;
+        int imm = instruction >> 20;              // I-type immediate, sign-extended
+        Opcode opcode = Opcode.UNKNOWN;
+
+        switch (oc) {
+            case 0b0110111:
+                imm = instruction & 0xFFFFF000;
+                opcode = Opcode.LUI;
+                break;
+            case 0b0010111:
+                imm = instruction & 0xFFFFF000;
+                opcode = Opcode.AUIPC;
+                break;
+            case 0b1101111:
+                // imm[20|10:1|11|19:12]
+                imm = (instruction >> 31) << 20
+                        | (instruction & 0x000FF000)
+                        | ((instruction >>> 20) & 0x1) << 11
+                        | ((instruction >>> 21) & 0x3FF) << 1;
+                opcode = Opcode.JAL;
+                break;
+            case 0b1100111:
+                if (fc == 0b000) {
+                    opcode = Opcode.JALR;
+                }
+                break;
+            case 0b1100011:
+                // imm[12|10:5] ... imm[4:1|11]
+                imm = (instruction >> 31) << 12
+                        | ((instruction >>> 7) & 0x1) << 11
+                        | ((instruction >>> 25) & 0x3F) << 5
+                        | ((instruction >>> 8) & 0xF) << 1;
+                switch (fc) {
+                    case 0b000: opcode = Opcode.BEQ; break;
+                    case 0b001: opcode = Opcode.BNE; break;
+                    case 0b100: opcode = Opcode.BLT; break;
+                    case 0b101: opcode = Opcode.BGE; break;
+                    case 0b110: opcode = Opcode.BLTU; break;
+                    case 0b111: opcode = Opcode.BGEU; break;
+                    default: break;
+                }
+                break;
+            case 0b0000011:
+                switch (fc) {
+                    case 0b000: opcode = Opcode.LB; break;
+                    case 0b001: opcode = Opcode.LH; break;
+                    case 0b010: opcode = Opcode.LW; break;
+                    case 0b100: opcode = Opcode.LBU; break;
+                    case 0b101: opcode = Opcode.LHU; break;
+                    default: break;
+                }
+                break;
+            case 0b0100011:
+                // imm[11:5] ... imm[4:0]
+                imm = (instruction >> 25) << 5 | rd;
+                switch (fc) {
+                    case 0b000: opcode = Opcode.SB; break;
+                    case 0b001: opcode = Opcode.SH; break;
+                    case 0b010: opcode = Opcode.SW; break;
+                    default: break;
+                }
+                break;
+            case 0b0010011:
+                switch (fc) {
+                    case 0b000: opcode = Opcode.ADDI; break;
+                    case 0b010: opcode = Opcode.SLTI; break;
+                    case 0b011: opcode = Opcode.SLTIU; break;
+                    case 0b100: opcode = Opcode.XORI; break;
+                    case 0b110: opcode = Opcode.ORI; break;
+                    case 0b111: opcode = Opcode.ANDI; break;
+                    case 0b001:
+                        imm = rs2; // shift amount
+                        opcode = Opcode.SLLI;
+                        break;
+                    case 0b101:
+                        imm = rs2; // shift amount
+                        opcode = funct7 == 0b0100000 ? Opcode.SRAI : Opcode.SRLI;
+                        break;
+                    default: break;
+                }
+                break;
+            case 0b0110011:
+                imm = funct7;
+                switch (fc) {
+                    case 0b000:
+                        if (funct7 == 0b0000000) {
+                            opcode = Opcode.ADD;
+                        } else if (funct7 == 0b0100000) {
+                            opcode = Opcode.SUB;
+                        }
+                        break;
+                    case 0b001: opcode = Opcode.SLL; break;
+                    case 0b010: opcode = Opcode.SLT; break;
+                    case 0b011: opcode = Opcode.SLTU; break;
+                    case 0b100: opcode = Opcode.XOR; break;
+                    case 0b101:
+                        if (funct7 == 0b0000000) {
+                            opcode = Opcode.SRL;
+                        } else if (funct7 == 0b0100000) {
+                            opcode = Opcode.SRA;
+                        }
+                        break;
+                    case 0b110: opcode = Opcode.OR; break;
+                    case 0b111: opcode = Opcode.AND; break;
+                    default: break;
+                }
+                break;
+            case 0b0001111:
+                opcode = Opcode.FENCE;
+                break;
+            case 0b1110011:
+                imm = instruction >>> 20;       // CSR number, unsigned
+                switch (fc) {
+                    case 0b000:
+                        // ecall and ebreak are exact words; mret, wfi and the rest stay UNKNOWN
+                        if (instruction == 0x10200073) {
+                            opcode = Opcode.SRET;
+                        } else if (funct7 == 0b0001001 && rd == 0) {
+                            opcode = Opcode.SFENCE_VMA;
+                        } else if (instruction == 0x00000073) {
+                            opcode = Opcode.ECALL;
+                        } else if (instruction == 0x00100073) {
+                            opcode = Opcode.EBREAK;
+                        }
+                        break;
+                    case 0b001: opcode = Opcode.CSRRW; break;
+                    case 0b010: opcode = Opcode.CSRRS; break;
+                    case 0b011: opcode = Opcode.CSRRC; break;
+                    case 0b101: opcode = Opcode.CSRRWI; break;
+                    case 0b110: opcode = Opcode.CSRRSI; break;
+                    case 0b111: opcode = Opcode.CSRRCI; break;
+                    default: break;
+                }
+                break;
+            // Additional cases for other instructions, if any
+            default:
+                break;
+        }
+
+        return new DecodedInstruction(instruction, opcode, rd, rs1, rs2, imm);
+    }
+}
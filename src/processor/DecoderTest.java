@@ -0,0 +1,110 @@
+package processor;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DecoderTest {
+
+    // Decode one word and check every field
+    private static void assertDecodes(int instruction, Opcode opcode, int rd, int rs1, int rs2, int imm) {
+        DecodedInstruction decoded = Decoder.decode(instruction);
+        assertEquals(instruction, decoded.instruction);
+        assertEquals(opcode, decoded.opcode);
+        assertEquals(rd, decoded.rd, "rd");
+        assertEquals(rs1, decoded.rs1, "rs1");
+        assertEquals(rs2, decoded.rs2, "rs2");
+        assertEquals(imm, decoded.imm, "imm");
+    }
+
+    @Test
+    void UType() {
+        // lui and auipc keep the upper 20 bits in place
+        DecodedInstruction lui = Decoder.decode(Encoder.lui(5, 0x12345));
+        assertEquals(Opcode.LUI, lui.opcode);
+        assertEquals(5, lui.rd);
+        assertEquals(0x12345000, lui.imm);
+
+        DecodedInstruction auipc = Decoder.decode(Encoder.auipc(31, 0xFFFFF));
+        assertEquals(Opcode.AUIPC, auipc.opcode);
+        assertEquals(31, auipc.rd);
+        assertEquals(0xFFFFF000, auipc.imm);
+    }
+
+    @Test
+    void ITypeImmediates() {
+        // Positive and negative immediates are sign-extended from bit 11
+        assertEquals(2047, Decoder.decode(Encoder.addi(1, 2, 2047)).imm);
+        assertEquals(-2048, Decoder.decode(Encoder.addi(1, 2, -2048)).imm);
+        assertDecodes(Encoder.lw(10, 2, -4), Opcode.LW, 10, 2, 0x1C, -4);
+        assertDecodes(Encoder.jalr(1, 6, 12), Opcode.JALR, 1, 6, 12, 12);
+
+        // Shift immediates are the shift amount, srai told apart by funct7
+        assertDecodes(Encoder.slli(3, 4, 31), Opcode.SLLI, 3, 4, 31, 31);
+        assertDecodes(Encoder.srli(3, 4, 7), Opcode.SRLI, 3, 4, 7, 7);
+        assertDecodes(Encoder.srai(3, 4, 7), Opcode.SRAI, 3, 4, 7, 7);
+    }
+
+    @Test
+    void STypeImmediates() {
+        // The immediate is split across imm[11:5] and imm[4:0]
+        assertDecodes(Encoder.sw(7, 2, 2047), Opcode.SW, 2047 & 0x1F, 2, 7, 2047);
+        assertDecodes(Encoder.sh(7, 2, -2048), Opcode.SH, 0, 2, 7, -2048);
+        assertDecodes(Encoder.sb(7, 2, -1), Opcode.SB, 0x1F, 2, 7, -1);
+    }
+
+    @Test
+    void BranchAndJumpOffsets() {
+        // Branch offsets cover -4096 to 4094 in steps of two
+        for (int offset : new int[] {-4096, -8, 0, 2, 2046, 2048, 4094}) {
+            assertEquals(offset, Decoder.decode(Encoder.beq(1, 2, offset)).imm, "beq " + offset);
+        }
+        assertEquals(Opcode.BNE, Decoder.decode(Encoder.bne(1, 2, 8)).opcode);
+        assertEquals(Opcode.BLT, Decoder.decode(Encoder.blt(1, 2, 8)).opcode);
+        assertEquals(Opcode.BGE, Decoder.decode(Encoder.bge(1, 2, 8)).opcode);
+        assertEquals(Opcode.BLTU, Decoder.decode(Encoder.bltu(1, 2, 8)).opcode);
+        assertEquals(Opcode.BGEU, Decoder.decode(Encoder.bgeu(1, 2, 8)).opcode);
+
+        // Jump offsets cover -1 MiB to 1 MiB - 2
+        for (int offset : new int[] {-(1 << 20), -4, 0, 2048, 4096, (1 << 20) - 2}) {
+            DecodedInstruction decoded = Decoder.decode(Encoder.jal(1, offset));
+            assertEquals(Opcode.JAL, decoded.opcode);
+            assertEquals(offset, decoded.imm, "jal " + offset);
+        }
+    }
+
+    @Test
+    void RType() {
+        assertDecodes(Encoder.add(1, 2, 3), Opcode.ADD, 1, 2, 3, 0);
+        assertDecodes(Encoder.sub(1, 2, 3), Opcode.SUB, 1, 2, 3, 0b0100000);
+        assertDecodes(Encoder.sra(1, 2, 3), Opcode.SRA, 1, 2, 3, 0b0100000);
+        assertDecodes(Encoder.srl(1, 2, 3), Opcode.SRL, 1, 2, 3, 0);
+        assertDecodes(Encoder.and(31, 30, 29), Opcode.AND, 31, 30, 29, 0);
+    }
+
+    @Test
+    void SystemInstructions() {
+        // CSR numbers are unsigned
+        assertDecodes(Encoder.csrrw(5, Csrs.SATP, 6), Opcode.CSRRW, 5, 6, Csrs.SATP & 0x1F, Csrs.SATP);
+        assertEquals(Opcode.CSRRSI, Decoder.decode(Encoder.csrrsi(0, Csrs.SSTATUS, 2)).opcode);
+        assertEquals(Opcode.SRET, Decoder.decode(Encoder.sret()).opcode);
+        assertEquals(Opcode.SFENCE_VMA, Decoder.decode(Encoder.sfenceVma(0, 0)).opcode);
+        assertEquals(Opcode.ECALL, Decoder.decode(0x00000073).opcode);
+        assertEquals(Opcode.EBREAK, Decoder.decode(0x00100073).opcode);
+
+        // Other privileged words and ecall or ebreak with rd or rs1 set are illegal
+        assertEquals(Opcode.UNKNOWN, Decoder.decode(0x30200073).opcode);     // mret
+        assertEquals(Opcode.UNKNOWN, Decoder.decode(0x10500073).opcode);     // wfi
+        assertEquals(Opcode.UNKNOWN, Decoder.decode(0x00200073).opcode);     // uret
+        assertEquals(Opcode.UNKNOWN, Decoder.decode(0x000000F3).opcode);     // ecall, rd = 1
+        assertEquals(Opcode.UNKNOWN, Decoder.decode(0x00108073).opcode);     // ebreak, rs1 = 1
+    }
+
+    @Test
+    void Unknown() {
+        // Unused opcodes and function codes decode as UNKNOWN rather than throwing
+        assertEquals(Opcode.UNKNOWN, Decoder.decode(0).opcode);
+        assertEquals(Opcode.UNKNOWN, Decoder.decode(0xFFFFFFFF).opcode);
+        assertEquals(Opcode.UNKNOWN, Decoder.decode(Encoder.lw(1, 2, 0) | 0b011 << 12).opcode);
+        assertEquals(Opcode.UNKNOWN, Decoder.decode(Encoder.add(1, 2, 3) | 1 << 25).opcode);
+    }
+}
@@ -0,0 +1,123 @@
+package processor;
+
+// Builds assembly text for decoded instructions. Execution never calls this; the
+// text is only produced when a trace sink, the .asm writer or the REPL asks for it.
+public final class Disassembler {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private Disassembler() {
+    }
+
+    public static String disassemble(DecodedInstruction decoded) {
+        StringBuilder text = new StringBuilder(32);
+        appendTo(text, decoded);
+        return text.toString();
+    }
+
+    // Append the assembly text of decoded, e.g. "addi x5, x0, 5" or "lw x6, 0(x5)"
+    public static void appendTo(StringBuilder text, DecodedInstruction decoded) {
+        int imm = decoded.imm;
+        switch (decoded.opcode) {
+            case LUI:
+            case AUIPC:
+                mnemonic(text, decoded).append('x').append(decoded.rd).append(", ").append(imm >>> 12);
+                break;
+            case JAL:
+                mnemonic(text, decoded).append('x').append(decoded.rd).append(", ").append(imm);
+                break;
+            case BEQ:
+            case BNE:
+            case BLT:
+            case BGE:
+            case BLTU:
+            case BGEU:
+                mnemonic(text, decoded).append('x').append(decoded.rs1).append(", x").append(decoded.rs2)
+                        .append(", ").append(imm);
+                break;
+            case LB:
+            case LH:
+            case LW:
+            case LBU:
+            case LHU:
+                mnemonic(text, decoded).append('x').append(decoded.rd).append(", ").append(imm)
+                        .append("(x").append(decoded.rs1).append(')');
+                break;
+            case SB:
+            case SH:
+            case SW:
+                mnemonic(text, decoded).append('x').append(decoded.rs2).append(", ").append(imm)
+                        .append("(x").append(decoded.rs1).append(')');
+                break;
+            case JALR:
+            case ADDI:
+            case SLTI:
+            case XORI:
+            case ORI:
+            case ANDI:
+                mnemonic(text, decoded).append('x').append(decoded.rd).append(", x").append(decoded.rs1)
+                        .append(", ").append(imm);
+                break;
+            case SLTIU:
+                // The immediate is sign-extended but compared unsigned
+                mnemonic(text, decoded).append('x').append(decoded.rd).append(", x").append(decoded.rs1)
+                        .append(", ").append(Integer.toUnsignedLong(imm));
+                break;
+            case SLLI:
+            case SRLI:
+            case SRAI:
+                mnemonic(text, decoded).append('x').append(decoded.rd).append(", x").append(decoded.rs1)
+                        .append(", ").append(imm & 0x1F);
+                break;
+            case FENCE:
+            case ECALL:
+            case EBREAK:
+            case SRET:
+                text.append(decoded.opcode.getMnemonic());
+                break;
+            case SFENCE_VMA:
+                mnemonic(text, decoded).append('x').append(decoded.rs1).append(", x").append(decoded.rs2);
+                break;
+            case CSRRW:
+            case CSRRS:
+            case CSRRC:
+                // csrrw rd, csr, rs1 with the CSR number in hex
+                mnemonic(text, decoded).append('x').append(decoded.rd).append(", 0x")
+                        .append(Integer.toHexString(imm)).append(", x").append(decoded.rs1);
+                break;
+            case CSRRWI:
+            case CSRRSI:
+            case CSRRCI:
+                // The rs1 field is the 5-bit immediate
+                mnemonic(text, decoded).append('x').append(decoded.rd).append(", 0x")
+                        .append(Integer.toHexString(imm)).append(", ").append(decoded.rs1);
+                break;
+            case UNKNOWN:
+                text.append("unknown ");
+                appendHex(text, decoded.instruction);
+                break;
+            default:
+                // Register-register operations
+                mnemonic(text, decoded).append('x').append(decoded.rd).append(", x").append(decoded.rs1)
+                        .append(", x").append(decoded.rs2);
+                break;
+        }
+    }
+
+    private static StringBuilder mnemonic(StringBuilder text, DecodedInstruction decoded) {
+        return text.append(decoded.opcode.getMnemonic()).append(' ');
+    }
+
+    // Same text as String.format("0x%08x", value)
+    public static String hex(int value) {
+        StringBuilder text = new StringBuilder(10);
+        appendHex(text, value);
+        return text.toString();
+    }
+
+    public static void appendHex(StringBuilder text, int value) {
+        text.append("0x");
+        for (int shift = 28; shift >= 0; shift -= 4) {
+            text.append(HEX_DIGITS[(value >>> shift) & 0xF]);
+        }
+    }
+}
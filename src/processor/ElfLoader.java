@@ -0,0 +1,213 @@
+package processor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// Loads RV32 ELF executables: every PT_LOAD segment is copied into memory in one
+// bulk store, the rest of its memory size (.bss) is zero filled, the pc is set to
+// e_entry and the symbol table is kept for the debugger.
+public class ElfLoader {
+    private static final int EI_CLASS = 4;
+    private static final int EI_DATA = 5;
+    private static final int ELFCLASS32 = 1;
+    private static final int ELFDATA2LSB = 1;
+    private static final int ET_EXEC = 2;
+    private static final int EM_RISCV = 243;
+    private static final int PT_LOAD = 1;
+    private static final int SHT_SYMTAB = 2;
+    private static final int STT_FUNC = 2;
+    private static final int SHN_UNDEF = 0;
+    private static final int SHN_ABS = 0xFFF1;
+
+    private Memory memory;
+    private Registers registers;
+    private int entry;
+    private long loadedBytes;       // bytes copied from the file
+    private long zeroedBytes;       // .bss bytes zero filled
+    private long loadNanos;
+
+    public ElfLoader(Memory memory, Registers registers) {
+        this.memory = memory;
+        this.registers = registers;
+    }
+
+    // True if the file starts with the ELF magic number
+    public static boolean isElf(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining() && channel.read(magic) > 0) {
+                // keep reading
+            }
+            return magic.position() == 4 && magic.get(0) == 0x7F && magic.get(1) == 'E'
+                    && magic.get(2) == 'L' && magic.get(3) == 'F';
+        }
+    }
+
+    public SymbolTable load(String filename) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(filename + " is too large to load");
+            }
+            MappedByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            file.order(ByteOrder.LITTLE_ENDIAN);
+            checkHeader(filename, file);
+
+            entry = file.getInt(0x18);
+            loadSegments(filename, file);
+            SymbolTable symbols = readSymbols(filename, file);
+            registers.setPc(entry);
+
+            loadNanos = System.nanoTime() - start;
+            if (Log.LOADER.isInfo()) {
+                Log.LOADER.info(String.format("Loaded %d bytes and zeroed %d bytes from %s in %.3f ms, entry 0x%08x, %d symbols",
+                        loadedBytes, zeroedBytes, filename, loadNanos / 1e6, entry, symbols.size()));
+            }
+            return symbols;
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException(filename + " is truncated or has an invalid header", e);
+        }
+    }
+
+    private static void checkHeader(String filename, ByteBuffer file) throws IOException {
+        if (file.limit() < 52 || file.getInt(0) != 0x464C457F) {
+            throw new IOException(filename + " is not an ELF file");
+        }
+        if (file.get(EI_CLASS) != ELFCLASS32 || file.get(EI_DATA) != ELFDATA2LSB) {
+            throw new IOException(filename + " is not a 32-bit little-endian ELF file");
+        }
+        if (Short.toUnsignedInt(file.getShort(0x12)) != EM_RISCV) {
+            throw new IOException(filename + " is not a RISC-V executable");
+        }
+        if (Short.toUnsignedInt(file.getShort(0x10)) != ET_EXEC) {
+            throw new IOException(filename + " is not an executable (relocatable or shared objects are not supported)");
+        }
+    }
+
+    private void loadSegments(String filename, ByteBuffer file) throws IOException {
+        int phoff = file.getInt(0x1C);
+        int phentsize = Short.toUnsignedInt(file.getShort(0x2A));
+        int phnum = Short.toUnsignedInt(file.getShort(0x2C));
+        loadedBytes = 0;
+        zeroedBytes = 0;
+        byte[] copy = new byte[0];
+        for (int i = 0; i < phnum; i++) {
+            int header = phoff + i * phentsize;
+            if (file.getInt(header) != PT_LOAD) {
+                continue;
+            }
+            int offset = file.getInt(header + 4);
+            int vaddr = file.getInt(header + 8);
+            int filesz = file.getInt(header + 16);
+            int memsz = file.getInt(header + 20);
+            if (filesz < 0 || memsz < 0 || Integer.compareUnsigned(filesz, memsz) > 0
+                    || Integer.toUnsignedLong(offset) + filesz > file.limit()) {
+                throw new IOException(filename + ": invalid PT_LOAD segment " + i);
+            }
+            if (copy.length < filesz) {
+                copy = new byte[filesz];
+            }
+            file.get(offset, copy, 0, filesz);
+            memory.storeBytes(vaddr, copy, 0, filesz);
+            zeroFill(vaddr + filesz, memsz - filesz);
+            loadedBytes += filesz;
+            zeroedBytes += memsz - filesz;
+            if (Log.LOADER.isDebug()) {
+                Log.LOADER.debug(String.format("LOADER DEBUG: PT_LOAD 0x%08x filesz %d memsz %d", vaddr, filesz, memsz));
+            }
+        }
+    }
+
+    // The memory may not be fresh, so .bss is cleared explicitly
+    private void zeroFill(int address, int length) {
+        byte[] zeros = new byte[Math.min(length, Memory.PAGE_SIZE)];
+        while (length > 0) {
+            int chunk = Math.min(length, zeros.length);
+            memory.storeBytes(address, zeros, 0, chunk);
+            address += chunk;
+            length -= chunk;
+        }
+    }
+
+    // Defined function, object and untyped symbols from .symtab; empty if stripped
+    private static SymbolTable readSymbols(String filename, ByteBuffer file) throws IOException {
+        int shoff = file.getInt(0x20);
+        int shentsize = Short.toUnsignedInt(file.getShort(0x2E));
+        int shnum = Short.toUnsignedInt(file.getShort(0x30));
+        if (shoff == 0 || shnum == 0) {
+            return SymbolTable.empty();
+        }
+        List<Integer> addresses = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < shnum; i++) {
+            int section = shoff + i * shentsize;
+            if (file.getInt(section + 4) != SHT_SYMTAB) {
+                continue;
+            }
+            int offset = file.getInt(section + 16);
+            int size = file.getInt(section + 20);
+            int entsize = file.getInt(section + 36);
+            int link = file.getInt(section + 24);
+            int strings = file.getInt(shoff + link * shentsize + 16);
+            if (entsize <= 0) {
+                throw new IOException(filename + ": invalid symbol table entry size " + entsize);
+            }
+            for (int symbol = offset; symbol + entsize <= offset + size; symbol += entsize) {
+                int name = file.getInt(symbol);
+                int value = file.getInt(symbol + 4);
+                int type = file.get(symbol + 12) & 0xF;
+                int shndx = Short.toUnsignedInt(file.getShort(symbol + 14));
+                if (name == 0 || shndx == SHN_UNDEF || (shndx == SHN_ABS && type != STT_FUNC)
+                        || type > STT_FUNC) {
+                    continue;
+                }
+                String symbolName = string(file, strings + name);
+                if (symbolName.startsWith("$") || symbolName.startsWith(".L")) {
+                    // Mapping symbols and local labels
+                    continue;
+                }
+                addresses.add(value);
+                names.add(symbolName);
+            }
+        }
+        int[] addressArray = new int[addresses.size()];
+        for (int i = 0; i < addressArray.length; i++) {
+            addressArray[i] = addresses.get(i);
+        }
+        return new SymbolTable(addressArray, names.toArray(new String[0]));
+    }
+
+    private static String string(ByteBuffer file, int offset) {
+        int end = offset;
+        while (file.get(end) != 0) {
+            end++;
+        }
+        byte[] bytes = new byte[end - offset];
+        file.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public int getEntry() {
+        return entry;
+    }
+
+    public long getLoadedBytes() {
+        return loadedBytes;
+    }
+
+    public long getZeroedBytes() {
+        return zeroedBytes;
+    }
+
+    public long getLoadNanos() {
+        return loadNanos;
+    }
+}
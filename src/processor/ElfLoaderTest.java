@@ -0,0 +1,151 @@
+package processor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ElfLoaderTest {
+
+    private static final int TEXT = 0x1000;
+    private static final int DATA = 0x2000;
+
+    // Load the word at DATA and the first .bss word after it, add one to the first
+    private static final int[] PROGRAM = {
+            Encoder.lui(6, DATA >>> 12),
+            Encoder.lw(5, 6, 0),
+            Encoder.lw(7, 6, 4),
+            Encoder.addi(5, 5, 1),
+            0,                                  // halt
+    };
+
+    // A minimal RV32 executable: a text segment, a data segment of 4 bytes with 12
+    // more of .bss, and a symbol table with two symbols to keep, a mapping symbol
+    // and an undefined one to skip
+    private static byte[] executable() {
+        byte[] strings = "\0main\0buffer\0$x\0printf\0".getBytes(StandardCharsets.US_ASCII);
+        int programHeaders = 52;
+        int text = programHeaders + 2 * 32;
+        int data = text + PROGRAM.length * 4;
+        int symbols = data + 4;
+        int stringTable = symbols + 5 * 16;
+        int sectionHeaders = (stringTable + strings.length + 3) & ~3;
+        ByteBuffer file = ByteBuffer.allocate(sectionHeaders + 3 * 40).order(ByteOrder.LITTLE_ENDIAN);
+
+        file.put(new byte[] {0x7F, 'E', 'L', 'F', 1, 1, 1});
+        file.putShort(0x10, (short) 2).putShort(0x12, (short) 243).putInt(0x14, 1)
+                .putInt(0x18, TEXT).putInt(0x1C, programHeaders).putInt(0x20, sectionHeaders)
+                .putShort(0x28, (short) 52).putShort(0x2A, (short) 32).putShort(0x2C, (short) 2)
+                .putShort(0x2E, (short) 40).putShort(0x30, (short) 3);
+
+        file.position(programHeaders);
+        file.putInt(1).putInt(text).putInt(TEXT).putInt(TEXT).putInt(PROGRAM.length * 4).putInt(PROGRAM.length * 4).putInt(5).putInt(4);
+        file.putInt(1).putInt(data).putInt(DATA).putInt(DATA).putInt(4).putInt(16).putInt(6).putInt(4);
+        for (int word : PROGRAM) {
+            file.putInt(word);
+        }
+        file.putInt(41);
+
+        // name, value, size, info, other, section index
+        file.put(new byte[16]);
+        file.putInt(1).putInt(TEXT).putInt(PROGRAM.length * 4).put((byte) 0x12).put((byte) 0).putShort((short) 1);
+        file.putInt(6).putInt(DATA).putInt(16).put((byte) 0x11).put((byte) 0).putShort((short) 2);
+        file.putInt(13).putInt(TEXT).putInt(0).put((byte) 0).put((byte) 0).putShort((short) 1);
+        file.putInt(16).putInt(0).putInt(0).put((byte) 0x12).put((byte) 0).putShort((short) 0);
+        file.put(strings);
+
+        // null, .symtab linked to .strtab, .strtab
+        file.position(sectionHeaders + 40);
+        file.putInt(0).putInt(2).putInt(0).putInt(0).putInt(symbols).putInt(5 * 16).putInt(2).putInt(1).putInt(4).putInt(16);
+        file.putInt(0).putInt(3).putInt(0).putInt(0).putInt(stringTable).putInt(strings.length).putInt(0).putInt(0).putInt(1).putInt(0);
+        return file.array();
+    }
+
+    private static Path write(byte[] contents) throws IOException {
+        Path path = Files.createTempFile("program", ".elf");
+        Files.write(path, contents);
+        return path;
+    }
+
+    @Test
+    void LoadSegmentsAndSymbols() throws IOException {
+        Path path = write(executable());
+        try {
+            Memory memory = new Memory();
+            Registers registers = new Registers();
+            // .bss must be cleared even if the memory is not fresh
+            memory.storeWord(DATA + 4, -1);
+            assertTrue(ElfLoader.isElf(path.toString()));
+
+            ElfLoader loader = new ElfLoader(memory, registers);
+            SymbolTable symbols = loader.load(path.toString());
+            assertEquals(TEXT, loader.getEntry());
+            assertEquals(TEXT, registers.getPc());
+            for (int i = 0; i < PROGRAM.length; i++) {
+                assertEquals(PROGRAM[i], memory.loadWord2(TEXT + 4 * i));
+            }
+            assertEquals(41, memory.loadWord2(DATA));
+            assertEquals(0, memory.loadWord2(DATA + 4));
+            assertEquals(PROGRAM.length * 4 + 4, loader.getLoadedBytes());
+            assertEquals(12, loader.getZeroedBytes());
+
+            assertEquals(2, symbols.size());
+            assertEquals(TEXT, symbols.addressOf("main"));
+            assertEquals(DATA, symbols.addressOf("buffer"));
+            assertNull(symbols.addressOf("$x"));
+            assertNull(symbols.addressOf("printf"));
+            assertEquals("main+0x8", symbols.describe(TEXT + 8));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    void RunLoadedProgram() throws IOException {
+        Path path = write(executable());
+        try {
+            Simulator simulator = new Simulator();
+            simulator.load(path.toString(), "");
+            assertEquals(Simulator.Stop.HALT, simulator.run());
+            assertEquals(42, simulator.getRegisters().getInt(5));
+            assertEquals(0, simulator.getRegisters().getInt(7));
+            assertEquals(TEXT, simulator.getSymbols().addressOf("main"));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    void RejectsInvalidFiles() throws IOException {
+        byte[] other = executable();
+        other[0x12] = 62;                       // x86-64
+        byte[] truncated = Arrays.copyOf(executable(), 40);
+        byte[] badSegment = executable();
+        ByteBuffer.wrap(badSegment).order(ByteOrder.LITTLE_ENDIAN).putInt(52 + 16, 1 << 20);
+        for (byte[] contents : new byte[][] {other, truncated, badSegment}) {
+            Path path = write(contents);
+            try {
+                assertThrows(IOException.class, () -> new ElfLoader(new Memory(), new Registers()).load(path.toString()));
+            } finally {
+                Files.deleteIfExists(path);
+            }
+        }
+
+        Path path = write("00000000000000000000000000000000\n".getBytes(StandardCharsets.US_ASCII));
+        try {
+            assertFalse(ElfLoader.isElf(path.toString()));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
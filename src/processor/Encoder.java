@@ -0,0 +1,217 @@
+package processor;
+
+// Builds RV32I instruction words, the inverse of Decoder. Used to put together
+// synthetic programs for benchmarks and generated workloads. Branch and jump
+// offsets are in bytes relative to the instruction, as in Decoder.
+public final class Encoder {
+
+    private Encoder() {
+    }
+
+    private static int r(int funct7, int rs2, int rs1, int funct3, int rd, int opcode) {
+        return funct7 << 25 | rs2 << 20 | rs1 << 15 | funct3 << 12 | rd << 7 | opcode;
+    }
+
+    private static int i(int imm, int rs1, int funct3, int rd, int opcode) {
+        return (imm & 0xFFF) << 20 | rs1 << 15 | funct3 << 12 | rd << 7 | opcode;
+    }
+
+    private static int s(int imm, int rs2, int rs1, int funct3) {
+        return ((imm >> 5) & 0x7F) << 25 | rs2 << 20 | rs1 << 15 | funct3 << 12 | (imm & 0x1F) << 7 | 0b0100011;
+    }
+
+    private static int b(int offset, int rs2, int rs1, int funct3) {
+        return ((offset >> 12) & 0x1) << 31 | ((offset >> 5) & 0x3F) << 25 | rs2 << 20 | rs1 << 15
+                | funct3 << 12 | ((offset >> 1) & 0xF) << 8 | ((offset >> 11) & 0x1) << 7 | 0b1100011;
+    }
+
+    // U-type: imm is the value of the upper 20 bits, e.g. lui(5, 0x10010) sets 0x10010000
+    public static int lui(int rd, int imm) {
+        return imm << 12 | rd << 7 | 0b0110111;
+    }
+
+    public static int auipc(int rd, int imm) {
+        return imm << 12 | rd << 7 | 0b0010111;
+    }
+
+    public static int jal(int rd, int offset) {
+        return ((offset >> 20) & 0x1) << 31 | ((offset >> 1) & 0x3FF) << 21 | ((offset >> 11) & 0x1) << 20
+                | ((offset >> 12) & 0xFF) << 12 | rd << 7 | 0b1101111;
+    }
+
+    public static int jalr(int rd, int rs1, int imm) {
+        return i(imm, rs1, 0b000, rd, 0b1100111);
+    }
+
+    public static int beq(int rs1, int rs2, int offset) {
+        return b(offset, rs2, rs1, 0b000);
+    }
+
+    public static int bne(int rs1, int rs2, int offset) {
+        return b(offset, rs2, rs1, 0b001);
+    }
+
+    public static int blt(int rs1, int rs2, int offset) {
+        return b(offset, rs2, rs1, 0b100);
+    }
+
+    public static int bge(int rs1, int rs2, int offset) {
+        return b(offset, rs2, rs1, 0b101);
+    }
+
+    public static int bltu(int rs1, int rs2, int offset) {
+        return b(offset, rs2, rs1, 0b110);
+    }
+
+    public static int bgeu(int rs1, int rs2, int offset) {
+        return b(offset, rs2, rs1, 0b111);
+    }
+
+    public static int lb(int rd, int rs1, int imm) {
+        return i(imm, rs1, 0b000, rd, 0b0000011);
+    }
+
+    public static int lh(int rd, int rs1, int imm) {
+        return i(imm, rs1, 0b001, rd, 0b0000011);
+    }
+
+    public static int lw(int rd, int rs1, int imm) {
+        return i(imm, rs1, 0b010, rd, 0b0000011);
+    }
+
+    public static int lbu(int rd, int rs1, int imm) {
+        return i(imm, rs1, 0b100, rd, 0b0000011);
+    }
+
+    public static int lhu(int rd, int rs1, int imm) {
+        return i(imm, rs1, 0b101, rd, 0b0000011);
+    }
+
+    public static int sb(int rs2, int rs1, int imm) {
+        return s(imm, rs2, rs1, 0b000);
+    }
+
+    public static int sh(int rs2, int rs1, int imm) {
+        return s(imm, rs2, rs1, 0b001);
+    }
+
+    public static int sw(int rs2, int rs1, int imm) {
+        return s(imm, rs2, rs1, 0b010);
+    }
+
+    public static int addi(int rd, int rs1, int imm) {
+        return i(imm, rs1, 0b000, rd, 0b0010011);
+    }
+
+    public static int slti(int rd, int rs1, int imm) {
+        return i(imm, rs1, 0b010, rd, 0b0010011);
+    }
+
+    public static int sltiu(int rd, int rs1, int imm) {
+        return i(imm, rs1, 0b011, rd, 0b0010011);
+    }
+
+    public static int xori(int rd, int rs1, int imm) {
+        return i(imm, rs1, 0b100, rd, 0b0010011);
+    }
+
+    public static int ori(int rd, int rs1, int imm) {
+        return i(imm, rs1, 0b110, rd, 0b0010011);
+    }
+
+    public static int andi(int rd, int rs1, int imm) {
+        return i(imm, rs1, 0b111, rd, 0b0010011);
+    }
+
+    public static int slli(int rd, int rs1, int shamt) {
+        return r(0, shamt, rs1, 0b001, rd, 0b0010011);
+    }
+
+    public static int srli(int rd, int rs1, int shamt) {
+        return r(0, shamt, rs1, 0b101, rd, 0b0010011);
+    }
+
+    public static int srai(int rd, int rs1, int shamt) {
+        return r(0b0100000, shamt, rs1, 0b101, rd, 0b0010011);
+    }
+
+    public static int add(int rd, int rs1, int rs2) {
+        return r(0, rs2, rs1, 0b000, rd, 0b0110011);
+    }
+
+    public static int sub(int rd, int rs1, int rs2) {
+        return r(0b0100000, rs2, rs1, 0b000, rd, 0b0110011);
+    }
+
+    public static int sll(int rd, int rs1, int rs2) {
+        return r(0, rs2, rs1, 0b001, rd, 0b0110011);
+    }
+
+    public static int slt(int rd, int rs1, int rs2) {
+        return r(0, rs2, rs1, 0b010, rd, 0b0110011);
+    }
+
+    public static int sltu(int rd, int rs1, int rs2) {
+        return r(0, rs2, rs1, 0b011, rd, 0b0110011);
+    }
+
+    public static int xor(int rd, int rs1, int rs2) {
+        return r(0, rs2, rs1, 0b100, rd, 0b0110011);
+    }
+
+    public static int srl(int rd, int rs1, int rs2) {
+        return r(0, rs2, rs1, 0b101, rd, 0b0110011);
+    }
+
+    public static int sra(int rd, int rs1, int rs2) {
+        return r(0b0100000, rs2, rs1, 0b101, rd, 0b0110011);
+    }
+
+    public static int or(int rd, int rs1, int rs2) {
+        return r(0, rs2, rs1, 0b110, rd, 0b0110011);
+    }
+
+    public static int and(int rd, int rs1, int rs2) {
+        return r(0, rs2, rs1, 0b111, rd, 0b0110011);
+    }
+
+    // Zicsr: csr is the 12-bit CSR number, e.g. Csrs.SATP
+    public static int csrrw(int rd, int csr, int rs1) {
+        return i(csr, rs1, 0b001, rd, 0b1110011);
+    }
+
+    public static int csrrs(int rd, int csr, int rs1) {
+        return i(csr, rs1, 0b010, rd, 0b1110011);
+    }
+
+    public static int csrrc(int rd, int csr, int rs1) {
+        return i(csr, rs1, 0b011, rd, 0b1110011);
+    }
+
+    public static int csrrwi(int rd, int csr, int zimm) {
+        return i(csr, zimm, 0b101, rd, 0b1110011);
+    }
+
+    public static int csrrsi(int rd, int csr, int zimm) {
+        return i(csr, zimm, 0b110, rd, 0b1110011);
+    }
+
+    public static int csrrci(int rd, int csr, int zimm) {
+        return i(csr, zimm, 0b111, rd, 0b1110011);
+    }
+
+    public static int sret() {
+        return 0x10200073;
+    }
+
+    public static int sfenceVma(int rs1, int rs2) {
+        return r(0b0001001, rs2, rs1, 0b000, 0, 0b1110011);
+    }
+
+    // Load a 32-bit constant into rd with lui + addi, compensating for the sign
+    // extension of the low 12 bits. Always two words so offsets stay predictable.
+    public static int[] li(int rd, int value) {
+        int low = value << 20 >> 20;
+        return new int[] {lui(rd, (value - low) >>> 12), addi(rd, rd, low)};
+    }
+}
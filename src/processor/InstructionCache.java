@@ -0,0 +1,100 @@
+package processor;
+
+import java.util.Arrays;
+
+// Direct-mapped cache of decoded instructions indexed by pc. Memory invalidates
+// entries when a store overwrites a cached instruction word, so self-modifying
+// code is re-fetched and re-decoded.
+public class InstructionCache {
+    public static final int DEFAULT_ENTRIES = 1 << 14;
+
+    private final int[] tags;                      // pc of each cached entry
+    private final DecodedInstruction[] entries;
+    private final int indexMask;
+    private long hits;
+    private long misses;
+    private long invalidations;
+
+    public InstructionCache() {
+        this(DEFAULT_ENTRIES);
+    }
+
+    // entries must be a power of two
+    public InstructionCache(int entries) {
+        if (entries <= 0 || Integer.bitCount(entries) != 1) {
+            throw new IllegalArgumentException("Instruction cache size must be a power of two: " + entries);
+        }
+        this.tags = new int[entries];
+        this.entries = new DecodedInstruction[entries];
+        this.indexMask = entries - 1;
+    }
+
+    private int indexOf(int pc) {
+        return (pc >>> 2) & indexMask;
+    }
+
+    // Cached instruction at pc, or null on a miss
+    public DecodedInstruction get(int pc) {
+        int index = indexOf(pc);
+        DecodedInstruction entry = entries[index];
+        if (entry != null && tags[index] == pc) {
+            hits++;
+            return entry;
+        }
+        misses++;
+        return null;
+    }
+
+    public void put(int pc, DecodedInstruction instruction) {
+        int index = indexOf(pc);
+        tags[index] = pc;
+        entries[index] = instruction;
+    }
+
+    // Drop any cached instruction overlapping the length bytes written at address
+    public void invalidate(int address, int length) {
+        int first = address & ~3;
+        int last = (address + length - 1) & ~3;
+        if (((last - first) >>> 2) >= tags.length) {
+            // A bulk write covering every slot, cheaper to drop everything
+            clear();
+            return;
+        }
+        for (int word = first; word != last; word += 4) {
+            invalidateWord(word);
+        }
+        invalidateWord(last);
+    }
+
+    private void invalidateWord(int address) {
+        int index = indexOf(address);
+        if (entries[index] != null && tags[index] == address) {
+            entries[index] = null;
+            invalidations++;
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(entries, null);
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    @Override
+    public String toString() {
+        long lookups = hits + misses;
+        double hitRate = lookups == 0 ? 0.0 : 100.0 * hits / lookups;
+        return String.format("Instruction cache: %d hits, %d misses (%.2f%% hit rate), %d invalidations",
+                hits, misses, hitRate, invalidations);
+    }
+}
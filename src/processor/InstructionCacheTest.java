@@ -0,0 +1,81 @@
+package processor;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class InstructionCacheTest {
+
+    private InstructionCache testCache;
+    private DecodedInstruction testInstruction;
+
+    @BeforeEach
+    void setUp() {
+        testCache = new InstructionCache(16);
+        testInstruction = Decoder.decode(Encoder.addi(1, 0, 1));
+    }
+
+    @Test
+    void HitsAndMisses() {
+        assertNull(testCache.get(0x40));
+        testCache.put(0x40, testInstruction);
+        assertSame(testInstruction, testCache.get(0x40));
+
+        // 0x80 maps to the same slot as 0x40 in a 16-entry cache, so the tag must differ
+        assertNull(testCache.get(0x80));
+        assertEquals(1, testCache.getHits());
+        assertEquals(2, testCache.getMisses());
+
+        assertThrows(IllegalArgumentException.class, () -> new InstructionCache(12));
+    }
+
+    @Test
+    void StoresInvalidateOverlappingWords() {
+        testCache.put(0x40, testInstruction);
+        testCache.put(0x44, testInstruction);
+
+        // A byte store into the last byte of 0x40 drops that word only
+        testCache.invalidate(0x43, 1);
+        assertNull(testCache.get(0x40));
+        assertSame(testInstruction, testCache.get(0x44));
+
+        // A misaligned word store straddles 0x44 and 0x48
+        testCache.put(0x48, testInstruction);
+        testCache.invalidate(0x46, 4);
+        assertNull(testCache.get(0x44));
+        assertNull(testCache.get(0x48));
+        assertEquals(3, testCache.getInvalidations());
+    }
+
+    @Test
+    void SelfModifyingCode() throws IOException {
+        Simulator simulator = new Simulator();
+        Memory memory = simulator.getMemory();
+        int[] replacement = Encoder.li(7, Encoder.addi(5, 5, 100));
+
+        // Call the routine at 40, overwrite its first instruction, then call it again
+        int[] program = {
+                Encoder.jal(1, 40),                 // 0
+                replacement[0],                     // 4
+                replacement[1],                     // 8
+                Encoder.sw(7, 0, 40),               // 12
+                Encoder.jal(1, 24),                 // 16
+                0,                                  // 20: halt
+        };
+        for (int i = 0; i < program.length; i++) {
+            memory.storeWord(4 * i, program[i]);
+        }
+        memory.storeWord(40, Encoder.addi(5, 5, 1));
+        memory.storeWord(44, Encoder.jalr(0, 1, 0));
+
+        assertEquals(Simulator.Stop.HALT, simulator.run());
+        // A stale decoded addi would leave 2
+        assertEquals(101, simulator.getRegisters().getInt(5));
+        assertEquals(1, simulator.getPipeline().getInstructionCache().getInvalidations());
+    }
+}
@@ -1,1073 +1,698 @@
 package processor;
 
-import java.util.HashMap;
-
+// Handler for one decoded instruction. Operands are register numbers and the
+// sign-extended immediate from DecodedInstruction; unused operands are ignored.
 @FunctionalInterface
 interface InstructionFunction {
-	String execute(HashMap<String, String> asmInstruction);
+	void execute(int rd, int rs1, int rs2, int imm);
 }
 
 public class Instructions {
 	private Memory memory;
 	public Registers registers;
+	private CacheHierarchy caches;	// sees every load and store, may be null
+	private final Csrs csrs = new Csrs();
+	private final Mmu mmu = csrs.getMmu();
 
 	public Instructions(Memory memory, Registers registers) {
 		this.memory = memory;
 		this.registers = registers;
 	}
 
-	public String LUI(HashMap<String, String> instructionComponents) {
-		// Extract components from the HashMap
-		String rd = instructionComponents.get("rd"); // destination register
-		String imm = instructionComponents.get("imm"); // immediate value
+	// Supervisor CSRs and the MMU that loads and stores go through
+	public Csrs getCsrs() {
+		return csrs;
+	}
 
-		// Convert immediate value from binary string to integer
-		int immediate = (int) Long.parseUnsignedLong(Utility.leftPad(imm), 2);
+	void setCaches(CacheHierarchy caches) {
+		this.caches = caches;
+	}
 
-		// Perform LUI operation (shift immediate value left by 12 bits)
-		int result = immediate << 12;
+	// Point the handlers at other machine state, e.g. a fork
+	void setState(Memory memory, Registers registers) {
+		this.memory = memory;
+		this.registers = registers;
+	}
 
-		// Convert result to 32-bit binary string
-		String resultBinary = Utility.leftPadSigned(result);
-		System.out.println("LUI DEBUG: Shifting " + immediate + " left by " + 12 + " to get " + result);
+	public void LUI(int rd, int rs1, int rs2, int imm) {
+		// The decoder has already shifted the immediate into the upper 20 bits
+		if (Log.EXEC.isDebug()) {
+			Log.EXEC.debug("LUI DEBUG: Shifting " + (imm >>> 12) + " left by " + 12 + " to get " + imm);
+		}
 
 		// Update rd register value
-		registers.setRegisterValue(rd, resultBinary);
+		registers.setInt(rd, imm);
 		registers.incrementProgramCounter();
-
-		// Build and return the instruction result string
-		return String.format("lui %s, %d", rd, immediate);
 	}
 
-	public String AUIPC(HashMap<String, String> instructionComponents) {
-		String rd = instructionComponents.get("rd");
-		String imm = instructionComponents.get("imm");
-
-		int immediate = Integer.parseUnsignedInt(Utility.leftPad(imm), 2);
-
-		// Convert program counter to integer before adding the offset
-		int programCounter = Integer.parseUnsignedInt(registers.getProgramCounter(), 2);
-		int result = programCounter + immediate;
+	public void AUIPC(int rd, int rs1, int rs2, int imm) {
+		// Add the upper immediate to the address of this instruction
+		int result = registers.getPc() + imm;
 
 		// Set the result to the destination register (rd)
-		registers.setRegisterValue(rd, Integer.toUnsignedString(result, 2));
+		registers.setInt(rd, result);
 
 		// Increment the program counter
 		registers.incrementProgramCounter();
-
-		return String.format("auipc %s, %d", rd, immediate);
 	}
 
-	public String JAL(HashMap<String, String> instructionComponents) {
-		String rd = instructionComponents.get("rd");
-		String imm = instructionComponents.get("imm");
-
-		int immediate = Integer.parseUnsignedInt(Utility.leftPad(imm), 2);
-
-		// Convert program counter to integer before adding the offset
-		int programCounter = Integer.parseUnsignedInt(registers.getProgramCounter(), 2);
-		int jumpTargetAddress = programCounter + immediate;
-		System.out.println("JAL DEBUG: immediate: " + immediate + " programCounter: " + programCounter
-				+ " jumpTargetAddress: " + jumpTargetAddress);
+	public void JAL(int rd, int rs1, int rs2, int imm) {
+		int programCounter = registers.getPc();
+		int jumpTargetAddress = programCounter + imm;
+		if (Log.EXEC.isDebug()) {
+			Log.EXEC.debug("JAL DEBUG: immediate: " + imm + " programCounter: " + programCounter
+					+ " jumpTargetAddress: " + jumpTargetAddress);
+		}
 
 		// Save the return address (program counter + 4) in the destination register
-		registers.setRegisterValue(rd, Integer.toUnsignedString(programCounter + 4, 2));
+		registers.setInt(rd, programCounter + 4);
 
 		// Set the program counter to the jump target address
-		registers.setProgramCounter(Integer.toUnsignedString(jumpTargetAddress, 2));
-
-		return String.format("jal %s, %d", rd, immediate);
+		registers.setPc(jumpTargetAddress);
 	}
 
-	public String JALR(HashMap<String, String> instructionComponents) {
-		String rd = instructionComponents.get("rd");
-		String rs1 = instructionComponents.get("rs1");
-		String imm = instructionComponents.get("imm");
-
-		int immediate = Integer.parseUnsignedInt(Utility.leftPad(imm), 2);
-
-		// Read the value from the base register (rs1)
-		int baseRegisterValue = Integer.parseUnsignedInt(registers.getRegisterValue(rs1), 2);
-
-
+	public void JALR(int rd, int rs1, int rs2, int imm) {
 		// Calculate the jump target address by adding the immediate to the base
-		// register value
-		int jumpTargetAddress = baseRegisterValue + immediate;
-		String jumpTargetString = Utility.leftPad("0" + Integer.toUnsignedString(jumpTargetAddress, 2));
-		//replace last char with 0
-		jumpTargetString = jumpTargetString.substring(0, jumpTargetString.length() - 1) + "0";
+		// register value and clearing the lowest bit. Read rs1 before rd is written.
+		int jumpTargetAddress = (registers.getInt(rs1) + imm) & ~1;
 
 		// Save the return address (program counter + 4) in the destination register
 		// (rd)
-		registers.setRegisterValue(rd,
-				Integer.toUnsignedString(Integer.parseInt(registers.getProgramCounter(), 2) + 4, 2));
+		registers.setInt(rd, registers.getPc() + 4);
 
-		System.out.println("JALR DEBUG: Jump to " + jumpTargetString);
+		if (Log.EXEC.isDebug()) {
+			Log.EXEC.debug("JALR DEBUG: Jump to " + jumpTargetAddress);
+		}
 
 		// Set the program counter to the jump target address
-		registers.setProgramCounter(jumpTargetString);
-
-		return String.format("jalr %s, %s, %d", rd, rs1, immediate);
+		registers.setPc(jumpTargetAddress);
 	}
 
-	public String BEQ(HashMap<String, String> instructionComponents) {
-		String rs1 = instructionComponents.get("rs1");
-		String rs2 = instructionComponents.get("rs2");
-		String imm = instructionComponents.get("imm");
-
-		String rs1Value = registers.getRegisterValue(rs1);
-		String rs2Value = registers.getRegisterValue(rs2);
-		int offset = Integer.parseUnsignedInt(imm, 2);
-		System.out.println("BEQ DEBUG: offset: " + offset);
-
-		// Convert program counter to integer before adding the offset
-		int programCounter = Integer.parseUnsignedInt(registers.getProgramCounter(), 2);
-		System.out.println("BEQ DEBUG: programCounter: " + programCounter);
-		int branchTargetAddress = programCounter + offset;
-		System.out.println("BEQ DEBUG: branchTargetAddress: " + branchTargetAddress);
-		// Branch if rs1Value is equal to rs2Value
+	public void BEQ(int rd, int rs1, int rs2, int imm) {
+		int branchTargetAddress = registers.getPc() + imm;
+		if (Log.EXEC.isDebug()) {
+			Log.EXEC.debug("BEQ DEBUG: offset: " + imm + " branchTargetAddress: " + branchTargetAddress);
+		}
 
-		int rs1IntValue = Integer.parseUnsignedInt(rs1Value, 2);
-		int rs2IntValue = Integer.parseUnsignedInt(rs2Value, 2);
+		int rs1IntValue = registers.getInt(rs1);
+		int rs2IntValue = registers.getInt(rs2);
 
-		if (rs1Value.equals(rs2Value)) {
-			System.out.println("BEQ DEBUG: rs1Value (" + rs1IntValue + ") is equal to rs2Value (" + rs2IntValue
-					+ ") branching to " + branchTargetAddress);
-			registers.setProgramCounter(Integer.toUnsignedString(branchTargetAddress, 2));
+		// Branch if rs1Value is equal to rs2Value
+		if (rs1IntValue == rs2IntValue) {
+			if (Log.EXEC.isDebug()) {
+				Log.EXEC.debug("BEQ DEBUG: rs1Value (" + rs1IntValue + ") is equal to rs2Value (" + rs2IntValue
+						+ ") branching to " + branchTargetAddress);
+			}
+			registers.setPc(branchTargetAddress);
 		} else {
-			System.out.println("BEQ DEBUG: rs1Value (" + rs1IntValue + ") is not equal to rs2Value (" + rs2IntValue
-					+ ") incrementing program counter");
+			if (Log.EXEC.isDebug()) {
+				Log.EXEC.debug("BEQ DEBUG: rs1Value (" + rs1IntValue + ") is not equal to rs2Value (" + rs2IntValue
+						+ ") incrementing program counter");
+			}
 			registers.incrementProgramCounter();
 		}
-
-		return String.format("beq %s, %s, %d", rs1, rs2, offset);
 	}
 
-	public String BNE(HashMap<String, String> instructionComponents) {
-		String rs1 = instructionComponents.get("rs1");
-		String rs2 = instructionComponents.get("rs2");
-		String imm = instructionComponents.get("imm");
-
-		int immediate = Integer.parseUnsignedInt(Utility.leftPad(imm), 2);
-
-		String rs1Value = registers.getRegisterValue(rs1);
-		String rs2Value = registers.getRegisterValue(rs2);
-		int offset = Integer.parseUnsignedInt(Utility.leftPad(imm), 2);
-
-		// Convert program counter to integer before adding the offset
-		int programCounter = Integer.parseUnsignedInt(registers.getProgramCounter(), 2);
-		int branchTargetAddress = programCounter + offset;
+	public void BNE(int rd, int rs1, int rs2, int imm) {
+		int branchTargetAddress = registers.getPc() + imm;
 
 		// Branch if rs1Value is not equal to rs2Value
-		boolean isNotEqual = !rs1Value.equals(rs2Value);
+		boolean isNotEqual = registers.getInt(rs1) != registers.getInt(rs2);
 
-		System.out.println("BNE DEBUG: Branch if " + rs1 + " not equal " + rs2 + " MOVE TO " + branchTargetAddress);
+		if (Log.EXEC.isDebug()) {
+			Log.EXEC.debug("BNE DEBUG: Branch if x" + rs1 + " not equal x" + rs2 + " MOVE TO " + branchTargetAddress);
+		}
 		if (isNotEqual) {
-			registers.setProgramCounter(Integer.toUnsignedString(branchTargetAddress, 2));
+			registers.setPc(branchTargetAddress);
 		} else {
 			registers.incrementProgramCounter();
 		}
-
-		return String.format("bne %s, %s, %d", rs1, rs2, immediate);
 	}
 
-	public String BLT(HashMap<String, String> instructionComponents) {
-		String rs1 = instructionComponents.get("rs1");
-		String rs2 = instructionComponents.get("rs2");
-		String imm = instructionComponents.get("imm");
-
-		int offset = Integer.parseUnsignedInt(Utility.leftPad(imm), 2);
-
-		String rs1Value = registers.getRegisterValue(rs1);
-		String rs2Value = registers.getRegisterValue(rs2);
-
+	public void BLT(int rd, int rs1, int rs2, int imm) {
 		// Branch if rs1Value is less than rs2Value
-		boolean isLessThan = rs1Value.compareTo(rs2Value) < 0;
+		boolean isLessThan = registers.getInt(rs1) < registers.getInt(rs2);
 
-		System.out.println("BLT DEBUG: Branch if " + rs1 + " less than " + rs2 + " MOVE TO " + offset);
+		if (Log.EXEC.isDebug()) {
+			Log.EXEC.debug("BLT DEBUG: Branch if x" + rs1 + " less than x" + rs2 + " MOVE TO " + imm);
+		}
 		if (isLessThan) {
-			int programCounter = Integer.parseUnsignedInt(registers.getProgramCounter(), 2);
-			int branchTargetAddress = programCounter + offset;
-			registers.setProgramCounter(Integer.toUnsignedString(branchTargetAddress, 2));
+			registers.setPc(registers.getPc() + imm);
 		} else {
 			registers.incrementProgramCounter();
 		}
-
-		return String.format("blt %s, %s, %d", rs1, rs2, offset);
 	}
 
-	public String BGE(HashMap<String, String> instructionComponents) {
-		String rs1 = instructionComponents.get("rs1");
-		String rs2 = instructionComponents.get("rs2");
-		String imm = instructionComponents.get("imm");
-
-		String rs1Value = registers.getRegisterValue(rs1);
-		String rs2Value = registers.getRegisterValue(rs2);
-		int offset = Integer.parseUnsignedInt(imm, 2);
-		System.out.println("BGE DEBUG: offset: " + offset);
-
-		// Convert program counter to integer before adding the offset
-		int programCounter = Integer.parseUnsignedInt(registers.getProgramCounter(), 2);
-		System.out.println("BGE DEBUG: programCounter: " + programCounter);
-		int branchTargetAddress = programCounter + offset;
-		System.out.println("BGE DEBUG: branchTargetAddress: " + branchTargetAddress);
-		// Branch if rs1Value is greater than or equal to rs2Value
+	public void BGE(int rd, int rs1, int rs2, int imm) {
+		int branchTargetAddress = registers.getPc() + imm;
+		if (Log.EXEC.isDebug()) {
+			Log.EXEC.debug("BGE DEBUG: offset: " + imm + " branchTargetAddress: " + branchTargetAddress);
+		}
 
-		int rs1IntValue = Integer.parseUnsignedInt(rs1Value, 2);
-		int rs2IntValue = Integer.parseUnsignedInt(rs2Value, 2);
+		int rs1IntValue = registers.getInt(rs1);
+		int rs2IntValue = registers.getInt(rs2);
 
-		boolean isGreaterThanOrEqual = rs1IntValue >= rs2IntValue;
-		if (isGreaterThanOrEqual) {
-			System.out.println("BGE DEBUG: rs1Value (" + rs1IntValue + ") is greater than or equal to rs2Value ("
-					+ rs2IntValue + ") branching to " + branchTargetAddress);
-			registers.setProgramCounter(Integer.toUnsignedString(branchTargetAddress, 2));
+		// Branch if rs1Value is greater than or equal to rs2Value
+		if (rs1IntValue >= rs2IntValue) {
+			if (Log.EXEC.isDebug()) {
+				Log.EXEC.debug("BGE DEBUG: rs1Value (" + rs1IntValue + ") is greater than or equal to rs2Value ("
+						+ rs2IntValue + ") branching to " + branchTargetAddress);
+			}
+			registers.setPc(branchTargetAddress);
 		} else {
-			System.out.println("BGE DEBUG: rs1Value (" + rs1IntValue + ") is less than rs2Value ("
-					+ rs2IntValue + ") incrementing program counter");
+			if (Log.EXEC.isDebug()) {
+				Log.EXEC.debug("BGE DEBUG: rs1Value (" + rs1IntValue + ") is less than rs2Value ("
+						+ rs2IntValue + ") incrementing program counter");
+			}
 			registers.incrementProgramCounter();
 		}
-
-		return String.format("bge %s, %s, %d", rs1, rs2, offset);
 	}
 
-	public String BLTU(HashMap<String, String> instructionComponents) {
-		String rs1 = instructionComponents.get("rs1");
-		String rs2 = instructionComponents.get("rs2");
-		String imm = instructionComponents.get("imm");
-
-		int offset = Integer.parseUnsignedInt(Utility.leftPad(imm), 2);
-
-		String rs1Value = registers.getRegisterValue(rs1);
-		String rs2Value = registers.getRegisterValue(rs2);
-
-		// Convert program counter to integer before adding the offset
-		int programCounter = Integer.parseUnsignedInt(registers.getProgramCounter(), 2);
-		int branchTargetAddress = programCounter + offset;
+	public void BLTU(int rd, int rs1, int rs2, int imm) {
+		int branchTargetAddress = registers.getPc() + imm;
 
 		// Branch if rs1Value is less than rs2Value (unsigned comparison)
-		boolean isLessThanUnsigned = Integer.compareUnsigned(Integer.parseUnsignedInt(rs1Value, 2),
-				Integer.parseUnsignedInt(rs2Value, 2)) < 0;
+		boolean isLessThanUnsigned = Integer.compareUnsigned(registers.getInt(rs1), registers.getInt(rs2)) < 0;
 
-		System.out.println("BLTU DEBUG: Branch if " + rs1 + " less than " + rs2 + " (unsigned) MOVE TO " + offset);
+		if (Log.EXEC.isDebug()) {
+			Log.EXEC.debug("BLTU DEBUG: Branch if x" + rs1 + " less than x" + rs2 + " (unsigned) MOVE TO " + imm);
+		}
 		if (isLessThanUnsigned) {
-			registers.setProgramCounter(Integer.toUnsignedString(branchTargetAddress, 2));
+			registers.setPc(branchTargetAddress);
 		} else {
 			registers.incrementProgramCounter();
 		}
-
-		return String.format("bltu %s, %s, %d", rs1, rs2, offset);
 	}
 
-	public String BGEU(HashMap<String, String> instructionComponents) {
-		String rs1 = instructionComponents.get("rs1");
-		String rs2 = instructionComponents.get("rs2");
-		String imm = instructionComponents.get("imm");
-
-		// Parse unsigned immediate value
-		int immediate = Integer.parseUnsignedInt(Utility.leftPad(imm), 2);
-
-		// Get register values
-		String rs1Value = registers.getRegisterValue(rs1);
-		String rs2Value = registers.getRegisterValue(rs2);
-
-		// Convert program counter to integer before adding the offset
-		int programCounter = Integer.parseUnsignedInt(registers.getProgramCounter(), 2);
-		int branchTargetAddress = programCounter + immediate;
+	public void BGEU(int rd, int rs1, int rs2, int imm) {
+		int branchTargetAddress = registers.getPc() + imm;
 
 		// Branch if rs1Value is greater than or equal to rs2Value (unsigned comparison)
-		boolean isGreaterThanOrEqual = Integer.compareUnsigned(Integer.parseUnsignedInt(rs1Value, 2),
-				Integer.parseUnsignedInt(rs2Value, 2)) >= 0;
+		boolean isGreaterThanOrEqual = Integer.compareUnsigned(registers.getInt(rs1), registers.getInt(rs2)) >= 0;
 
-		System.out.println(
-				"BGEU DEBUG: Branch if " + rs1 + " greater or equal " + rs2 + " MOVE TO " + branchTargetAddress);
+		if (Log.EXEC.isDebug()) {
+			Log.EXEC.debug(
+					"BGEU DEBUG: Branch if x" + rs1 + " greater or equal x" + rs2 + " MOVE TO " + branchTargetAddress);
+		}
 		if (isGreaterThanOrEqual) {
-			registers.setProgramCounter(Integer.toUnsignedString(branchTargetAddress, 2));
+			registers.setPc(branchTargetAddress);
 		} else {
 			registers.incrementProgramCounter();
 		}
-
-		return String.format("bgeu %s, %s, %d", rs1, rs2, immediate);
 	}
 
-	public String ADDI(HashMap<String, String> instructionComponents) {
-		// Extract components from the HashMap
-		String rd = instructionComponents.get("rd"); // destination register
-		String rs1 = instructionComponents.get("rs1"); // source register 1
-		String imm = instructionComponents.get("imm"); // immediate register
-
-		// Get values from registers
-		String valueRs1 = registers.getRegisterValue(rs1);
-
-		int valueIntRs1 = (int) Long.parseUnsignedLong(valueRs1, 2);
-		// Convert immediate value from binary string to integer
-		int immediate = (int) Long.parseUnsignedLong(Utility.leftPad(imm), 2);
-
+	public void ADDI(int rd, int rs1, int rs2, int imm) {
 		// Perform addition operation
-		int result = valueIntRs1 + immediate;
-		// Convert result to 32-bit binary string
-		String resultBinary = Utility.leftPadSigned(result);
+		int result = registers.getInt(rs1) + imm;
+
 		// Update rd register value
-		registers.setRegisterValue(rd, resultBinary);
+		registers.setInt(rd, result);
 		registers.incrementProgramCounter();
-
-		// Build and return the instruction result string
-		return String.format("addi %s, %s, %d", rd, rs1, immediate);
 	}
 
-	public String SLTI(HashMap<String, String> instructionComponents) {
-		// Extract components from the HashMap
-		String rd = instructionComponents.get("rd"); // destination register
-		String rs1 = instructionComponents.get("rs1"); // source register 1
-		String imm = instructionComponents.get("imm"); // immediate register
-
-		// Get values from registers
-		String valueRs1 = registers.getRegisterValue(rs1);
-
-		int valueIntRs1 = (int) Long.parseUnsignedLong(valueRs1, 2);
-		// Convert immediate value from binary string to integer
-		int immediate = (int) Long.parseUnsignedLong(Utility.leftPad(imm), 2);
-
+	public void SLTI(int rd, int rs1, int rs2, int imm) {
 		// Perform less than immediate operation
-		int result = (valueIntRs1 < immediate) ? 1 : 0;
-
-		// Convert result to 32-bit binary string
-		String resultBinary = Utility.leftPadSigned(result);
+		int result = (registers.getInt(rs1) < imm) ? 1 : 0;
 
 		// Update rd register value
-		registers.setRegisterValue(rd, resultBinary);
+		registers.setInt(rd, result);
 		registers.incrementProgramCounter();
-
-		// Build and return the instruction result string
-		return String.format("slti %s, %s, %d", rd, rs1, immediate);
 	}
 
-	public String SLTIU(HashMap<String, String> instructionComponents) {
-		// Extract components from the HashMap
-		String rd = instructionComponents.get("rd"); // destination register
-		String rs1 = instructionComponents.get("rs1"); // source register 1
-		String imm = instructionComponents.get("imm"); // immediate register
-
-		// Get values from registers
-		String valueRs1 = registers.getRegisterValue(rs1);
-
-		long valueLongRs1 = Long.parseUnsignedLong(valueRs1, 2);
-		// Convert immediate value from binary string to long
-		long immediate = Long.parseUnsignedLong(Utility.leftPad(imm), 2);
-
-		// Perform less than immediate (unsigned) operation
-		int result = (valueLongRs1 < immediate) ? 1 : 0;
-
-		// Convert result to 32-bit binary string
-		String resultBinary = Utility.leftPad(Integer.toBinaryString(result));
+	public void SLTIU(int rd, int rs1, int rs2, int imm) {
+		// The immediate is sign-extended, then compared as unsigned
+		int result = (Integer.compareUnsigned(registers.getInt(rs1), imm) < 0) ? 1 : 0;
 
 		// Update rd register value
-		registers.setRegisterValue(rd, resultBinary);
+		registers.setInt(rd, result);
 		registers.incrementProgramCounter();
-
-		// Build and return the instruction result string
-		return String.format("sltiu %s, %s, %d", rd, rs1, immediate);
 	}
 
-	public String XORI(HashMap<String, String> instructionComponents) {
-		// Extract components from the HashMap
-		String rd = instructionComponents.get("rd"); // destination register
-		String rs1 = instructionComponents.get("rs1"); // source register 1
-		String imm = instructionComponents.get("imm"); // immediate register
-
-		// Get values from registers
-		String valueRs1 = registers.getRegisterValue(rs1);
-
-		int valueIntRs1 = (int) Long.parseUnsignedLong(valueRs1, 2);
-		// Convert immediate value from binary string to integer
-		int immediate = (int) Long.parseUnsignedLong(Utility.leftPad(imm), 2);
-
+	public void XORI(int rd, int rs1, int rs2, int imm) {
 		// Perform XOR operation
-		int result = valueIntRs1 ^ immediate;
-
-		// Convert result to 32-bit binary string
-
-		String resultBinary = Utility.leftPadSigned(result);
+		int result = registers.getInt(rs1) ^ imm;
 
 		// Update rd register value
-		registers.setRegisterValue(rd, resultBinary);
+		registers.setInt(rd, result);
 		registers.incrementProgramCounter();
-
-		// Build and return the instruction result string
-		return String.format("xori %s, %s, %d", rd, rs1, immediate);
 	}
 
-	public String ORI(HashMap<String, String> instructionComponents) {
-		// Extract components from the HashMap
-		String rd = instructionComponents.get("rd"); // destination register
-		String rs1 = instructionComponents.get("rs1"); // source register 1
-		String imm = instructionComponents.get("imm"); // immediate register
-
-		// Get values from registers
-		String valueRs1 = registers.getRegisterValue(rs1);
-
-		int valueIntRs1 = (int) Long.parseUnsignedLong(valueRs1, 2);
-		// Convert immediate value from binary string to integer
-		int immediate = (int) Long.parseUnsignedLong(Utility.leftPad(imm), 2);
-
+	public void ORI(int rd, int rs1, int rs2, int imm) {
 		// Perform OR operation
-		int result = valueIntRs1 | immediate;
-
-		// Convert result to 32-bit binary string
-		String resultBinary = Utility.leftPadSigned(result);
+		int result = registers.getInt(rs1) | imm;
 
 		// Update rd register value
-		registers.setRegisterValue(rd, resultBinary);
+		registers.setInt(rd, result);
 		registers.incrementProgramCounter();
-
-		// Build and return the instruction result string
-		return String.format("ori %s, %s, %d", rd, rs1, immediate);
 	}
 
-	public String ANDI(HashMap<String, String> instructionComponents) {
-		// Extract components from the HashMap
-		String rd = instructionComponents.get("rd"); // destination register
-		String rs1 = instructionComponents.get("rs1"); // source register 1
-		String imm = instructionComponents.get("imm"); // immediate register
-
-		// Get values from registers
-		String valueRs1 = registers.getRegisterValue(rs1);
-
-		int valueIntRs1 = (int) Long.parseUnsignedLong(valueRs1, 2);
-		// Convert immediate value from binary string to integer
-		int immediate = (int) Long.parseUnsignedLong(Utility.leftPad(imm), 2);
-
+	public void ANDI(int rd, int rs1, int rs2, int imm) {
 		// Perform AND operation
-		int result = valueIntRs1 & immediate;
-
-		// Convert result to 32-bit binary string
-		String resultBinary = Utility.leftPadSigned(result);
+		int result = registers.getInt(rs1) & imm;
 
 		// Update rd register value
-		registers.setRegisterValue(rd, resultBinary);
+		registers.setInt(rd, result);
 		registers.incrementProgramCounter();
-
-		// Build and return the instruction result string
-		return String.format("andi %s, %s, %d", rd, rs1, immediate);
 	}
 
 	/**
 	 * Loads a 8-bit value from memory, then sign-extends to 32-bits before storing in rd
-	 * @param instructionComponents
-	 * @return
 	 */
-	public String LB(HashMap<String, String> instructionComponents) {
-		// Extract components from the HashMap
-	    String rd = instructionComponents.get("rd"); // destination register
-	    String rs1 = instructionComponents.get("rs1"); // base register
-	    String imm = instructionComponents.get("imm"); // immediate value
-	    // Get values from registers
-	    String valueRs1 = registers.getRegisterValue(rs1);
-
+	public void LB(int rd, int rs1, int rs2, int imm) {
 		// Calculate the effective memory address by adding the immediate value to the
 		// base register value
-		int address = (int) Long.parseUnsignedLong(valueRs1, 2) + (int) Long.parseUnsignedLong(imm, 2);
-		System.out.println("LB DEBUG: address: " + address);
-
-		// Load the 8-bit value from memory at the calculated address
-		String result = memory.loadByte(address);
-		System.out.println("LB DEBUG: result: " + result);
-		// System.out.println("Address should be ____: " +
-		// Integer.toBinaryString(address));
-		// System.out.println("Loaded value should be ________: " + result);
-
-		// Sign-extend the 8-bit value to 32 bits
-		String resultBinary = Utility.leftPad(result);
-		System.out.println("LB DEBUG: resultBinary: " + resultBinary);
+		int address = registers.getInt(rs1) + imm;
+		if (Log.EXEC.isDebug()) {
+			Log.EXEC.debug("LB DEBUG: address: " + address);
+		}
+
+		// Physical address, the same unless paging is on
+		address = mmu.translate(memory, address, Mmu.LOAD);
+		if (caches != null) {
+			caches.data(address, false);
+		}
+		// Load the sign-extended 8-bit value from memory at the calculated address
+		int result = memory.loadByte(address);
+		if (Log.EXEC.isDebug()) {
+			Log.EXEC.debug("LB DEBUG: result: " + result);
+		}
+
 		// Update rd register value
-		registers.setRegisterValue(rd, resultBinary);
+		registers.setInt(rd, result);
 
 		// Increment the program counter
 		registers.incrementProgramCounter();
-
-		// Return the executed instruction in string format
-		return String.format("lb %s, %s(%s)", rd, imm, rs1);
 	}
-	
+
 	/**
 	 * Loads a 16-bit value from memory, then sign-extends to 32-bits before storing in rd
-	 * @param instructionComponents
-	 * @return
 	 */
-	public String LH(HashMap<String, String> instructionComponents) {
-		// Extract components from the HashMap
-		String rd = instructionComponents.get("rd"); // destination register
-		String rs1 = instructionComponents.get("rs1"); // base register
-		String imm = instructionComponents.get("imm"); // immediate value
-
-	    // Get values from registers
-	    String valueRs1 = registers.getRegisterValue(rs1);
-	    
-	    // Calculate the effective memory address by adding the immediate value to the base register value
-	    int address = (int) Long.parseUnsignedLong(valueRs1, 2) + (int) Long.parseUnsignedLong(imm, 2);
-		System.out.println("LH DEBUG: address: " + address);
-	    
-		// Load the 16-bit value from memory at the calculated address
-	    String result = memory.loadHalfword2(address);
-		System.out.println("LH DEBUG: result: " + result);
-	    
-	    // Sign-extend the 16-bit value to 32 bits
-	    String resultBinary = Utility.leftPad(result);
-		System.out.println("LH DEBUG: resultBinary: " + resultBinary);
-	    
+	public void LH(int rd, int rs1, int rs2, int imm) {
+		// Calculate the effective memory address by adding the immediate value to the base register value
+		int address = registers.getInt(rs1) + imm;
+		if (Log.EXEC.isDebug()) {
+			Log.EXEC.debug("LH DEBUG: address: " + address);
+		}
+
+		// Physical address, the same unless paging is on
+		address = mmu.translate(memory, address, Mmu.LOAD, 2);
+		if (caches != null) {
+			caches.data(address, false);
+		}
+		// Load the sign-extended 16-bit value from memory at the calculated address
+		int result = memory.loadHalfword2(address);
+		if (Log.EXEC.isDebug()) {
+			Log.EXEC.debug("LH DEBUG: result: " + result);
+		}
+
 		// Update rd register value
-		registers.setRegisterValue(rd, resultBinary);
+		registers.setInt(rd, result);
 
 		// Increment the program counter
 		registers.incrementProgramCounter();
-
-		// Return the executed instruction in string format
-		return String.format("lh %s, %s(%s)", rd, imm, rs1);
 	}
 
-	public String LW(HashMap<String, String> instructionComponents) {
-		// Extract components from the HashMap
-		String rd = instructionComponents.get("rd"); // destination register
-		String rs1 = instructionComponents.get("rs1"); // base register
-		String imm = instructionComponents.get("imm"); // offset
-		// Get values from registers
-		String valueRs1 = registers.getRegisterValue(rs1);
-
-		int baseAddress = (int) Long.parseUnsignedLong(valueRs1, 2);
-		// Convert offset value from binary string to integer
-		int offsetValue = (int) Long.parseUnsignedLong(Utility.leftPad(imm), 2);
-
+	public void LW(int rd, int rs1, int rs2, int imm) {
 		// Calculate memory address to load from
-		int memoryAddress = baseAddress + offsetValue;
+		int memoryAddress = registers.getInt(rs1) + imm;
 
+		// Physical address, the same unless paging is on
+		memoryAddress = mmu.translate(memory, memoryAddress, Mmu.LOAD, 4);
+		if (caches != null) {
+			caches.data(memoryAddress, false);
+		}
 		// Load the word from memory
-		String loadedWord = memory.loadWord2(memoryAddress);
-		System.out.println("LW DEBUG: loadedWord: " + loadedWord);
+		int loadedWord = memory.loadWord2(memoryAddress);
+		if (Log.EXEC.isDebug()) {
+			Log.EXEC.debug("LW DEBUG: loadedWord: " + loadedWord + " rd: x" + rd);
+		}
+
 		// Update rd register value
-		loadedWord = Utility.leftPad(loadedWord);
-		System.out.println("LW DEBUG: rd: " + rd);
-		registers.setRegisterValue(rd, loadedWord);
+		registers.setInt(rd, loadedWord);
 		registers.incrementProgramCounter();
-
-		// Build and return the instruction result string
-		return String.format("lw %s, %s, %d", rd, rs1, offsetValue);
-
 	}
 
-	public String LBU(HashMap<String, String> instructionComponents) {
-		// Extract components from the HashMap
-	    String rd = instructionComponents.get("rd"); // destination register
-	    String rs1 = instructionComponents.get("rs1"); // base register
-	    String imm = instructionComponents.get("imm"); // immediate value
-
-	    // Get values from registers
-	    String valueRs1 = registers.getRegisterValue(rs1);
-
-	    // Calculate the effective memory address by adding the immediate value to the base register value
-	    int address = (int) Long.parseUnsignedLong(valueRs1, 2) + (int) Long.parseUnsignedLong(imm, 2);
-		System.out.println("LBU DEBUG: address: " + address);
-	    
-		// Load the 8-bit value from memory at the calculated address
-	    String result = memory.loadByte(address);
-		System.out.println("LBU DEBUG: result: " + result);
-	    //System.out.println("Address should be ____: " + Integer.toBinaryString(address));
-	    //System.out.println("Loaded value should be ________: " + result);
-	    
-	    // Sign-extend the 8-bit value to 32 bits
-	    String resultBinary = Utility.leftPad(0 + result);
-		System.out.println("LBU DEBUG: resultBinary: " + resultBinary);
-	    // Update rd register value
-	    registers.setRegisterValue(rd, resultBinary);
-
-	    // Increment the program counter
-	    registers.incrementProgramCounter();
-
-	    // Return the executed instruction in string format
-	    return String.format("lbu %s, %s(%s)", rd, imm, rs1);
-	}
+	public void LBU(int rd, int rs1, int rs2, int imm) {
+		// Calculate the effective memory address by adding the immediate value to the base register value
+		int address = registers.getInt(rs1) + imm;
+		if (Log.EXEC.isDebug()) {
+			Log.EXEC.debug("LBU DEBUG: address: " + address);
+		}
 
-	public String LHU(HashMap<String, String> instructionComponents) {
-		// Extract components from the HashMap
-	    String rd = instructionComponents.get("rd"); // destination register
-	    String rs1 = instructionComponents.get("rs1"); // base register
-	    String imm = instructionComponents.get("imm"); // immediate value
-
-	    // Get values from registers
-	    String valueRs1 = registers.getRegisterValue(rs1);
-	    
-	    // Calculate the effective memory address by adding the immediate value to the base register value
-	    int address = (int) Long.parseUnsignedLong(valueRs1, 2) + (int) Long.parseUnsignedLong(imm, 2);
-		System.out.println("LH DEBUG: address: " + address);
-	    
-		// Load the 16-bit value from memory at the calculated address
-	    String result = memory.loadHalfword2(address);
-		System.out.println("LH DEBUG: result: " + result);
-	    
-	    // Sign-extend the 16-bit value to 32 bits
-	    String resultBinary = Utility.leftPad(0 + result);
-		System.out.println("LH DEBUG: resultBinary: " + resultBinary);
-	    
-		// Update rd register value
-	    registers.setRegisterValue(rd, resultBinary);
+		// Physical address, the same unless paging is on
+		address = mmu.translate(memory, address, Mmu.LOAD);
+		if (caches != null) {
+			caches.data(address, false);
+		}
+		// Load the 8-bit value from memory at the calculated address and zero-extend it
+		int result = memory.loadByte(address) & 0xFF;
+		if (Log.EXEC.isDebug()) {
+			Log.EXEC.debug("LBU DEBUG: result: " + result);
+		}
 
-	    // Increment the program counter
-	    registers.incrementProgramCounter();
+		// Update rd register value
+		registers.setInt(rd, result);
 
-	    // Return the executed instruction in string format
-	    return String.format("lh %s, %s(%s)", rd, imm, rs1);
+		// Increment the program counter
+		registers.incrementProgramCounter();
 	}
 
-	public String SRLI(HashMap<String, String> instructionComponents) {
-		// Extract components from the HashMap
-		String rd = instructionComponents.get("rd"); // destination register
-		String rs1 = instructionComponents.get("rs1"); // source register 1
-		String imm = instructionComponents.get("shamt"); // immediate register
+	public void LHU(int rd, int rs1, int rs2, int imm) {
+		// Calculate the effective memory address by adding the immediate value to the base register value
+		int address = registers.getInt(rs1) + imm;
+		if (Log.EXEC.isDebug()) {
+			Log.EXEC.debug("LHU DEBUG: address: " + address);
+		}
 
-		// Get values from registers
-		String valueRs1 = registers.getRegisterValue(rs1);
+		// Physical address, the same unless paging is on
+		address = mmu.translate(memory, address, Mmu.LOAD, 2);
+		if (caches != null) {
+			caches.data(address, false);
+		}
+		// Load the 16-bit value from memory at the calculated address and zero-extend it
+		int result = memory.loadHalfword2(address) & 0xFFFF;
+		if (Log.EXEC.isDebug()) {
+			Log.EXEC.debug("LHU DEBUG: result: " + result);
+		}
 
-		int valueIntRs1 = (int) Long.parseUnsignedLong(valueRs1, 2);
-		// Convert immediate value from binary string to integer
-		int immediate = (int) Long.parseUnsignedLong(Utility.leftPad(imm), 2);
+		// Update rd register value
+		registers.setInt(rd, result);
 
-		// Perform logical right shift operation
-		int result = valueIntRs1 >>> immediate;
+		// Increment the program counter
+		registers.incrementProgramCounter();
+	}
 
-		// Convert result to 32-bit binary string
-		String resultBinary = Utility.leftPadSigned(result);
+	public void SRLI(int rd, int rs1, int rs2, int imm) {
+		// Perform logical right shift operation, imm is the shift amount
+		int result = registers.getInt(rs1) >>> (imm & 0x1F);
 
 		// Update rd register value
-		registers.setRegisterValue(rd, resultBinary);
+		registers.setInt(rd, result);
 		registers.incrementProgramCounter();
-
-		// Build and return the instruction result string
-		return String.format("srli %s, %s, %d", rd, rs1, immediate);
 	}
 
-	public String SLLI(HashMap<String, String> instructionComponents) {
-		// Extract components from the HashMap
-		String rd = instructionComponents.get("rd"); // destination register
-		String rs1 = instructionComponents.get("rs1"); // source register 1
-		String imm = instructionComponents.get("shamt"); // immediate register
-
-		// Get values from registers
-		String valueRs1 = registers.getRegisterValue(rs1);
-
-		int valueIntRs1 = (int) Long.parseUnsignedLong(valueRs1, 2);
-		// Convert immediate value from binary string to integer
-		int immediate = (int) Long.parseUnsignedLong(Utility.leftPad(imm), 2);
-
-		// Perform SLLI operation
-		int result = valueIntRs1 << immediate;
-
-		// Convert result to 32-bit binary string
-		String resultBinary = Integer.toBinaryString(result);
-		// Pad result to 32 bits
-		resultBinary = String.format("%32s", resultBinary).replace(' ', '0');
+	public void SLLI(int rd, int rs1, int rs2, int imm) {
+		// Perform SLLI operation, imm is the shift amount
+		int result = registers.getInt(rs1) << (imm & 0x1F);
 
 		// Update rd register value
-		registers.setRegisterValue(rd, resultBinary);
+		registers.setInt(rd, result);
 		registers.incrementProgramCounter();
-
-		// Build and return the instruction result string
-		return String.format("slli %s, %s, %d", rd, rs1, immediate);
 	}
 
-	public String SRAI(HashMap<String, String> instructionComponents) {
-		// Extract components from the HashMap
-		String rd = instructionComponents.get("rd"); // destination register
-		String rs1 = instructionComponents.get("rs1"); // source register 1
-		String imm = instructionComponents.get("shamt"); // immediate register
-
-		// Get values from registers
-		String valueRs1 = registers.getRegisterValue(rs1);
-
-		int valueIntRs1 = (int) Long.parseUnsignedLong(valueRs1, 2);
-		// Convert immediate value from binary string to integer
-		int immediate = (int) Long.parseUnsignedLong(Utility.leftPad(imm), 2);
-
-		// Perform SRAI operation (Arithmetic Right Shift)
-		int result = valueIntRs1 >> immediate;
-
-		// Convert result to 32-bit binary string
-		String resultBinary = Utility.leftPad(Integer.toBinaryString(result));
+	public void SRAI(int rd, int rs1, int rs2, int imm) {
+		// Perform SRAI operation (Arithmetic Right Shift), imm is the shift amount
+		int result = registers.getInt(rs1) >> (imm & 0x1F);
 
 		// Update rd register value
-		registers.setRegisterValue(rd, resultBinary);
+		registers.setInt(rd, result);
 		registers.incrementProgramCounter();
-
-		// Build and return the instruction result string
-		return String.format("srai %s, %s, %d", rd, rs1, immediate);
 	}
 
-	public String SB(HashMap<String, String> instructionComponents) {
-		// Extract components from the HashMap
-		String rs1 = instructionComponents.get("rs1"); // base register
-		String rs2 = instructionComponents.get("rs2"); // source register 2
-		String imm = instructionComponents.get("imm"); // offset
-
-		System.out.println("SB DEBUG: imm: " + imm);
-		// Get values from registers
-		String valueRs1 = registers.getRegisterValue(rs1);
-		System.out.println("SB DEBUG: valueRs1: " + Integer.parseInt(valueRs1, 2));
-		System.out.println("SB DEBUG: rs1: " + rs1);
-		int valueIntRs1 = Integer.parseInt(rs1.substring(1));
-		System.out.println("SB DEBUG: Integer.parseInt(rs1): " + Integer.parseInt(rs1.substring(1)));
-		String valueRs2 = registers.getRegisterValue(rs2);
-		int valueIntRs2 = Integer.parseUnsignedInt(valueRs2, 2);
-		// Convert immediate value from binary string to integer
-		int offset = Integer.parseInt(imm, 2);
-		System.out.println("SB DEBUG: offset: " + offset);
-
+	public void SB(int rd, int rs1, int rs2, int imm) {
 		// Calculate effective address
-		int effectiveAddress = Integer.parseInt(valueRs1, 2) + offset;
-		System.out.println("SB DEBUG: DATA_MEMORY_ADDRESS: " + Integer.parseInt(Utility.DATA_MEMORY_ADDRESS, 2));
-		System.out.println("SB DEBUG: StoreByte " + effectiveAddress + " offset " + offset + " to get " + valueIntRs2);
+		int effectiveAddress = registers.getInt(rs1) + imm;
+		int valueIntRs2 = registers.getInt(rs2);
+		if (Log.EXEC.isDebug()) {
+			Log.EXEC.debug("SB DEBUG: StoreByte " + effectiveAddress + " offset " + imm + " to get " + valueIntRs2);
+		}
 
-		System.out.println("Utility.leftPadSigned(valueIntRs2)" + Utility.leftPadSigned(valueIntRs2));
-		// Store the byte to memory
-		memory.storeByte(effectiveAddress, Utility.leftPadSigned(valueIntRs2).substring(24));
+		// Physical address, the same unless paging is on
+		effectiveAddress = mmu.translate(memory, effectiveAddress, Mmu.STORE);
+		if (caches != null) {
+			caches.data(effectiveAddress, true);
+		}
+		// Store the low byte to memory
+		memory.storeByte(effectiveAddress, valueIntRs2);
 		registers.incrementProgramCounter();
-
-		// Build and return the instruction result string
-		return String.format("sb %s, %s, %d", rs2, rs1, offset);
 	}
 
-	public String SH(HashMap<String, String> instructionComponents) {
-	    // Extract components from the HashMap
-	    String rs1 = instructionComponents.get("rs1"); // base register
-	    String rs2 = instructionComponents.get("rs2"); // source register 2
-	    String imm = instructionComponents.get("imm"); // offset
-
-	    // Get values from registers
-	    String valueRs2 = registers.getRegisterValue(rs2);
-
-		// Convert immediate value from binary string to integer
-		int offset = Integer.parseUnsignedInt(Utility.leftPad(imm), 2);
-
+	public void SH(int rd, int rs1, int rs2, int imm) {
 		// Calculate effective address
-		int effectiveAddress = Integer.parseInt(Utility.DATA_MEMORY_ADDRESS, 2) + offset;
-		System.out.println("SH DEBUG: StoreHalfword " + effectiveAddress + " offset " + offset + " to get "
-				+ valueRs2.substring(16));
+		int effectiveAddress = registers.getInt(rs1) + imm;
+		int valueIntRs2 = registers.getInt(rs2);
+		if (Log.EXEC.isDebug()) {
+			Log.EXEC.debug("SH DEBUG: StoreHalfword " + effectiveAddress + " offset " + imm + " to get "
+					+ (valueIntRs2 & 0xFFFF));
+		}
 
-		// Store the halfword to memory
-		memory.storeHalfword(effectiveAddress, valueRs2.substring(16));
+		// Physical address, the same unless paging is on
+		effectiveAddress = mmu.translate(memory, effectiveAddress, Mmu.STORE, 2);
+		if (caches != null) {
+			caches.data(effectiveAddress, true);
+		}
+		// Store the low halfword to memory
+		memory.storeHalfword(effectiveAddress, valueIntRs2);
 		registers.incrementProgramCounter();
-
-		// Build and return the instruction result string
-		return String.format("sh %s, %s, %d", rs2, rs1, offset);
-	}
-
-	public String SW(HashMap<String, String> instructionComponents) {
-		// Extract components from the HashMap
-		String rs1 = instructionComponents.get("rs1"); // base register
-		String rs2 = instructionComponents.get("rs2"); // source register 2
-		String imm = instructionComponents.get("imm"); // offset
-
-	    // Get values from registers
-	    String valueRs2 = registers.getRegisterValue(rs2);
-	    int valueIntRs2 = Integer.parseUnsignedInt(valueRs2, 2);
-	    // Convert immediate value from binary string to integer
-	    int offset = Integer.parseUnsignedInt(Utility.leftPad(imm), 2);
-
-	    // Calculate effective address
-	    int effectiveAddress = Integer.parseInt(Utility.DATA_MEMORY_ADDRESS, 2) + offset;
-	    System.out.println("SW DEBUG: StoreWord " + valueIntRs2 + " offset " + offset + " to get " + effectiveAddress);
-	    
-	    // Store the word to memory
-	    memory.storeWord(effectiveAddress, valueRs2);
-	    registers.incrementProgramCounter();
-
-
-	    // Build and return the instruction result string
-	    return String.format("sw %s, %s, %d", rs2, rs1, offset);
 	}
 
+	public void SW(int rd, int rs1, int rs2, int imm) {
+		// Calculate effective address
+		int effectiveAddress = registers.getInt(rs1) + imm;
+		int valueIntRs2 = registers.getInt(rs2);
+		if (Log.EXEC.isDebug()) {
+			Log.EXEC.debug("SW DEBUG: StoreWord " + valueIntRs2 + " offset " + imm + " to get " + effectiveAddress);
+		}
 
-	public String SLL(HashMap<String, String> instructionComponents) {
-		// Extract components from the HashMap
-		String rd = instructionComponents.get("rd"); // destination register
-		String rs1 = instructionComponents.get("rs1"); // source register 1
-		String rs2 = instructionComponents.get("rs2"); // source register 2
+		// Physical address, the same unless paging is on
+		effectiveAddress = mmu.translate(memory, effectiveAddress, Mmu.STORE, 4);
+		if (caches != null) {
+			caches.data(effectiveAddress, true);
+		}
+		// Store the word to memory
+		memory.storeWord(effectiveAddress, valueIntRs2);
+		registers.incrementProgramCounter();
+	}
 
-		// Get values from registers
-		String valueRs1 = registers.getRegisterValue(rs1);
-		String valueRs2 = registers.getRegisterValue(rs2);
 
-		int valueIntRs1 = (int) Long.parseUnsignedLong(valueRs1, 2);
-		int valueIntRs2 = (int) Long.parseUnsignedLong(valueRs2, 2);
+	public void SLL(int rd, int rs1, int rs2, int imm) {
+		int valueIntRs1 = registers.getInt(rs1);
+		int valueIntRs2 = registers.getInt(rs2) & 0x1F;
 
 		// Perform shift left logical operation
 		int result = valueIntRs1 << valueIntRs2;
-		System.out.println("SLL DEBUG: Shifting " + valueIntRs1 + " left by " + valueIntRs2 + " to get " + result);
-
-		// Convert result to 32-bit binary string
-		String resultBinary = Utility.leftPad("0" + Integer.toBinaryString(result));
+		if (Log.EXEC.isDebug()) {
+			Log.EXEC.debug("SLL DEBUG: Shifting " + valueIntRs1 + " left by " + valueIntRs2 + " to get " + result);
+		}
 
 		// Update rd register value
-		registers.setRegisterValue(rd, resultBinary);
+		registers.setInt(rd, result);
 		registers.incrementProgramCounter();
-
-		// Build and return the instruction result string
-		return String.format("sll %s, %s, %s", rd, rs1, rs2);
 	}
 
 
-	public String ADD(HashMap<String, String> instructionComponents) {
-		// Extract components from the HashMap
-		String rd = instructionComponents.get("rd"); // destination register
-		String rs1 = instructionComponents.get("rs1"); // source register 1
-		String rs2 = instructionComponents.get("rs2"); // source register 2
-
-		// Get values from registers
-		String valueRs1 = registers.getRegisterValue(rs1);
-		String valueRs2 = registers.getRegisterValue(rs2);
-
-		int valueIntRs1 = (int) Long.parseUnsignedLong(valueRs1, 2);
-		int valueIntRs2 = (int) Long.parseUnsignedLong(valueRs2, 2);
+	public void ADD(int rd, int rs1, int rs2, int imm) {
+		int valueIntRs1 = registers.getInt(rs1);
+		int valueIntRs2 = registers.getInt(rs2);
 
 		// Perform addition operation
 		int result = valueIntRs1 + valueIntRs2;
-		System.out.println("ADD DEBUG: Adding " + valueIntRs1 + " and " + valueIntRs2 + " to get " + result);
-
-		// Convert result to 32-bit binary string
-		String resultBinary = Utility.leftPad("0" + Integer.toBinaryString(result));
+		if (Log.EXEC.isDebug()) {
+			Log.EXEC.debug("ADD DEBUG: Adding " + valueIntRs1 + " and " + valueIntRs2 + " to get " + result);
+		}
 
 		// Update rd register value
-		registers.setRegisterValue(rd, resultBinary);
+		registers.setInt(rd, result);
 		registers.incrementProgramCounter();
-
-		// Build and return the instruction result string
-		return String.format("add %s, %s, %s", rd, rs1, rs2);
 	}
 
-	public String SUB(HashMap<String, String> instructionComponents) {
-		// Extract components from the HashMap
-		String rd = instructionComponents.get("rd"); // destination register
-		String rs1 = instructionComponents.get("rs1"); // source register 1
-		String rs2 = instructionComponents.get("rs2"); // source register 2
-
-		// Get values from registers
-		String valueRs1 = registers.getRegisterValue(rs1);
-		String valueRs2 = registers.getRegisterValue(rs2);
-
-		int valueIntRs1 = (int) Long.parseUnsignedLong(valueRs1, 2);
-		int valueIntRs2 = (int) Long.parseUnsignedLong(valueRs2, 2);
+	public void SUB(int rd, int rs1, int rs2, int imm) {
+		int valueIntRs1 = registers.getInt(rs1);
+		int valueIntRs2 = registers.getInt(rs2);
 
 		// Perform subtraction operation
 		int result = valueIntRs1 - valueIntRs2;
-		System.out.println("SUB DEBUG: Subtracting " + valueIntRs2 + " from " + valueIntRs1 + " to get " + result);
-
-		// Convert result to 32-bit binary string
-		String resultBinary = Utility.leftPad("0" + Integer.toBinaryString(result));
+		if (Log.EXEC.isDebug()) {
+			Log.EXEC.debug("SUB DEBUG: Subtracting " + valueIntRs2 + " from " + valueIntRs1 + " to get " + result);
+		}
 
 		// Update rd register value
-		registers.setRegisterValue(rd, resultBinary);
+		registers.setInt(rd, result);
 		registers.incrementProgramCounter();
-
-		// Build and return the instruction result string
-		return String.format("sub %s, %s, %s", rd, rs1, rs2);
 	}
 
-	public String SLT(HashMap<String, String> instructionComponents) {
-		String rd = instructionComponents.get("rd"); // destination register
-		String rs1 = instructionComponents.get("rs1"); // source register 1
-		String rs2 = instructionComponents.get("rs2"); // source register 2
-
-		// Check if any of the required values are null
-		if (rd == null || rs1 == null || rs2 == null) {
-			// Handle the error, maybe throw an exception or return an error message
-			return "Error: Missing values in instruction";
-		}
-
-		// Get values from registers
-		String valueRs1 = registers.getRegisterValue(rs1);
-		String valueRs2 = registers.getRegisterValue(rs2);
-
-
-
-		// Convert register values from binary string to integer
-		int intValueRs1 = (int) Long.parseUnsignedLong(valueRs1, 2);
-		int intValueRs2 = (int) Long.parseUnsignedLong(valueRs2, 2);
-
+	public void SLT(int rd, int rs1, int rs2, int imm) {
 		// Perform SLT operation
-		int result = (intValueRs1 < intValueRs2) ? 1 : 0;
-		String resultBinary = Utility.leftPad("0" + Integer.toBinaryString(result));
-		// Store the result in the destination register
-		registers.setRegisterValue(rd, Utility.leftPad("0" + result));
+		int result = (registers.getInt(rs1) < registers.getInt(rs2)) ? 1 : 0;
 
+		// Store the result in the destination register
+		registers.setInt(rd, result);
 		registers.incrementProgramCounter();
-
-		// Build and return the instruction result string
-		return String.format("slt %s, %s, %s", rd, rs1, rs2);
 	}
 
-	public String SLTU(HashMap<String, String> instructionComponents) {
-		// Extract components from the HashMap
-		String rd = instructionComponents.get("rd"); // destination register
-		String rs1 = instructionComponents.get("rs1"); // source register 1
-		String rs2 = instructionComponents.get("rs2"); // source register 2
-
-		// Get values from registers
-		String valueRs1 = registers.getRegisterValue(rs1);
-		String valueRs2 = registers.getRegisterValue(rs2);
-
-		// Convert values to unsigned integers
-		long valueUnsignedRs1 = Long.parseUnsignedLong(valueRs1, 2);
-		long valueUnsignedRs2 = Long.parseUnsignedLong(valueRs2, 2);
+	public void SLTU(int rd, int rs1, int rs2, int imm) {
+		int valueIntRs1 = registers.getInt(rs1);
+		int valueIntRs2 = registers.getInt(rs2);
 
 		// Perform the set less than unsigned operation
-		int result = (Long.compareUnsigned(valueUnsignedRs1, valueUnsignedRs2) < 0) ? 1 : 0;
-		System.out
-				.println("SLTU DEBUG: Comparing " + valueUnsignedRs1 + " < " + valueUnsignedRs2 + " to get " + result);
-
-		// Convert result to 32-bit binary string
-		String resultBinary = Utility.leftPad("0" + Integer.toBinaryString(result));
+		int result = (Integer.compareUnsigned(valueIntRs1, valueIntRs2) < 0) ? 1 : 0;
+		if (Log.EXEC.isDebug()) {
+			Log.EXEC.debug("SLTU DEBUG: Comparing " + Integer.toUnsignedString(valueIntRs1) + " < "
+					+ Integer.toUnsignedString(valueIntRs2) + " to get " + result);
+		}
 
 		// Update rd register value
-		registers.setRegisterValue(rd, resultBinary);
+		registers.setInt(rd, result);
 		registers.incrementProgramCounter();
-
-		// Build and return the instruction result string
-		return String.format("sltu %s, %s, %s", rd, rs1, rs2);
 	}
 
-	public String XOR(HashMap<String, String> instructionComponents) {
-		// Extract components from the HashMap
-		String rd = instructionComponents.get("rd"); // destination register
-		String rs1 = instructionComponents.get("rs1"); // source register 1
-		String rs2 = instructionComponents.get("rs2"); // source register 2
-
-		// Get values from registers
-		String valueRs1 = registers.getRegisterValue(rs1);
-		String valueRs2 = registers.getRegisterValue(rs2);
-
-		int valueIntRs1 = (int) Long.parseUnsignedLong(valueRs1, 2);
-		int valueIntRs2 = (int) Long.parseUnsignedLong(valueRs2, 2);
+	public void XOR(int rd, int rs1, int rs2, int imm) {
+		int valueIntRs1 = registers.getInt(rs1);
+		int valueIntRs2 = registers.getInt(rs2);
 
 		// Perform bitwise XOR operation
 		int result = valueIntRs1 ^ valueIntRs2;
-		System.out.println(
-				"XOR DEBUG: Performing bitwise XOR on " + valueIntRs1 + " and " + valueIntRs2 + " to get " + result);
-
-		// Convert result to 32-bit binary string
-		String resultBinary = Utility.leftPad("0" + Integer.toBinaryString(result));
+		if (Log.EXEC.isDebug()) {
+			Log.EXEC.debug(
+					"XOR DEBUG: Performing bitwise XOR on " + valueIntRs1 + " and " + valueIntRs2 + " to get " + result);
+		}
 
 		// Update rd register value
-		registers.setRegisterValue(rd, resultBinary);
+		registers.setInt(rd, result);
 		registers.incrementProgramCounter();
-
-		// Build and return the instruction result string
-		return String.format("xor %s, %s, %s", rd, rs1, rs2);
 	}
 
-	public String SRL(HashMap<String, String> instructionComponents) {
-		// Extract components from the HashMap
-		String rd = instructionComponents.get("rd"); // destination register
-		String rs1 = instructionComponents.get("rs1"); // source register 1
-		String rs2 = instructionComponents.get("rs2"); // source register 2
-
-		// Get values from registers
-		String valueRs1 = registers.getRegisterValue(rs1);
-		String valueRs2 = registers.getRegisterValue(rs2);
-
-		int valueIntRs1 = (int) Long.parseUnsignedLong(valueRs1, 2);
-		int valueIntRs2 = (int) Long.parseUnsignedLong(valueRs2, 2);
+	public void SRL(int rd, int rs1, int rs2, int imm) {
+		int valueIntRs1 = registers.getInt(rs1);
+		int valueIntRs2 = registers.getInt(rs2) & 0x1F;
 
 		// Perform shift right logical operation
 		int result = valueIntRs1 >>> valueIntRs2;
-		System.out.println("SRL DEBUG: Shifting " + valueIntRs1 + " right by " + valueIntRs2 + " to get " + result);
-
-		// Convert result to 32-bit binary string
-		String resultBinary = Utility.leftPad("0" + Integer.toBinaryString(result));
+		if (Log.EXEC.isDebug()) {
+			Log.EXEC.debug("SRL DEBUG: Shifting " + valueIntRs1 + " right by " + valueIntRs2 + " to get " + result);
+		}
 
 		// Update rd register value
-		registers.setRegisterValue(rd, resultBinary);
+		registers.setInt(rd, result);
 		registers.incrementProgramCounter();
-
-		// Build and return the instruction result string
-		return String.format("srl %s, %s, %s", rd, rs1, rs2);
 	}
 
-	public String SRA(HashMap<String, String> instructionComponents) {
-		// Extract components from the HashMap
-		String rd = instructionComponents.get("rd"); // destination register
-		String rs1 = instructionComponents.get("rs1"); // source register 1
-		String rs2 = instructionComponents.get("rs2"); // source register 2
-
-		// Get values from registers
-		String valueRs1 = registers.getRegisterValue(rs1);
-		String valueRs2 = registers.getRegisterValue(rs2);
-
-		// Convert register values to integers
-		int valueIntRs1 = (int) Long.parseUnsignedLong(valueRs1, 2);
-		int valueIntRs2 = (int) Long.parseUnsignedLong(valueRs2, 2);
+	public void SRA(int rd, int rs1, int rs2, int imm) {
+		int valueIntRs1 = registers.getInt(rs1);
+		int valueIntRs2 = registers.getInt(rs2) & 0x1F;
 
 		// Perform shift right arithmetic operation
 		int result = valueIntRs1 >> valueIntRs2;
-		System.out.println("SRA DEBUG: Shifting " + valueIntRs1 + " right by " + valueIntRs2 + " to get " + result);
-
-		// Convert result to 32-bit binary string
-		String resultBinary = Utility.leftPad("0" + Integer.toBinaryString(result));
+		if (Log.EXEC.isDebug()) {
+			Log.EXEC.debug("SRA DEBUG: Shifting " + valueIntRs1 + " right by " + valueIntRs2 + " to get " + result);
+		}
 
 		// Update rd register value
-		registers.setRegisterValue(rd, resultBinary);
+		registers.setInt(rd, result);
 		registers.incrementProgramCounter();
-
-		// Build and return the instruction result string
-		return String.format("sra %s, %s, %s", rd, rs1, rs2);
 	}
 
-	public String OR(HashMap<String, String> instructionComponents) {
-		// Extract components from the HashMap
-		String rd = instructionComponents.get("rd"); // destination register
-		String rs1 = instructionComponents.get("rs1"); // source register 1
-		String rs2 = instructionComponents.get("rs2"); // source register 2
-
-	    // Get values from registers
-	    String valueRs1 = registers.getRegisterValue(rs1);
-	    String valueRs2 = registers.getRegisterValue(rs2);
+	public void OR(int rd, int rs1, int rs2, int imm) {
+		int valueIntRs1 = registers.getInt(rs1);
+		int valueIntRs2 = registers.getInt(rs2);
 
 		// Perform bitwise OR operation
-		int result = (int) Long.parseUnsignedLong(valueRs1, 2) | (int) Long.parseUnsignedLong(valueRs2, 2);
-		System.out.println("OR DEBUG: Performing bitwise OR on " + valueRs1 + " and " + valueRs2 + " to get " + result);
+		int result = valueIntRs1 | valueIntRs2;
+		if (Log.EXEC.isDebug()) {
+			Log.EXEC.debug("OR DEBUG: Performing bitwise OR on " + valueIntRs1 + " and " + valueIntRs2 + " to get " + result);
+		}
+
+		// Update rd register value
+		registers.setInt(rd, result);
+		registers.incrementProgramCounter();
+	}
 
-		// Convert result to 32-bit binary string
-		String resultBinary = Utility.leftPad("0" + Integer.toBinaryString(result));
+	public void AND(int rd, int rs1, int rs2, int imm) {
+		int valueIntRs1 = registers.getInt(rs1);
+		int valueIntRs2 = registers.getInt(rs2);
+
+		// Perform bitwise AND operation
+		int result = valueIntRs1 & valueIntRs2;
+		if (Log.EXEC.isDebug()) {
+			Log.EXEC.debug(
+					"AND DEBUG: Performing bitwise AND on " + valueIntRs1 + " and " + valueIntRs2 + " to get " + result);
+		}
 
 		// Update rd register value
-		registers.setRegisterValue(rd, resultBinary);
+		registers.setInt(rd, result);
+		registers.incrementProgramCounter();
+	}
+
+	public void FENCE(int rd, int rs1, int rs2, int imm) {
+		// Accesses already happen in program order, so there is nothing to wait for
 		registers.incrementProgramCounter();
+	}
 
-		// Build and return the instruction result string
-		return String.format("or %s, %s, %s", rd, rs1, rs2);
+	// ecall and ebreak always trap; the handler finds the ecall's pc in sepc
+	public void ECALL(int rd, int rs1, int rs2, int imm) {
+		throw new Trap(mmu.isSupervisor() ? Trap.ECALL_FROM_SUPERVISOR : Trap.ECALL_FROM_USER, 0);
 	}
 
-	public String AND(HashMap<String, String> instructionComponents) {
-		// Extract components from the HashMap
-		String rd = instructionComponents.get("rd"); // destination register
-		String rs1 = instructionComponents.get("rs1"); // source register 1
-		String rs2 = instructionComponents.get("rs2"); // source register 2
+	public void EBREAK(int rd, int rs1, int rs2, int imm) {
+		throw new Trap(Trap.BREAKPOINT, registers.getPc());
+	}
 
-		// Get values from registers
-		String valueRs1 = registers.getRegisterValue(rs1);
-		String valueRs2 = registers.getRegisterValue(rs2);
+	public void SRET(int rd, int rs1, int rs2, int imm) {
+		// Return to the mode and address saved when the trap was taken
+		registers.setPc(csrs.returnFromTrap());
+	}
 
-		int valueIntRs1 = (int) Long.parseUnsignedLong(valueRs1, 2);
-		int valueIntRs2 = (int) Long.parseUnsignedLong(valueRs2, 2);
+	public void SFENCE_VMA(int rd, int rs1, int rs2, int imm) {
+		csrs.checkSupervisor();
 
-		// Perform bitwise AND operation
-		int result = valueIntRs1 & valueIntRs2;
-		System.out.println(
-				"AND DEBUG: Performing bitwise AND on " + valueIntRs1 + " and " + valueIntRs2 + " to get " + result);
+		// rs1 = x0 fences every page, otherwise only the page holding the address in rs1
+		mmu.fence(registers.getInt(rs1), rs1 == 0);
+		registers.incrementProgramCounter();
+	}
 
-		// Convert result to 32-bit binary string
-		String resultBinary = Utility.leftPad("0" + Integer.toBinaryString(result));
+	// The CSR instructions get the CSR number as imm. A CSR is not read when rd is
+	// x0 (csrrw) and not written when rs1 or the immediate is 0 (csrrs, csrrc).
+	public void CSRRW(int rd, int rs1, int rs2, int imm) {
+		int value = registers.getInt(rs1);
+		int old = rd != 0 ? csrs.read(imm) : 0;
+		csrs.write(imm, value);
+		registers.setInt(rd, old);
+		registers.incrementProgramCounter();
+	}
 
-		// Update rd register value
-		registers.setRegisterValue(rd, resultBinary);
+	public void CSRRS(int rd, int rs1, int rs2, int imm) {
+		int mask = registers.getInt(rs1);
+		int old = csrs.read(imm);
+		if (rs1 != 0) {
+			csrs.write(imm, old | mask);
+		}
+		registers.setInt(rd, old);
+		registers.incrementProgramCounter();
+	}
+
+	public void CSRRC(int rd, int rs1, int rs2, int imm) {
+		int mask = registers.getInt(rs1);
+		int old = csrs.read(imm);
+		if (rs1 != 0) {
+			csrs.write(imm, old & ~mask);
+		}
+		registers.setInt(rd, old);
+		registers.incrementProgramCounter();
+	}
+
+	// The immediate forms take a 5-bit zero-extended value from the rs1 field
+	public void CSRRWI(int rd, int rs1, int rs2, int imm) {
+		int old = rd != 0 ? csrs.read(imm) : 0;
+		csrs.write(imm, rs1);
+		registers.setInt(rd, old);
+		registers.incrementProgramCounter();
+	}
+
+	public void CSRRSI(int rd, int rs1, int rs2, int imm) {
+		int old = csrs.read(imm);
+		if (rs1 != 0) {
+			csrs.write(imm, old | rs1);
+		}
+		registers.setInt(rd, old);
 		registers.incrementProgramCounter();
+	}
 
-	    // Build and return the instruction result string
-	    return String.format("and %s, %s, %s", rd, rs1, rs2);
+	public void CSRRCI(int rd, int rs1, int rs2, int imm) {
+		int old = csrs.read(imm);
+		if (rs1 != 0) {
+			csrs.write(imm, old & ~rs1);
+		}
+		registers.setInt(rd, old);
+		registers.incrementProgramCounter();
 	}
-}
\ No newline at end of file
+}
@@ -1,48 +1,106 @@
 package processor;
 import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 
 public class Loader {
   private Memory memory;
+  private int instructionBytes;   // bytes loaded by the last load()
+  private int dataBytes;
+  private long loadNanos;
 
 
   public Loader(Memory memory) {
     this.memory = memory; // Use given memory
   }
 
+  // Loads a .dat program at address 0 and, if datafilename is not empty, a .dat
+  // data image at Utility.DATA_MEMORY_ADDRESS. Each line of a .dat file is one byte
+  // written as binary digits, e.g. "10110111"; blank lines are skipped.
   public void load(String instructionfilename, String datafilename) throws IOException {
+    long start = System.nanoTime();
 
-    FileInputStream insFis = new FileInputStream(instructionfilename);
-    DataInputStream insDis = new DataInputStream(insFis);
-
-    String address = Utility.ALLZEROS; // Start address for instruction memory
-    // Read each line separately and store it into memory
-    while (insDis.available() > 0) {
-        String line = insDis.readLine(); // Read one line from the file
-        // Set the line content into memory at the specified address
-        memory.setMemoryValue(address, line);
-        // Increment the address for the next memory location
-        address = Utility.StringCrement(address, 1);
-    }
-    insFis.close();
-    insDis.close();
+    byte[] instructions = readDat(instructionfilename);
+    memory.storeBytes(0, instructions, 0, instructions.length);
+    instructionBytes = instructions.length;
 
     // Check if dataAddress is provided
+    dataBytes = 0;
     if (!datafilename.isEmpty()) {
-        FileInputStream dataFis = new FileInputStream(datafilename);
-        DataInputStream dataDis = new DataInputStream(dataFis);
-
-        String dataMemAddress = Utility.DATA_MEMORY_ADDRESS; // Start address for data memory
-
-        // Read data from dataAddress file and store it in memory at address 1000 onwards
-        while (dataDis.available() > 0) {
-            System.out.println("LOADER DEBUG: dataMemAddress: " + dataMemAddress);
-            String dataLine = dataDis.readLine();
-            System.out.println("LOADER DEBUG: dataLine: " + dataLine);
-            memory.setMemoryValue(dataMemAddress, dataLine);
-            dataMemAddress = Utility.StringCrement(dataMemAddress, 1); // Increment data memory address
+        int dataMemAddress = Integer.parseUnsignedInt(Utility.DATA_MEMORY_ADDRESS, 2); // Start address for data memory
+        byte[] data = readDat(datafilename);
+        if (Log.LOADER.isDebug()) {
+            for (int i = 0; i < data.length; i++) {
+                Log.LOADER.debug("LOADER DEBUG: dataMemAddress: " + Utility.leftPadSigned(dataMemAddress + i));
+                Log.LOADER.debug("LOADER DEBUG: dataLine: " + Utility.leftPadSigned(data[i] & 0xFF).substring(24));
+            }
         }
-        dataFis.close();
-        dataDis.close();
+        memory.storeBytes(dataMemAddress, data, 0, data.length);
+        dataBytes = data.length;
+    }
+
+    loadNanos = System.nanoTime() - start;
+    if (Log.LOADER.isInfo()) {
+        Log.LOADER.info(String.format("Loaded %d instruction bytes%s in %.3f ms", instructionBytes,
+                datafilename.isEmpty() ? "" : " and " + dataBytes + " data bytes", loadNanos / 1e6));
     }
   }
-}
\ No newline at end of file
+
+  // Parse a .dat file straight from a mapped buffer into bytes, one per line;
+  // a line of more than 8 digits is an error rather than being cut to its low byte
+  static byte[] readDat(String filename) throws IOException {
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException(filename + " is too large to load");
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        // At least two characters per byte ("0\n"), so this is an upper bound
+        byte[] bytes = new byte[(int) ((size + 1) / 2)];
+        int count = 0;
+        int line = 1;
+        int value = 0;
+        int digits = 0;
+        boolean inLine = false;
+        for (int i = 0; i < size; i++) {
+            byte c = buffer.get(i);
+            if (c == '0' || c == '1') {
+                if (++digits > 8) {
+                    throw new IOException(filename + ":" + line + ": more than 8 binary digits");
+                }
+                value = (value << 1) | (c - '0');
+                inLine = true;
+            } else if (c == '\n') {
+                if (inLine) {
+                    bytes[count++] = (byte) value;
+                }
+                value = 0;
+                digits = 0;
+                inLine = false;
+                line++;
+            } else if (c != '\r' && c != ' ' && c != '\t') {
+                throw new IOException(filename + ":" + line + ": expected binary digits but found '" + (char) c + "'");
+            }
+        }
+        if (inLine) {
+            bytes[count++] = (byte) value;
+        }
+        return Arrays.copyOf(bytes, count);
+    }
+  }
+
+  public int getInstructionBytes() {
+    return instructionBytes;
+  }
+
+  public int getDataBytes() {
+    return dataBytes;
+  }
+
+  public long getLoadNanos() {
+    return loadNanos;
+  }
+}
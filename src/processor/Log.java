@@ -0,0 +1,132 @@
+package processor;
+
+import java.io.PrintStream;
+
+// Console logging for each simulator subsystem. Levels are chosen once at startup
+// from the simulator.log system property, a comma separated list of a default
+// level and/or subsystem=level pairs, for example:
+//   -Dsimulator.log=debug                 everything, as the simulator used to print
+//   -Dsimulator.log=off,exec=info         only the executed instruction echo
+//   -Dsimulator.log=memory=debug          memory writes on top of the INFO default
+// Hot paths guard message building with isDebug()/isInfo(), so a disabled
+// subsystem costs one field read and no string concatenation.
+public enum Log {
+    MEMORY,
+    REGISTERS,
+    DECODE,
+    EXEC,
+    LOADER;
+
+    public enum Level {
+        OFF,
+        ERROR,
+        INFO,
+        DEBUG
+    }
+
+    public static final String PROPERTY = "simulator.log";
+
+    private static PrintStream out = System.out;
+
+    private Level level = Level.INFO;
+    private boolean info = true;     // cached level checks for the guards
+    private boolean debug = false;
+
+    static {
+        String spec = System.getProperty(PROPERTY);
+        if (spec != null) {
+            try {
+                configure(spec);
+            } catch (IllegalArgumentException e) {
+                System.err.println("ERROR: Ignoring " + PROPERTY + "=" + spec + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    public void setLevel(Level level) {
+        this.level = level;
+        this.info = level.compareTo(Level.INFO) >= 0;
+        this.debug = level == Level.DEBUG;
+    }
+
+    public boolean isInfo() {
+        return info;
+    }
+
+    public boolean isDebug() {
+        return debug;
+    }
+
+    public void debug(String message) {
+        if (debug) {
+            out.println(message);
+        }
+    }
+
+    public void info(String message) {
+        if (info) {
+            out.println(message);
+        }
+    }
+
+    public void error(String message) {
+        if (level != Level.OFF) {
+            out.println(message);
+        }
+    }
+
+    public static void setAll(Level level) {
+        for (Log log : values()) {
+            log.setLevel(level);
+        }
+    }
+
+    // Apply a level spec such as "off,exec=info,loader=debug"; entries apply left to right
+    public static void configure(String spec) {
+        for (String entry : spec.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+            int equals = entry.indexOf('=');
+            if (equals == -1) {
+                setAll(parseLevel(entry));
+            } else {
+                String name = entry.substring(0, equals).trim();
+                Level level = parseLevel(entry.substring(equals + 1));
+                if (name.equalsIgnoreCase("all")) {
+                    setAll(level);
+                } else {
+                    subsystem(name).setLevel(level);
+                }
+            }
+        }
+    }
+
+    private static Log subsystem(String name) {
+        for (Log log : values()) {
+            if (log.name().equalsIgnoreCase(name)) {
+                return log;
+            }
+        }
+        throw new IllegalArgumentException("Unknown log subsystem: " + name);
+    }
+
+    private static Level parseLevel(String name) {
+        for (Level level : Level.values()) {
+            if (level.name().equalsIgnoreCase(name.trim())) {
+                return level;
+            }
+        }
+        throw new IllegalArgumentException("Unknown log level: " + name);
+    }
+
+    // Send log output somewhere other than System.out
+    public static void setOutput(PrintStream output) {
+        out = output;
+    }
+}
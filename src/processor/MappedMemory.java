@@ -0,0 +1,182 @@
+package processor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+// Guest memory backed by a sparse 4 GiB host file mapped with FileChannel.map.
+// The whole RV32 address space is reachable without heap pressure: the OS only
+// commits file pages that are touched, and whatever the program leaves in memory
+// stays in the file, so opening the same file again resumes from that image.
+// The file is mapped in 256 MiB regions, each on its first access.
+public class MappedMemory extends Memory implements Closeable {
+    private static final int REGION_SHIFT = 28;
+    private static final long REGION_SIZE = 1L << REGION_SHIFT;
+    private static final int REGION_MASK = (int) REGION_SIZE - 1;
+    private static final long ADDRESS_SPACE = 1L << 32;
+
+    private final Path path;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final MappedByteBuffer[] regions = new MappedByteBuffer[(int) (ADDRESS_SPACE >>> REGION_SHIFT)];
+
+    public MappedMemory(Path path) throws IOException {
+        this.path = path;
+        this.file = new RandomAccessFile(path.toFile(), "rw");
+        if (file.length() != ADDRESS_SPACE) {
+            // Sparse on file systems that support it; no blocks are written here
+            file.setLength(ADDRESS_SPACE);
+        }
+        this.channel = file.getChannel();
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    private MappedByteBuffer region(int address) {
+        int index = address >>> REGION_SHIFT;
+        MappedByteBuffer region = regions[index];
+        if (region == null) {
+            try {
+                region = channel.map(FileChannel.MapMode.READ_WRITE, index * REGION_SIZE, REGION_SIZE);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not map guest memory from " + path, e);
+            }
+            region.order(ByteOrder.LITTLE_ENDIAN);
+            regions[index] = region;
+        }
+        return region;
+    }
+
+    @Override
+    protected int readByte(int address) {
+        return region(address).get(address & REGION_MASK);
+    }
+
+    @Override
+    protected void putByte(int address, byte value) {
+        region(address).put(address & REGION_MASK, value);
+    }
+
+    @Override
+    protected void putBytes(int address, byte[] bytes, int offset, int length) {
+        int done = 0;
+        while (done < length) {
+            int regionOffset = address & REGION_MASK;
+            int chunk = (int) Math.min(length - done, REGION_SIZE - regionOffset);
+            region(address).put(regionOffset, bytes, offset + done, chunk);
+            done += chunk;
+            address += chunk;
+        }
+    }
+
+    @Override
+    public int loadHalfword2(int address) {
+        int offset = address & REGION_MASK;
+        if (offset <= REGION_MASK - 1) {
+            return region(address).getShort(offset);
+        }
+        return super.loadHalfword2(address);
+    }
+
+    @Override
+    public int loadWord2(int address) {
+        int offset = address & REGION_MASK;
+        if (offset <= REGION_MASK - 3) {
+            return region(address).getInt(offset);
+        }
+        return super.loadWord2(address);
+    }
+
+    // Non-zero pages in the regions mapped so far. Regions this process has not
+    // touched are skipped, so a checkpoint covers what the current run can reach
+    // without scanning the whole file.
+    @Override
+    public int[] pageAddresses() {
+        int[] addresses = new int[64];
+        int count = 0;
+        for (int index = 0; index < regions.length; index++) {
+            MappedByteBuffer region = regions[index];
+            if (region == null) {
+                continue;
+            }
+            for (int offset = 0; offset < REGION_SIZE; offset += PAGE_SIZE) {
+                if (!isZeroPage(region, offset)) {
+                    if (count == addresses.length) {
+                        addresses = Arrays.copyOf(addresses, count * 2);
+                    }
+                    addresses[count++] = (int) (((long) index << REGION_SHIFT) + offset);
+                }
+            }
+        }
+        return Arrays.copyOf(addresses, count);
+    }
+
+    private static boolean isZeroPage(MappedByteBuffer region, int offset) {
+        for (int i = 0; i < PAGE_SIZE; i += 8) {
+            if (region.getLong(offset + i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void readPage(int address, byte[] page) {
+        region(address).get(address & REGION_MASK & ~PAGE_MASK, page, 0, PAGE_SIZE);
+    }
+
+    // Zero the whole file, including regions this process never mapped: a reopened
+    // file still holds the previous run's image. Truncating drops every block; the
+    // old mappings are forgotten first and regions are mapped again on next access.
+    @Override
+    public void clear() {
+        Arrays.fill(regions, null);
+        try {
+            channel.truncate(0);
+            file.setLength(ADDRESS_SPACE);
+        } catch (IOException e) {
+            // Some platforms refuse to truncate a file that is still mapped
+            byte[] zeros = new byte[PAGE_SIZE];
+            for (int index = 0; index < regions.length; index++) {
+                MappedByteBuffer region = region(index << REGION_SHIFT);
+                for (int offset = 0; offset < REGION_SIZE; offset += PAGE_SIZE) {
+                    if (!isZeroPage(region, offset)) {
+                        region.put(offset, zeros, 0, PAGE_SIZE);
+                    }
+                }
+            }
+        }
+        super.clear();
+    }
+
+    // The file is the memory, so there is nothing to share pages with
+    @Override
+    public boolean canFork() {
+        return false;
+    }
+
+    // Write dirty pages back to the file
+    public void force() {
+        for (MappedByteBuffer region : regions) {
+            if (region != null) {
+                region.force();
+            }
+        }
+    }
+
+    // Flushes the image to the file. The mappings themselves are released by the
+    // garbage collector; the memory must not be used afterwards.
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+        file.close();
+    }
+}
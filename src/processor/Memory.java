@@ -1,96 +1,419 @@
 package processor;
 
-import java.util.HashMap;
+import java.util.Arrays;
 
 public class Memory {
-	private HashMap<String, String> memoryMap;
+    // Guest memory is a sparse two-level page table of 4 KiB byte[] pages.
+    // The top 10 address bits select a table, the next 10 select a page in it.
+    // Subclasses can keep the bytes elsewhere (see MappedMemory) by overriding
+    // readByte, putByte, putBytes and the multi-byte loads.
+    public static final int PAGE_SHIFT = 12;
+    public static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    protected static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int TABLE_SHIFT = 22;
+    private static final int TABLE_SIZE = 1 << (TABLE_SHIFT - PAGE_SHIFT);
+    private static final int TABLE_MASK = TABLE_SIZE - 1;
+    private static final int DATA_ADDRESS = Integer.parseUnsignedInt(Utility.DATA_MEMORY_ADDRESS, 2);
+
+    private byte[][][] directory;
+    // After a fork, pages are shared with the other copy until written. owned has
+    // one bit per page of each table, set once this Memory has its own copy; null
+    // means every page is ours. What this Memory owned before its forks is kept in
+    // ownedBeforeForks and given back once every fork has been released.
+    private long[][] owned;
+    private long[][] ownedBeforeForks;
+    private int liveForks;              // forks taken from this Memory and not released
+    // Set in a fork only
+    private Memory parent;              // until this fork and all of its own forks are released
+    private boolean released;
+    private long[][] written;           // pages written since the fork, null if not a fork
+    private InstructionCache instructionCache;  // invalidated by stores, may be null
     public int dataLines;
 
-	public Memory() {
-		memoryMap = new HashMap<>();
+    public Memory() {
+        directory = new byte[1 << (32 - TABLE_SHIFT)][][];
         this.dataLines = 0;
-	}
+    }
+
+    // Copy-on-write copy of this memory. Both copies share every page until one of
+    // them writes it, so a fork costs one table copy per 4 MiB in use. The fork has
+    // no instruction cache. Release a fork that is no longer needed, otherwise this
+    // memory keeps copying pages on first write to protect it.
+    public Memory fork() {
+        if (!canFork()) {
+            throw new UnsupportedOperationException(getClass().getSimpleName() + " cannot be forked");
+        }
+        Memory fork = new Memory();
+        fork.dataLines = dataLines;
+        fork.parent = this;
+        fork.owned = new long[directory.length][];
+        fork.written = new long[directory.length][];
+        if (liveForks++ == 0) {
+            ownedBeforeForks = owned == null ? null : copyOf(owned);
+        } else if (owned != null && ownedBeforeForks != null) {
+            // Pages copied since the last fork are ours too once the forks are gone
+            or(ownedBeforeForks, owned);
+        }
+        if (owned == null) {
+            owned = new long[directory.length][];
+        }
+        for (int t = 0; t < directory.length; t++) {
+            if (directory[t] != null) {
+                fork.directory[t] = directory[t].clone();
+                // Pages now belong to neither copy
+                owned[t] = new long[TABLE_SIZE / 64];
+                fork.owned[t] = new long[TABLE_SIZE / 64];
+            }
+        }
+        return fork;
+    }
+
+    // Whether fork() is supported; MappedMemory keeps its bytes in a file and is not
+    public boolean canFork() {
+        return true;
+    }
+
+    // Done with this fork, which must not be used afterwards. When every fork of a
+    // memory has been released it owns its pages again and writes them in place.
+    public void release() {
+        if (parent == null || released) {
+            return;
+        }
+        released = true;
+        if (liveForks == 0) {
+            parent.forkReleased();
+            parent = null;
+        }
+    }
+
+    private void forkReleased() {
+        if (--liveForks > 0) {
+            return;
+        }
+        if (owned != null) {
+            if (ownedBeforeForks == null) {
+                owned = null;
+            } else {
+                or(ownedBeforeForks, owned);
+                owned = ownedBeforeForks;
+            }
+        }
+        ownedBeforeForks = null;
+        // A released fork waits for its own forks before letting go of its parent
+        if (released && parent != null) {
+            parent.forkReleased();
+            parent = null;
+        }
+    }
+
+    private static long[][] copyOf(long[][] bits) {
+        long[][] copy = new long[bits.length][];
+        for (int t = 0; t < bits.length; t++) {
+            if (bits[t] != null) {
+                copy[t] = bits[t].clone();
+            }
+        }
+        return copy;
+    }
+
+    // into |= bits, table by table
+    private static void or(long[][] into, long[][] bits) {
+        for (int t = 0; t < bits.length; t++) {
+            if (bits[t] == null) {
+                continue;
+            }
+            if (into[t] == null) {
+                into[t] = bits[t].clone();
+            } else {
+                for (int i = 0; i < bits[t].length; i++) {
+                    into[t][i] |= bits[t][i];
+                }
+            }
+        }
+    }
 
-	public void setMemoryValue(String address, String value) {
-		if(Long.parseLong(address, 2) >= Long.parseLong(Utility.DATA_MEMORY_ADDRESS, 2)) {
-            System.out.print("  MEMORY DEBUG: Putting data " + value + " at address " + address);
-            // Print memory address as 8 byte hex
-            System.out.println(" (0x" + Long.toHexString(Long.parseLong(address, 2)) + ")");
+    public void setInstructionCache(InstructionCache instructionCache) {
+        this.instructionCache = instructionCache;
+    }
+
+    private void invalidate(int address, int length) {
+        if (instructionCache != null) {
+            instructionCache.invalidate(address, length);
+        }
+    }
+
+    // Page holding address, or null if it has never been written
+    private byte[] pageFor(int address) {
+        byte[][] table = directory[address >>> TABLE_SHIFT];
+        return table == null ? null : table[(address >>> PAGE_SHIFT) & TABLE_MASK];
+    }
+
+    // Page holding address, allocating it (zero filled) on first write
+    private byte[] writablePageFor(int address) {
+        byte[][] table = directory[address >>> TABLE_SHIFT];
+        if (table == null) {
+            table = new byte[TABLE_SIZE][];
+            directory[address >>> TABLE_SHIFT] = table;
+        }
+        int index = (address >>> PAGE_SHIFT) & TABLE_MASK;
+        byte[] page = table[index];
+        if (owned == null) {
+            // Never forked, every page is ours
+            if (page == null) {
+                page = new byte[PAGE_SIZE];
+                table[index] = page;
+            }
+            return page;
+        }
+        long[] bits = owned[address >>> TABLE_SHIFT];
+        if (bits == null) {
+            bits = new long[TABLE_SIZE / 64];
+            owned[address >>> TABLE_SHIFT] = bits;
+        }
+        if ((bits[index >>> 6] & (1L << index)) == 0) {
+            // Shared with a fork (or missing): take a private copy before writing
+            page = page == null ? new byte[PAGE_SIZE] : page.clone();
+            table[index] = page;
+            bits[index >>> 6] |= 1L << index;
+            if (written != null) {
+                long[] dirty = written[address >>> TABLE_SHIFT];
+                if (dirty == null) {
+                    dirty = new long[TABLE_SIZE / 64];
+                    written[address >>> TABLE_SHIFT] = dirty;
+                }
+                dirty[index >>> 6] |= 1L << index;
+            }
+        }
+        return page;
+    }
+
+    protected int readByte(int address) {
+        byte[] page = pageFor(address);
+        return page == null ? 0 : page[address & PAGE_MASK];
+    }
+
+    protected void putByte(int address, byte value) {
+        writablePageFor(address)[address & PAGE_MASK] = value;
+    }
+
+    // Bulk copy into storage, a page at a time
+    protected void putBytes(int address, byte[] bytes, int offset, int length) {
+        int done = 0;
+        while (done < length) {
+            int pageOffset = address & PAGE_MASK;
+            int chunk = Math.min(length - done, PAGE_SIZE - pageOffset);
+            System.arraycopy(bytes, offset + done, writablePageFor(address), pageOffset, chunk);
+            done += chunk;
+            address += chunk;
+        }
+    }
+
+    private void writeByte(int address, int value) {
+        if (Integer.compareUnsigned(address, DATA_ADDRESS) >= 0) {
+            if (Log.MEMORY.isDebug()) {
+                // Print memory address as 8 byte hex
+                Log.MEMORY.debug("  MEMORY DEBUG: Putting data " + Utility.leftPadSigned(value & 0xFF).substring(24)
+                        + " at address " + Utility.leftPadSigned(address) + " (0x" + Integer.toHexString(address) + ")");
+            }
             this.dataLines++;
         }
-		memoryMap.put(address, value);
-	}
-
-	public String getMemoryValue(String address) {
-		if (memoryMap.containsKey(address)) {
-			return memoryMap.get(address);
-		} else {
-			//return Utility.ALLZEROS; // default to 0
-			// Return 8 bit 0's for unset memory
-			return Utility.ALLZEROS.substring(0, 8); // default to 0
-		}
-	}
-
-	public String getInstruction(String startingAddress) {
-		String instruction = "";
-		for (int i = 0; i < 4; i++) {
-			instruction = getMemoryValue(startingAddress) + instruction;
-			startingAddress = Utility.StringCrement(startingAddress, 1);
-		}
-		return instruction;
-	}
-
-    public String loadWord2(int memoryAddress) {
-        String memoryValue = Utility.leftPadSigned(memoryAddress);
-        String wordValue = "";
+        putByte(address, (byte) value);
+    }
+
+    // Sign-extended byte at address
+    public int loadByte(int address) {
+        return (byte) readByte(address);
+    }
+
+    // Sign-extended little-endian halfword at address
+    public int loadHalfword2(int address) {
+        byte[] page = pageFor(address);
+        int offset = address & PAGE_MASK;
+        if (page != null && offset <= PAGE_SIZE - 2) {
+            return (short) ((page[offset] & 0xFF) | (page[offset + 1] << 8));
+        }
+        return (short) ((readByte(address) & 0xFF) | (readByte(address + 1) << 8));
+    }
+
+    // Little-endian word at address
+    public int loadWord2(int address) {
+        byte[] page = pageFor(address);
+        int offset = address & PAGE_MASK;
+        if (page != null && offset <= PAGE_SIZE - 4) {
+            return (page[offset] & 0xFF) | (page[offset + 1] & 0xFF) << 8
+                    | (page[offset + 2] & 0xFF) << 16 | page[offset + 3] << 24;
+        }
+        if (page == null && offset <= PAGE_SIZE - 4) {
+            return 0;
+        }
+        return (readByte(address) & 0xFF) | (readByte(address + 1) & 0xFF) << 8
+                | (readByte(address + 2) & 0xFF) << 16 | readByte(address + 3) << 24;
+    }
+
+    public int getInstruction(int address) {
+        return loadWord2(address);
+    }
+
+    public void storeByte(int memoryAddress, int value) {
+        writeByte(memoryAddress, value);
+        invalidate(memoryAddress, 1);
+    }
+
+    public void storeHalfword(int memoryAddress, int value) {
+        writeByte(memoryAddress, value);
+        writeByte(memoryAddress + 1, value >>> 8);
+        invalidate(memoryAddress, 2);
+    }
+
+    public void storeWord(int memoryAddress, int value) {
         for (int i = 0; i < 4; i++) {
-            wordValue = getMemoryValue(memoryValue) + wordValue;
-            memoryValue = Utility.StringCrement(memoryValue, 1);
+            writeByte(memoryAddress + i, value >>> (i * 8));
         }
-        return wordValue;
+        invalidate(memoryAddress, 4);
     }
-    
-    public String loadHalfword2(int address) {
-    	String halfwordValue = getMemoryValue(Utility.leftPadSigned(address));
-        System.out.println("MEMORY DEBUG: halfwordValue: " + halfwordValue);
-        return halfwordValue;
+
+    // Copy length bytes from bytes[offset] to memory starting at memoryAddress
+    public void storeBytes(int memoryAddress, byte[] bytes, int offset, int length) {
+        if (length <= 0) {
+            return;
+        }
+        if (Log.MEMORY.isDebug()) {
+            // Keep the per-byte debug output
+            for (int i = 0; i < length; i++) {
+                writeByte(memoryAddress + i, bytes[offset + i]);
+            }
+        } else {
+            dataLines += dataBytesIn(memoryAddress, length);
+            putBytes(memoryAddress, bytes, offset, length);
+        }
+        invalidate(memoryAddress, length);
     }
-    
-    public String loadByte(int address) {
-        // Assuming that the address is an integer for simplicity
-        String byteValue = getMemoryValue(Utility.leftPadSigned(address));
-        return byteValue;
+
+    // How many of the length bytes at address are at or above DATA_ADDRESS
+    private static int dataBytesIn(int address, int length) {
+        long start = Integer.toUnsignedLong(address);
+        long end = start + length;
+        long data = Integer.toUnsignedLong(DATA_ADDRESS);
+        if (end > 1L << 32) {
+            // Wraps past the top of memory; the wrapped part is below DATA_ADDRESS
+            end = 1L << 32;
+        }
+        return (int) Math.max(0, end - Math.max(start, data));
     }
 
-    public void storeByte(int memoryAddress, String byteValue) {
-        // Store the byte at the specified memory address
-        String address = Utility.leftPadSigned(memoryAddress);
-        setMemoryValue(address, byteValue);
+    // Whole-page access for checkpoints. Pages are PAGE_SIZE bytes at PAGE_SIZE
+    // aligned addresses.
+
+    // Addresses of every page that may hold non-zero data, in ascending order
+    public int[] pageAddresses() {
+        int count = 0;
+        for (byte[][] table : directory) {
+            if (table != null) {
+                for (byte[] page : table) {
+                    if (page != null) {
+                        count++;
+                    }
+                }
+            }
+        }
+        int[] addresses = new int[count];
+        count = 0;
+        for (int t = 0; t < directory.length; t++) {
+            if (directory[t] != null) {
+                for (int p = 0; p < TABLE_SIZE; p++) {
+                    if (directory[t][p] != null) {
+                        addresses[count++] = t << TABLE_SHIFT | p << PAGE_SHIFT;
+                    }
+                }
+            }
+        }
+        return addresses;
     }
-    
-    public void storeHalfword(int memoryAddress, String halfWordvalue) {
-        // Split the 16-bit value into 2 bytes
-        String[] bytes = new String[2];
-        for (int i = 0; i < 2; i++) {
-            bytes[i] = halfWordvalue.substring(i * 8, (i + 1) * 8);
+
+    // Addresses of the pages written since this memory was forked, or of every
+    // page if it is not a fork. Taking forks of this memory does not change it.
+    public int[] dirtyPageAddresses() {
+        if (written == null) {
+            return pageAddresses();
         }
-        // Store each byte at the corresponding memory address
-        for (int i = 0; i < 2; i++) {
-            String address = Utility.leftPadSigned(memoryAddress + i);
-            setMemoryValue(address, bytes[i]);
+        int count = 0;
+        int[] addresses = new int[16];
+        for (int t = 0; t < directory.length; t++) {
+            if (directory[t] == null || written[t] == null) {
+                continue;
+            }
+            for (int p = 0; p < TABLE_SIZE; p++) {
+                if ((written[t][p >>> 6] & (1L << p)) != 0) {
+                    if (count == addresses.length) {
+                        addresses = Arrays.copyOf(addresses, count * 2);
+                    }
+                    addresses[count++] = t << TABLE_SHIFT | p << PAGE_SHIFT;
+                }
+            }
         }
+        return Arrays.copyOf(addresses, count);
     }
 
-    public void storeWord(int memoryAddress, String value) {
-        // Split the 32-bit value into 4 bytes
-        String[] bytes = new String[4];
-        for (int i = 0; i < 4; i++) {
-            bytes[i] = value.substring((3 - i) * 8, (4 - i) * 8);
+    // Copy the page at address into page
+    public void readPage(int address, byte[] page) {
+        byte[] stored = pageFor(address);
+        if (stored == null) {
+            Arrays.fill(page, 0, PAGE_SIZE, (byte) 0);
+        } else {
+            System.arraycopy(stored, 0, page, 0, PAGE_SIZE);
         }
-        // Store each byte at the consecutive memory addresses
-        for (int i = 0; i < 4; i++) {
-            String address = Utility.leftPadSigned(memoryAddress + i);
-            setMemoryValue(address, bytes[i]);
+    }
+
+    // Overwrite the page at address without counting data bytes or logging
+    public void writePage(int address, byte[] page) {
+        putBytes(address & ~PAGE_MASK, page, 0, PAGE_SIZE);
+        invalidate(address & ~PAGE_MASK, PAGE_SIZE);
+    }
+
+    // Drop all contents, leaving every byte zero. Nothing is shared with forks any
+    // more, and a cleared fork reports every page as dirty.
+    public void clear() {
+        directory = new byte[1 << (32 - TABLE_SHIFT)][][];
+        owned = null;
+        ownedBeforeForks = null;
+        written = null;
+        dataLines = 0;
+        if (instructionCache != null) {
+            instructionCache.clear();
+        }
+    }
+
+    // String views of memory used by the loader and the REPL.
+    // Addresses are 32-bit binary strings and each byte is an 8-bit binary string.
+
+    public void setMemoryValue(String address, String value) {
+        int byteAddress = Integer.parseUnsignedInt(address, 2);
+        writeByte(byteAddress, Integer.parseUnsignedInt(value, 2));
+        invalidate(byteAddress, 1);
+    }
+
+    public String getMemoryValue(String address) {
+        return Utility.leftPadSigned(readByte(Integer.parseUnsignedInt(address, 2)) & 0xFF).substring(24);
+    }
+
+    public String getInstruction(String startingAddress) {
+        return Utility.leftPadSigned(getInstruction(Integer.parseUnsignedInt(startingAddress, 2)));
+    }
+
+    // Stores a binary string of one or more bytes, least significant byte at memoryAddress
+    public void storeByte(int memoryAddress, String byteValue) {
+        int value = Integer.parseUnsignedInt(byteValue, 2);
+        for (int i = 0; i < byteValue.length() / 8; i++) {
+            writeByte(memoryAddress + i, value >>> (i * 8));
         }
+        invalidate(memoryAddress, byteValue.length() / 8);
+    }
+
+    public void storeHalfword(int memoryAddress, String halfWordvalue) {
+        storeHalfword(memoryAddress, Integer.parseUnsignedInt(halfWordvalue, 2));
+    }
+
+    public void storeWord(int memoryAddress, String value) {
+        storeWord(memoryAddress, Integer.parseUnsignedInt(value, 2));
     }
 }
@@ -0,0 +1,96 @@
+package processor;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MemoryForkTest {
+
+    private Memory testMemory;
+
+    @BeforeEach
+    void setUp() {
+        testMemory = new Memory();
+        testMemory.storeWord(0x1000, 1);
+        testMemory.storeWord(0x2000, 2);
+        testMemory.storeWord(0x00400000, 3);      // a second page table
+    }
+
+    @Test
+    void ForksAreIsolated() {
+        assertTrue(testMemory.canFork());
+        Memory fork = testMemory.fork();
+        assertEquals(1, fork.loadWord2(0x1000));
+        assertEquals(3, fork.loadWord2(0x00400000));
+
+        // Writes on either side stay on that side, including byte and bulk stores
+        fork.storeWord(0x1000, 10);
+        fork.storeByte(0x00400001, 0x7F);
+        fork.storeBytes(0x5000, new byte[] {1, 2, 3, 4}, 0, 4);
+        testMemory.storeWord(0x2000, 20);
+
+        assertEquals(1, testMemory.loadWord2(0x1000));
+        assertEquals(3, testMemory.loadWord2(0x00400000));
+        assertEquals(0, testMemory.loadWord2(0x5000));
+        assertEquals(10, fork.loadWord2(0x1000));
+        assertEquals(0x7F03, fork.loadWord2(0x00400000));
+        assertEquals(0x04030201, fork.loadWord2(0x5000));
+        assertEquals(2, fork.loadWord2(0x2000));
+        assertEquals(20, testMemory.loadWord2(0x2000));
+
+        // Only the pages the fork wrote are dirty
+        assertArrayEquals(new int[] {0x1000, 0x5000, 0x00400000}, fork.dirtyPageAddresses());
+        fork.release();
+    }
+
+    @Test
+    void SiblingAndNestedForks() {
+        Memory first = testMemory.fork();
+        Memory second = testMemory.fork();
+        Memory nested = first.fork();
+
+        first.storeWord(0x1000, 100);
+        second.storeWord(0x1000, 200);
+        nested.storeWord(0x1000, 300);
+
+        assertEquals(1, testMemory.loadWord2(0x1000));
+        assertEquals(100, first.loadWord2(0x1000));
+        assertEquals(200, second.loadWord2(0x1000));
+        assertEquals(300, nested.loadWord2(0x1000));
+
+        // Releasing forks in any order leaves the others unchanged
+        first.release();
+        testMemory.storeWord(0x1000, 4);
+        assertEquals(200, second.loadWord2(0x1000));
+        assertEquals(300, nested.loadWord2(0x1000));
+        second.release();
+        nested.release();
+        assertEquals(4, testMemory.loadWord2(0x1000));
+    }
+
+    @Test
+    void ForkAgainAfterRelease() {
+        Memory fork = testMemory.fork();
+        fork.storeWord(0x2000, 50);
+        fork.release();
+
+        // The parent owns its pages again and writes them in place
+        testMemory.storeWord(0x1000, 5);
+        assertEquals(5, testMemory.loadWord2(0x1000));
+        assertEquals(2, testMemory.loadWord2(0x2000));
+
+        // A new fork still shares nothing it can write through
+        Memory again = testMemory.fork();
+        again.storeWord(0x1000, 6);
+        testMemory.storeWord(0x2000, 7);
+        assertEquals(5, testMemory.loadWord2(0x1000));
+        assertEquals(2, again.loadWord2(0x2000));
+        assertEquals(6, again.loadWord2(0x1000));
+        again.release();
+
+        testMemory.clear();
+        assertEquals(0, testMemory.loadWord2(0x1000));
+    }
+}
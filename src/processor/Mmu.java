@@ -0,0 +1,258 @@
+package processor;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+// Sv32 address translation between the instruction handlers and Memory. With
+// satp.MODE = 0 (bare, the reset state) addresses pass straight through. Otherwise
+// every fetch, load and store is looked up in a direct-mapped software TLB of 4 KiB
+// pages and only misses walk the two-level page table; a 4 MiB megapage is entered
+// one 4 KiB page at a time. Each entry keeps which of load, store and fetch the
+// current privilege, SUM and MXR allow, so a hit is a single probe. The whole TLB is
+// flushed when satp, SUM, MXR or the privilege mode change, and by sfence.vma (one
+// page or all of them). ASIDs are not tracked.
+//
+// A halfword or word access that runs into the next page raises a misaligned-access
+// trap when paging is on, since the two pages may map anywhere or not at all; the
+// kernel's handler can split it. Bare mode allows any alignment.
+//
+// The walker never writes page tables: a leaf with A clear, or D clear on a store,
+// is a page fault, and the kernel sets the bit (the spec allows either scheme).
+// Physical addresses above 4 GiB wrap, memory is only 32 bits wide.
+public class Mmu {
+
+    // Access types, also bit numbers in the TLB permission masks
+    public static final int LOAD = 0;
+    public static final int STORE = 1;
+    public static final int FETCH = 2;
+
+    private static final int TLB_ENTRIES = 256;
+    private static final int TLB_MASK = TLB_ENTRIES - 1;
+
+    // Page table entry bits
+    private static final int PTE_V = 1;
+    private static final int PTE_R = 1 << 1;
+    private static final int PTE_W = 1 << 2;
+    private static final int PTE_X = 1 << 3;
+    private static final int PTE_U = 1 << 4;
+    private static final int PTE_A = 1 << 6;
+    private static final int PTE_D = 1 << 7;
+
+    private static final int[] FAULTS = {Trap.LOAD_PAGE_FAULT, Trap.STORE_PAGE_FAULT, Trap.INSTRUCTION_PAGE_FAULT};
+
+    private final int[] tlbPages = new int[TLB_ENTRIES];      // virtual page number, -1 when empty
+    private final int[] tlbFrames = new int[TLB_ENTRIES];     // physical page number
+    private final byte[] tlbAllowed = new byte[TLB_ENTRIES];  // 1 << LOAD | 1 << STORE | 1 << FETCH
+    private final boolean[] tlbMegapage = new boolean[TLB_ENTRIES]; // entry is one page of a 4 MiB megapage
+
+    private int satp;
+    private boolean paging;             // satp.MODE is Sv32
+    private boolean supervisor = true;  // false in user mode
+    private boolean sum;                // supervisor may access user pages
+    private boolean mxr;                // loads from execute-only pages succeed
+
+    private long hits;
+    private long misses;
+    private long faults;
+
+    public Mmu() {
+        Arrays.fill(tlbPages, -1);
+    }
+
+    // Physical address for address, or a Trap if the access is not allowed
+    public int translate(Memory memory, int address, int access) {
+        if (!paging) {
+            return address;
+        }
+        int page = address >>> Memory.PAGE_SHIFT;
+        int index = page & TLB_MASK;
+        if (tlbPages[index] == page && (tlbAllowed[index] >> access & 1) != 0) {
+            hits++;
+            return tlbFrames[index] << Memory.PAGE_SHIFT | address & (Memory.PAGE_SIZE - 1);
+        }
+        return walk(memory, address, access);
+    }
+
+    // Physical address for a size-byte access at address; a Trap if it is not
+    // allowed or crosses a page boundary while paging is on
+    public int translate(Memory memory, int address, int access, int size) {
+        if (paging && (address & (Memory.PAGE_SIZE - 1)) > Memory.PAGE_SIZE - size) {
+            throw new Trap(access == STORE ? Trap.STORE_ADDRESS_MISALIGNED : Trap.LOAD_ADDRESS_MISALIGNED, address);
+        }
+        return translate(memory, address, access);
+    }
+
+    private int walk(Memory memory, int address, int access) {
+        misses++;
+        int page = address >>> Memory.PAGE_SHIFT;
+        int root = satp << Memory.PAGE_SHIFT;
+        int pte = memory.loadWord2(root + ((page >>> 10) << 2));
+        if (!isValid(pte)) {
+            throw fault(address, access);
+        }
+        int frame;
+        boolean megapage = isLeaf(pte);
+        if (megapage) {
+            // Megapage, PPN[0] has to be zero
+            if (((pte >>> 10) & 0x3FF) != 0) {
+                throw fault(address, access);
+            }
+            frame = (pte >>> 10) | (page & 0x3FF);
+        } else {
+            pte = memory.loadWord2(((pte >>> 10) << Memory.PAGE_SHIFT) + ((page & 0x3FF) << 2));
+            if (!isValid(pte) || !isLeaf(pte)) {
+                throw fault(address, access);
+            }
+            frame = pte >>> 10;
+        }
+        int allowed = allowed(pte);
+        if ((allowed >> access & 1) == 0) {
+            throw fault(address, access);
+        }
+        int index = page & TLB_MASK;
+        tlbPages[index] = page;
+        tlbFrames[index] = frame;
+        tlbAllowed[index] = (byte) allowed;
+        tlbMegapage[index] = megapage;
+        return frame << Memory.PAGE_SHIFT | address & (Memory.PAGE_SIZE - 1);
+    }
+
+    private static boolean isValid(int pte) {
+        // W without R is reserved
+        return (pte & PTE_V) != 0 && ((pte & PTE_R) != 0 || (pte & PTE_W) == 0);
+    }
+
+    private static boolean isLeaf(int pte) {
+        return (pte & (PTE_R | PTE_X)) != 0;
+    }
+
+    // Accesses a leaf allows in the current mode
+    private int allowed(int pte) {
+        if ((pte & PTE_A) == 0) {
+            return 0;
+        }
+        boolean userPage = (pte & PTE_U) != 0;
+        if (supervisor ? userPage && !sum : !userPage) {
+            return 0;
+        }
+        int allowed = 0;
+        if ((pte & PTE_R) != 0 || (mxr && (pte & PTE_X) != 0)) {
+            allowed |= 1 << LOAD;
+        }
+        if ((pte & PTE_W) != 0 && (pte & PTE_D) != 0) {
+            allowed |= 1 << STORE;
+        }
+        // Supervisor mode never executes user pages
+        if ((pte & PTE_X) != 0 && !(supervisor && userPage)) {
+            allowed |= 1 << FETCH;
+        }
+        return allowed;
+    }
+
+    private Trap fault(int address, int access) {
+        faults++;
+        return new Trap(FAULTS[access], address);
+    }
+
+    public int getSatp() {
+        return satp;
+    }
+
+    public void setSatp(int satp) {
+        this.satp = satp;
+        this.paging = satp < 0;     // MODE is bit 31
+        flush();
+    }
+
+    public boolean isPaging() {
+        return paging;
+    }
+
+    public boolean isSupervisor() {
+        return supervisor;
+    }
+
+    public void setSupervisor(boolean supervisor) {
+        if (this.supervisor != supervisor) {
+            this.supervisor = supervisor;
+            flush();
+        }
+    }
+
+    public void setStatus(boolean sum, boolean mxr) {
+        if (this.sum != sum || this.mxr != mxr) {
+            this.sum = sum;
+            this.mxr = mxr;
+            flush();
+        }
+    }
+
+    // sfence.vma: forget the page holding address, or every page if all is set. A
+    // megapage sits in the TLB as several 4 KiB entries, all of which have to go.
+    public void fence(int address, boolean all) {
+        if (all) {
+            flush();
+            return;
+        }
+        int page = address >>> Memory.PAGE_SHIFT;
+        if (tlbPages[page & TLB_MASK] == page) {
+            tlbPages[page & TLB_MASK] = -1;
+        }
+        for (int index = 0; index < TLB_ENTRIES; index++) {
+            if (tlbMegapage[index] && tlbPages[index] >>> 10 == page >>> 10) {
+                tlbPages[index] = -1;
+            }
+        }
+    }
+
+    public void flush() {
+        Arrays.fill(tlbPages, -1);
+    }
+
+    // Bare, supervisor mode and empty TLB, as after reset
+    public void reset() {
+        satp = 0;
+        paging = false;
+        supervisor = true;
+        sum = false;
+        mxr = false;
+        flush();
+        hits = 0;
+        misses = 0;
+        faults = 0;
+    }
+
+    // Same translation state as other, with an empty TLB
+    public void copyFrom(Mmu other) {
+        satp = other.satp;
+        paging = other.paging;
+        supervisor = other.supervisor;
+        sum = other.sum;
+        mxr = other.mxr;
+        flush();
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getFaults() {
+        return faults;
+    }
+
+    @Override
+    public String toString() {
+        if (!paging) {
+            return "MMU: bare, no translation\n";
+        }
+        long lookups = hits + misses;
+        return String.format(Locale.ROOT, "MMU: Sv32, root page table 0x%08x, %s mode%n"
+                + "  TLB %d entries: %d hits, %d misses (%.2f%%), %d page faults%n",
+                satp << Memory.PAGE_SHIFT, supervisor ? "supervisor" : "user", TLB_ENTRIES, hits, misses,
+                lookups == 0 ? 0 : 100.0 * misses / lookups, faults);
+    }
+}
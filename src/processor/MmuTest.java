@@ -0,0 +1,196 @@
+package processor;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MmuTest {
+
+    private static final int ROOT = 0x10000;            // root page table
+    private static final int TABLE = 0x11000;           // second-level table for 0 to 4 MiB
+    private static final int SATP = 0x80000000 | ROOT >>> 12;
+
+    private static final int V = 1;
+    private static final int R = 1 << 1;
+    private static final int W = 1 << 2;
+    private static final int X = 1 << 3;
+    private static final int U = 1 << 4;
+    private static final int A = 1 << 6;
+    private static final int D = 1 << 7;
+
+    private Memory testMemory;
+    private Mmu testMmu;
+
+    private static int pte(int physicalAddress, int flags) {
+        return physicalAddress >>> 12 << 10 | flags;
+    }
+
+    // Map the 4 KiB page at virtualAddress (below 4 MiB) to physicalAddress
+    private void map(int virtualAddress, int physicalAddress, int flags) {
+        testMemory.storeWord(TABLE + (virtualAddress >>> 12 << 2), pte(physicalAddress, flags));
+    }
+
+    // Translate, expecting a Trap with code and the faulting address as its value
+    private void assertTraps(int code, int address, int access) {
+        Trap trap = assertThrows(Trap.class, () -> testMmu.translate(testMemory, address, access));
+        assertEquals(code, trap.getCode());
+        assertEquals(address, trap.getValue());
+    }
+
+    @BeforeEach
+    void setUp() {
+        testMemory = new Memory();
+        testMmu = new Mmu();
+        testMemory.storeWord(ROOT, pte(TABLE, V));
+        map(0x1000, 0x20000, R | W | X | A | D | V);
+        map(0x2000, 0x21000, R | A | V);                // read only
+        map(0x3000, 0x22000, R | W | A | V);            // D clear
+        map(0x4000, 0x23000, R | W | D | V);            // A clear
+        map(0x5000, 0x24000, X | A | V);                // execute only
+        map(0x6000, 0x25000, R | W | A | D | U | V);    // user page
+        map(0x7000, 0x26000, W | A | D | V);            // W without R is reserved
+        // 4 MiB megapage at 4 MiB, and one whose frame is not 4 MiB aligned at 8 MiB
+        testMemory.storeWord(ROOT + 4, pte(0x00800000, R | W | A | D | V));
+        testMemory.storeWord(ROOT + 8, pte(0x00801000, R | A | V));
+        testMmu.setSatp(SATP);
+    }
+
+    @Test
+    void Bare() {
+        testMmu.setSatp(0);
+        assertEquals(0x12345678, testMmu.translate(testMemory, 0x12345678, Mmu.STORE));
+        // Any alignment without paging
+        assertEquals(0x1FFE, testMmu.translate(testMemory, 0x1FFE, Mmu.LOAD, 4));
+    }
+
+    @Test
+    void Walks() {
+        assertEquals(0x20ABC, testMmu.translate(testMemory, 0x1ABC, Mmu.LOAD));
+        assertEquals(0x20ABC, testMmu.translate(testMemory, 0x1ABC, Mmu.FETCH));
+        assertEquals(0x20000, testMmu.translate(testMemory, 0x1000, Mmu.STORE));
+        assertEquals(0x00801234, testMmu.translate(testMemory, 0x00401234, Mmu.STORE));
+        assertEquals(0x00BFFFFC, testMmu.translate(testMemory, 0x007FFFFC, Mmu.LOAD));
+        // The megapage is entered in the TLB one 4 KiB page at a time
+        assertEquals(3, testMmu.getMisses());
+        assertEquals(2, testMmu.getHits());
+    }
+
+    @Test
+    void PageFaults() {
+        assertTraps(Trap.LOAD_PAGE_FAULT, 0x00C00000, Mmu.LOAD);         // no root entry
+        assertTraps(Trap.INSTRUCTION_PAGE_FAULT, 0x8000, Mmu.FETCH);     // no leaf
+        assertTraps(Trap.STORE_PAGE_FAULT, 0x2004, Mmu.STORE);
+        assertTraps(Trap.INSTRUCTION_PAGE_FAULT, 0x2004, Mmu.FETCH);
+        assertTraps(Trap.STORE_PAGE_FAULT, 0x3000, Mmu.STORE);
+        assertEquals(0x22000, testMmu.translate(testMemory, 0x3000, Mmu.LOAD));
+        assertTraps(Trap.LOAD_PAGE_FAULT, 0x4000, Mmu.LOAD);
+        assertTraps(Trap.LOAD_PAGE_FAULT, 0x5000, Mmu.LOAD);
+        assertTraps(Trap.LOAD_PAGE_FAULT, 0x7000, Mmu.LOAD);
+        assertTraps(Trap.LOAD_PAGE_FAULT, 0x00800000, Mmu.LOAD);         // misaligned megapage
+        assertEquals(9, testMmu.getFaults());
+    }
+
+    @Test
+    void PrivilegeSumAndMxr() {
+        // Supervisor mode needs SUM for user pages and never executes them
+        assertTraps(Trap.LOAD_PAGE_FAULT, 0x6000, Mmu.LOAD);
+        testMmu.setStatus(true, false);
+        assertEquals(0x25000, testMmu.translate(testMemory, 0x6000, Mmu.LOAD));
+        assertTraps(Trap.INSTRUCTION_PAGE_FAULT, 0x6000, Mmu.FETCH);
+
+        // User mode reaches user pages only
+        testMmu.setSupervisor(false);
+        assertEquals(0x25004, testMmu.translate(testMemory, 0x6004, Mmu.STORE));
+        assertTraps(Trap.LOAD_PAGE_FAULT, 0x1000, Mmu.LOAD);
+
+        // MXR makes execute-only pages readable
+        testMmu.setSupervisor(true);
+        testMmu.setStatus(false, true);
+        assertEquals(0x24010, testMmu.translate(testMemory, 0x5010, Mmu.LOAD));
+    }
+
+    @Test
+    void TlbAndFence() {
+        assertEquals(0x20000, testMmu.translate(testMemory, 0x1000, Mmu.LOAD));
+        // The TLB keeps the old mapping until sfence.vma
+        map(0x1000, 0x30000, R | W | A | D | V);
+        assertEquals(0x20000, testMmu.translate(testMemory, 0x1000, Mmu.LOAD));
+        testMmu.fence(0x1000, false);
+        assertEquals(0x30000, testMmu.translate(testMemory, 0x1000, Mmu.LOAD));
+
+        map(0x1000, 0, 0);
+        testMmu.fence(0, true);
+        assertTraps(Trap.LOAD_PAGE_FAULT, 0x1000, Mmu.LOAD);
+    }
+
+    @Test
+    void FenceMegapage() {
+        assertEquals(0x00801000, testMmu.translate(testMemory, 0x00401000, Mmu.LOAD));
+        assertEquals(0x00A02000, testMmu.translate(testMemory, 0x00602000, Mmu.LOAD));
+
+        // Remap the megapage and fence one address in it: every 4 KiB page of it misses
+        testMemory.storeWord(ROOT + 4, pte(0x01000000, R | W | A | D | V));
+        testMmu.fence(0x00401000, false);
+        long misses = testMmu.getMisses();
+        assertEquals(0x01202000, testMmu.translate(testMemory, 0x00602000, Mmu.LOAD));
+        assertEquals(misses + 1, testMmu.getMisses());
+
+        // Unmapping it works the same way; other pages stay cached
+        assertEquals(0x20000, testMmu.translate(testMemory, 0x1000, Mmu.LOAD));
+        testMemory.storeWord(ROOT + 4, 0);
+        testMmu.fence(0x00400000, false);
+        assertTraps(Trap.LOAD_PAGE_FAULT, 0x00602000, Mmu.LOAD);
+        long hits = testMmu.getHits();
+        assertEquals(0x20000, testMmu.translate(testMemory, 0x1000, Mmu.LOAD));
+        assertEquals(hits + 1, testMmu.getHits());
+    }
+
+    @Test
+    void AccessesAcrossPages() {
+        assertEquals(0x20FFC, testMmu.translate(testMemory, 0x1FFC, Mmu.LOAD, 4));
+        assertEquals(0x20FFE, testMmu.translate(testMemory, 0x1FFE, Mmu.STORE, 2));
+        Trap load = assertThrows(Trap.class, () -> testMmu.translate(testMemory, 0x1FFE, Mmu.LOAD, 4));
+        assertEquals(Trap.LOAD_ADDRESS_MISALIGNED, load.getCode());
+        assertEquals(0x1FFE, load.getValue());
+        Trap store = assertThrows(Trap.class, () -> testMmu.translate(testMemory, 0x1FFF, Mmu.STORE, 2));
+        assertEquals(Trap.STORE_ADDRESS_MISALIGNED, store.getCode());
+    }
+
+    @Test
+    void FaultTakenByHandler() throws IOException {
+        Simulator simulator = new Simulator();
+        Memory memory = simulator.getMemory();
+        testMemory = memory;
+        // Identity map the program page only
+        memory.storeWord(ROOT, pte(TABLE, V));
+        map(0, 0, R | X | A | V);
+        int[] satp = Encoder.li(5, SATP);
+        int[] program = {
+                Encoder.addi(5, 0, 0x100),
+                Encoder.csrrw(0, Csrs.STVEC, 5),
+                satp[0],
+                satp[1],
+                Encoder.csrrw(0, Csrs.SATP, 5),
+                Encoder.lui(6, 0x800),
+                Encoder.lw(7, 6, 0),            // 0x800000 is not mapped
+                0,
+        };
+        for (int i = 0; i < program.length; i++) {
+            memory.storeWord(4 * i, program[i]);
+        }
+        int[] handler = {Encoder.csrrs(10, Csrs.SCAUSE, 0), Encoder.csrrs(11, Csrs.STVAL, 0), Encoder.csrrs(12, Csrs.SEPC, 0), 0};
+        for (int i = 0; i < handler.length; i++) {
+            memory.storeWord(0x100 + 4 * i, handler[i]);
+        }
+
+        assertEquals(Simulator.Stop.HALT, simulator.run());
+        Registers registers = simulator.getRegisters();
+        assertEquals(Trap.LOAD_PAGE_FAULT, registers.getInt(10));
+        assertEquals(0x800000, registers.getInt(11));
+        assertEquals(24, registers.getInt(12));
+        assertEquals(0, registers.getInt(7));
+    }
+}
@@ -0,0 +1,127 @@
+package processor;
+
+// Every instruction the decoder can recognise, in RV32I base order, followed by the
+// supervisor instructions and Zicsr
+public enum Opcode {
+    LUI("lui"),
+    AUIPC("auipc"),
+    JAL("jal"),
+    JALR("jalr"),
+    BEQ("beq"),
+    BNE("bne"),
+    BLT("blt"),
+    BGE("bge"),
+    BLTU("bltu"),
+    BGEU("bgeu"),
+    LB("lb"),
+    LH("lh"),
+    LW("lw"),
+    LBU("lbu"),
+    LHU("lhu"),
+    SB("sb"),
+    SH("sh"),
+    SW("sw"),
+    ADDI("addi"),
+    SLTI("slti"),
+    SLTIU("sltiu"),
+    XORI("xori"),
+    ORI("ori"),
+    ANDI("andi"),
+    SLLI("slli"),
+    SRLI("srli"),
+    SRAI("srai"),
+    ADD("add"),
+    SUB("sub"),
+    SLL("sll"),
+    SLT("slt"),
+    SLTU("sltu"),
+    XOR("xor"),
+    SRL("srl"),
+    SRA("sra"),
+    OR("or"),
+    AND("and"),
+    FENCE("fence"),
+    ECALL("ecall"),
+    EBREAK("ebreak"),
+    SRET("sret"),
+    SFENCE_VMA("sfence.vma"),
+    CSRRW("csrrw"),
+    CSRRS("csrrs"),
+    CSRRC("csrrc"),
+    CSRRWI("csrrwi"),
+    CSRRSI("csrrsi"),
+    CSRRCI("csrrci"),
+    UNKNOWN("unknown");
+
+    private final String mnemonic;
+
+    Opcode(String mnemonic) {
+        this.mnemonic = mnemonic;
+    }
+
+    public String getMnemonic() {
+        return mnemonic;
+    }
+
+    // True if executing the instruction writes the register named by its rd field
+    public boolean writesRd() {
+        switch (this) {
+            case BEQ:
+            case BNE:
+            case BLT:
+            case BGE:
+            case BLTU:
+            case BGEU:
+            case SB:
+            case SH:
+            case SW:
+            case FENCE:
+            case ECALL:
+            case EBREAK:
+            case SRET:
+            case SFENCE_VMA:
+            case UNKNOWN:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    // True if the instruction reads the register named by its rs1 field
+    public boolean readsRs1() {
+        switch (this) {
+            case LUI:
+            case AUIPC:
+            case JAL:
+            case FENCE:
+            case ECALL:
+            case EBREAK:
+            case SRET:
+            case CSRRWI:        // rs1 holds the immediate
+            case CSRRSI:
+            case CSRRCI:
+            case UNKNOWN:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    // True if the instruction reads the register named by its rs2 field
+    public boolean readsRs2() {
+        return isBranch() || isStore() || (ordinal() >= ADD.ordinal() && ordinal() <= AND.ordinal())
+                || this == SFENCE_VMA;
+    }
+
+    public boolean isBranch() {
+        return ordinal() >= BEQ.ordinal() && ordinal() <= BGEU.ordinal();
+    }
+
+    public boolean isLoad() {
+        return ordinal() >= LB.ordinal() && ordinal() <= LHU.ordinal();
+    }
+
+    public boolean isStore() {
+        return ordinal() >= SB.ordinal() && ordinal() <= SW.ordinal();
+    }
+}
@@ -0,0 +1,102 @@
+package processor;
+
+import java.util.Arrays;
+
+// Per-pc event counts for the profiling reports (branch mispredicts, cache misses).
+// An open-addressed table keyed by pc holding a fixed number of long counters per
+// pc, so counting allocates nothing once the table has grown to the program's size.
+public class PcCounters {
+
+    private final int columns;
+    private int[] pcs = new int[256];
+    private boolean[] used = new boolean[256];
+    private long[] counts;
+    private int size;
+    private int shift = 32 - 8;             // 32 - log2(table size), to take the top bits of the hash
+
+    public PcCounters(int columns) {
+        this.columns = columns;
+        this.counts = new long[pcs.length * columns];
+    }
+
+    public void increment(int programCounter, int column) {
+        add(programCounter, column, 1);
+    }
+
+    public void add(int programCounter, int column, long amount) {
+        int slot = slotFor(programCounter);
+        if (!used[slot]) {
+            used[slot] = true;
+            pcs[slot] = programCounter;
+            if (++size * 2 > pcs.length) {
+                grow();
+                slot = slotFor(programCounter);
+            }
+        }
+        counts[slot * columns + column] += amount;
+    }
+
+    public long get(int programCounter, int column) {
+        int slot = slotFor(programCounter);
+        return used[slot] ? counts[slot * columns + column] : 0;
+    }
+
+    // Number of pcs counted so far
+    public int size() {
+        return size;
+    }
+
+    // Up to limit pcs with a non-zero count in column, largest count first, ties by pc
+    public int[] top(int column, int limit) {
+        Integer[] slots = new Integer[size];
+        int n = 0;
+        for (int slot = 0; slot < pcs.length; slot++) {
+            if (used[slot] && counts[slot * columns + column] != 0) {
+                slots[n++] = slot;
+            }
+        }
+        Arrays.sort(slots, 0, n, (a, b) -> {
+            long countA = counts[a * columns + column];
+            long countB = counts[b * columns + column];
+            return countA != countB ? Long.compare(countB, countA) : Integer.compareUnsigned(pcs[a], pcs[b]);
+        });
+        int[] top = new int[Math.min(n, limit)];
+        for (int i = 0; i < top.length; i++) {
+            top[i] = pcs[slots[i]];
+        }
+        return top;
+    }
+
+    public void clear() {
+        Arrays.fill(used, false);
+        Arrays.fill(counts, 0);
+        size = 0;
+    }
+
+    private int slotFor(int programCounter) {
+        int mask = pcs.length - 1;
+        int slot = (programCounter >>> 2) * 0x9E3779B9 >>> shift;
+        while (used[slot] && pcs[slot] != programCounter) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        int[] oldPcs = pcs;
+        boolean[] oldUsed = used;
+        long[] oldCounts = counts;
+        pcs = new int[oldPcs.length * 2];
+        used = new boolean[oldPcs.length * 2];
+        counts = new long[pcs.length * columns];
+        shift--;
+        for (int i = 0; i < oldPcs.length; i++) {
+            if (oldUsed[i]) {
+                int slot = slotFor(oldPcs[i]);
+                pcs[slot] = oldPcs[i];
+                used[slot] = true;
+                System.arraycopy(oldCounts, i * columns, counts, slot * columns, columns);
+            }
+        }
+    }
+}
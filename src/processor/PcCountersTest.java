@@ -0,0 +1,44 @@
+package processor;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PcCountersTest {
+
+    @Test
+    void CountsPerPc() {
+        PcCounters counters = new PcCounters(2);
+        counters.increment(0x100, 0);
+        counters.increment(0x100, 0);
+        counters.add(0x100, 1, 5);
+        counters.increment(0x80, 0);
+        assertEquals(2, counters.get(0x100, 0));
+        assertEquals(5, counters.get(0x100, 1));
+        assertEquals(0, counters.get(0x104, 0));
+        assertEquals(2, counters.size());
+        assertArrayEquals(new int[] {0x100, 0x80}, counters.top(0, 10));
+
+        counters.clear();
+        assertEquals(0, counters.size());
+        assertEquals(0, counters.get(0x100, 0));
+    }
+
+    @Test
+    void ManyPcs() {
+        // More pcs than a 16-bit hash can spread, sequential and far apart
+        int count = 150000;
+        PcCounters counters = new PcCounters(2);
+        for (int i = 0; i < count; i++) {
+            counters.add(4 * i, 0, i);
+            counters.increment(0x80000000 + 4096 * i, 1);
+        }
+        assertEquals(2 * count, counters.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, counters.get(4 * i, 0));
+            assertEquals(0, counters.get(4 * i, 1));
+            assertEquals(1, counters.get(0x80000000 + 4096 * i, 1));
+        }
+        assertArrayEquals(new int[] {4 * (count - 1), 4 * (count - 2)}, counters.top(0, 2));
+    }
+}
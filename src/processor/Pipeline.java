@@ -1,10 +1,8 @@
 package processor;
 
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Objects;
 
 public class Pipeline {
@@ -13,208 +11,387 @@ public class Pipeline {
     private Memory memory;                  // Memory interface
     private HashSet<Integer> breakpoints;   // Store breakpoints as integer addresses
     private boolean hasReachedBreakpoint;
-    private Map<String, InstructionFunction> functionMap;
+    private Simulator.Stop stopReason;      // why runNextInstruction() last returned STOP
+    private long instructionsRetired;       // also the number of trace records written
+    private InstructionFunction[] dispatch;  // handlers indexed by Opcode.ordinal()
+    private Instructions previewInstructions;
+    private InstructionFunction[] previewDispatch;
     private Instructions instructions;
-    private FileWriter outputFile;
+    private Csrs csrs;                      // supervisor state, shared with instructions
+    private Mmu mmu;
+    private InstructionCache instructionCache;
+    private TraceSink traceSink;            // receives retired instructions, may be null
+    private TimingModel timingModel;        // cycle estimate, may be null
+    private CacheHierarchy caches;          // cache model, may be null
     private final boolean RUN = true;
     private final boolean STOP = false;
-    private String datFile;
 
     public Pipeline(Memory memory, Registers registers, String inputFile) {
+        this(memory, registers, traceSinkFor(inputFile));
+    }
+
+    // Pipeline writing its trace to traceSink, or no trace if it is null
+    public Pipeline(Memory memory, Registers registers, TraceSink traceSink) {
         this.memory = memory;
         this.registers = registers;
         this.breakpoints = new HashSet<>();
         this.hasReachedBreakpoint = false;
-        this.functionMap = new HashMap<>();
         this.instructions = new Instructions(memory, registers);
-        // outputFile = input file before the extension + .asm
+        this.dispatch = dispatchTable(instructions);
+        this.csrs = instructions.getCsrs();
+        this.mmu = csrs.getMmu();
+        this.instructionCache = new InstructionCache();
+        memory.setInstructionCache(instructionCache);
+        this.traceSink = traceSink;
+    }
+
+    // Trace for a program: outputFile = input file before the extension + .asm
+    // (or .trace), written to the working directory
+    public static TraceSink traceSinkFor(String inputFile) {
         inputFile = inputFile.split("/")[(inputFile.split("/").length) - 1];
         String[] inputFileSplit = inputFile.split("\\.");
-        this.datFile = inputFileSplit[0] + ".asm";
-        System.out.println("datFile: " + datFile);
-        functionMap.put("lui", this.instructions::LUI); // 1
-        functionMap.put("auipc", this.instructions::AUIPC); // 2
-        functionMap.put("jal", this.instructions::JAL); // 3
-        functionMap.put("jalr", this.instructions::JALR); // 4
-        functionMap.put("beq", this.instructions::BEQ); // 5
-        functionMap.put("bne", this.instructions::BNE); // 6
-        functionMap.put("blt", this.instructions::BLT); // 7
-        functionMap.put("bge", this.instructions::BGE); // 8
-        functionMap.put("bltu", this.instructions::BLTU); // 9
-        functionMap.put("bgeu", this.instructions::BGEU); // 10
-        functionMap.put("lb", this.instructions::LB); // 11
-        functionMap.put("lh", this.instructions::LH); // 12
-        functionMap.put("lw", this.instructions::LW); // 13
-        functionMap.put("lbu", this.instructions::LBU); // 14
-        functionMap.put("lhu", this.instructions::LHU); // 15
-        functionMap.put("sb", this.instructions::SB); // 16
-        functionMap.put("sh", this.instructions::SH); // 17
-        functionMap.put("sw", this.instructions::SW); // 18
-        functionMap.put("addi", this.instructions::ADDI); // 19
-        functionMap.put("slti", this.instructions::SLTI); // 20
-        functionMap.put("sltiu", this.instructions::SLTIU); // 21
-        functionMap.put("xori", this.instructions::XORI); // 22
-        functionMap.put("ori", this.instructions::ORI); // 23
-        functionMap.put("andi", this.instructions::ANDI); // 24
-        functionMap.put("slli", this.instructions::SLLI); // 25
-        functionMap.put("srli", this.instructions::SRLI); // 26
-        functionMap.put("srai", this.instructions::SRAI); // 27
-        functionMap.put("add", this.instructions::ADD); // 28
-        functionMap.put("sub", this.instructions::SUB); // 29
-        functionMap.put("sll", this.instructions::SLL); // 30
-        functionMap.put("slt", this.instructions::SLT); // 31
-        functionMap.put("sltu", this.instructions::SLTU); // 32
-        functionMap.put("xor", this.instructions::XOR); // 33
-        functionMap.put("srl", this.instructions::SRL); // 34
-        functionMap.put("sra", this.instructions::SRA); // 35
-        functionMap.put("or", this.instructions::OR); // 36
-        functionMap.put("and", this.instructions::AND); // 37
-        //functionMap.put("fence", this.instructions::FENCE); // 38
-        //functionMap.put("ecall", this.instructions::ECALL); // 39
-        //functionMap.put("ebreak", this.instructions::ERBEAK); // 40
-    }
-
-    // Run until a breakpoint or end
+        Log.EXEC.debug("datFile: " + inputFileSplit[0] + ".asm");
+        return createTraceSink(inputFileSplit[0]);
+    }
+
+    // Trace chosen with the simulator.trace system property:
+    //   asm (default)  <name>.asm text listing
+    //   bin            <name>.trace binary trace, see BinaryTraceSink
+    //   bin-deflate    binary trace with deflated blocks
+    //   off            no trace
+    private static TraceSink createTraceSink(String baseName) {
+        String format = System.getProperty("simulator.trace", "asm");
+        switch (format) {
+            case "asm":
+                return new AsmTraceSink(baseName + ".asm");
+            case "bin":
+                return new BinaryTraceSink(baseName + ".trace", false);
+            case "bin-deflate":
+                return new BinaryTraceSink(baseName + ".trace", true);
+            case "off":
+                return null;
+            default:
+                Log.EXEC.error("ERROR: Unknown simulator.trace format " + format + ", writing " + baseName + ".asm");
+                return new AsmTraceSink(baseName + ".asm");
+        }
+    }
+
+    // Handler table indexed by Opcode.ordinal(); UNKNOWN stays null
+    private static InstructionFunction[] dispatchTable(Instructions instructions) {
+        InstructionFunction[] table = new InstructionFunction[Opcode.values().length];
+        table[Opcode.LUI.ordinal()] = instructions::LUI;
+        table[Opcode.AUIPC.ordinal()] = instructions::AUIPC;
+        table[Opcode.JAL.ordinal()] = instructions::JAL;
+        table[Opcode.JALR.ordinal()] = instructions::JALR;
+        table[Opcode.BEQ.ordinal()] = instructions::BEQ;
+        table[Opcode.BNE.ordinal()] = instructions::BNE;
+        table[Opcode.BLT.ordinal()] = instructions::BLT;
+        table[Opcode.BGE.ordinal()] = instructions::BGE;
+        table[Opcode.BLTU.ordinal()] = instructions::BLTU;
+        table[Opcode.BGEU.ordinal()] = instructions::BGEU;
+        table[Opcode.LB.ordinal()] = instructions::LB;
+        table[Opcode.LH.ordinal()] = instructions::LH;
+        table[Opcode.LW.ordinal()] = instructions::LW;
+        table[Opcode.LBU.ordinal()] = instructions::LBU;
+        table[Opcode.LHU.ordinal()] = instructions::LHU;
+        table[Opcode.SB.ordinal()] = instructions::SB;
+        table[Opcode.SH.ordinal()] = instructions::SH;
+        table[Opcode.SW.ordinal()] = instructions::SW;
+        table[Opcode.ADDI.ordinal()] = instructions::ADDI;
+        table[Opcode.SLTI.ordinal()] = instructions::SLTI;
+        table[Opcode.SLTIU.ordinal()] = instructions::SLTIU;
+        table[Opcode.XORI.ordinal()] = instructions::XORI;
+        table[Opcode.ORI.ordinal()] = instructions::ORI;
+        table[Opcode.ANDI.ordinal()] = instructions::ANDI;
+        table[Opcode.SLLI.ordinal()] = instructions::SLLI;
+        table[Opcode.SRLI.ordinal()] = instructions::SRLI;
+        table[Opcode.SRAI.ordinal()] = instructions::SRAI;
+        table[Opcode.ADD.ordinal()] = instructions::ADD;
+        table[Opcode.SUB.ordinal()] = instructions::SUB;
+        table[Opcode.SLL.ordinal()] = instructions::SLL;
+        table[Opcode.SLT.ordinal()] = instructions::SLT;
+        table[Opcode.SLTU.ordinal()] = instructions::SLTU;
+        table[Opcode.XOR.ordinal()] = instructions::XOR;
+        table[Opcode.SRL.ordinal()] = instructions::SRL;
+        table[Opcode.SRA.ordinal()] = instructions::SRA;
+        table[Opcode.OR.ordinal()] = instructions::OR;
+        table[Opcode.AND.ordinal()] = instructions::AND;
+        table[Opcode.FENCE.ordinal()] = instructions::FENCE;
+        table[Opcode.ECALL.ordinal()] = instructions::ECALL;
+        table[Opcode.EBREAK.ordinal()] = instructions::EBREAK;
+        table[Opcode.SRET.ordinal()] = instructions::SRET;
+        table[Opcode.SFENCE_VMA.ordinal()] = instructions::SFENCE_VMA;
+        table[Opcode.CSRRW.ordinal()] = instructions::CSRRW;
+        table[Opcode.CSRRS.ordinal()] = instructions::CSRRS;
+        table[Opcode.CSRRC.ordinal()] = instructions::CSRRC;
+        table[Opcode.CSRRWI.ordinal()] = instructions::CSRRWI;
+        table[Opcode.CSRRSI.ordinal()] = instructions::CSRRSI;
+        table[Opcode.CSRRCI.ordinal()] = instructions::CSRRCI;
+        return table;
+    }
+
+    // Run until the program stops, ignoring breakpoints; getStopReason() says why
     public boolean runUntilEnd() throws IOException {
-    	while(!memory.getInstruction(registers.getProgramCounter()).equals(Utility.ALLZEROS)) {
-        	runNextInstruction();
+        while (runNextInstruction()) {
+            // runNextInstruction() closes the trace when it stops
         }
-        outputFile.close();
         return STOP;
     }
     // Execute a single instruction
     public boolean runNextInstruction() throws IOException {
-    	//System.out.println("PIPELINE DEBUG: Running next instruction: " + registers.getProgramCounter());
-        String instruction = memory.getInstruction(registers.getProgramCounter());
-        System.out.println("PIPELINE DEBUG: raw instruction: " + instruction);
+        hasReachedBreakpoint = false;
+        int programCounter = registers.getPc();
+        int fetchAddress;
+        try {
+            fetchAddress = mmu.translate(memory, programCounter, Mmu.FETCH);
+        } catch (Trap trap) {
+            return takeTrap(trap, programCounter);
+        }
+        DecodedInstruction decoded = decodeAt(fetchAddress);
+        int instruction = decoded.instruction;
+        if (Log.DECODE.isDebug()) {
+            Log.DECODE.debug("PIPELINE DEBUG: raw instruction: " + Utility.leftPadSigned(instruction));
+        }
 
-        if(instruction.equals(Utility.ALLZEROS)) {
-            outputFile.close();
+        if(instruction == 0) {
+            stopReason = Simulator.Stop.HALT;
+            closeTrace();
             return STOP;
         }
 
-        // Convert machine instruction to assembly components (you'll need to implement this)
-        HashMap<String, String> asmComponents = machineToAsm(instruction);
-        //System.out.println("PIPELINE DEBUG: instructionName: " + asmComponents.get("instructionName"));
-
-        if (functionMap.containsKey(asmComponents.get("instructionName"))) {
-            String result;
-            result = functionMap.get(asmComponents.get("instructionName")).execute(asmComponents);
-
-            //System.out.println("PIPELINE DEBUG: result: " + result);
-            String oldPC = Utility.StringCrement(registers.getProgramCounter(), -4);
-            // Convert oldPC to 32 bit hex
-            int digits = Integer.toHexString(Integer.parseInt(oldPC, 2)).length();
-            oldPC = Integer.toHexString(Integer.parseInt(oldPC, 2));
-            for (int i = 0; i < 8 - digits; i++) {
-                oldPC = "0" + oldPC;
+        InstructionFunction function = dispatch[decoded.opcode.ordinal()];
+
+        if (function != null) {
+            if (caches != null) {
+                caches.fetch(programCounter, fetchAddress);
+            }
+            try {
+                function.execute(decoded.rd, decoded.rs1, decoded.rs2, decoded.imm);
+            } catch (Trap trap) {
+                return takeTrap(trap, programCounter);
+            }
+            instructionsRetired++;
+            if (timingModel != null) {
+                if (caches != null) {
+                    timingModel.memoryStall(caches.takeStallCycles());
+                }
+                timingModel.retire(programCounter, decoded, registers.getPc());
             }
-            oldPC = "0x" + oldPC;
-            System.out.println(oldPC + ": " + result);
-            // Parse instruction as an unsigned binary string, then convert to hex
-            String machineCode = Integer.toHexString((int) Long.parseLong(instruction, 2));
-            //System.out.println("PIPELINE DEBUG: machineCode: " + machineCode);
-            digits = machineCode.length();
-            for (int i = 0; i < 8 - digits; i++) {
-                machineCode = "0" + machineCode;
+            if (Log.EXEC.isInfo()) {
+                Log.EXEC.info(Disassembler.hex(programCounter) + ": " + Disassembler.disassemble(decoded));
             }
-            machineCode = "0x" + machineCode;
 
-            // Write the assembly instruction to a .asm file
-            writeInstructionToFile(oldPC, machineCode, result);
+            // Write the assembly instruction to the trace (the .asm file by default)
+            recordTrace(programCounter, decoded);
+        } else if (csrs.hasTrapHandler()) {
+            // Unknown instruction: a kernel handles it like any other exception
+            return takeTrap(new Trap(Trap.ILLEGAL_INSTRUCTION, instruction), programCounter);
         } else {
-        	System.out.println("PIPELINE DEBUG: Instruction not found: " + asmComponents);
-            outputFile.close();
+        	Log.EXEC.error("PIPELINE DEBUG: Instruction not found: " + decoded);
+            stopReason = Simulator.Stop.ILLEGAL;
+            closeTrace();
             return STOP;
         }
 
         // Check for breakpoints
         //int pcIntValue = Integer.parseInt(pcValue, 2); // Convert binary to int
-        int pcIntValue = Integer.parseInt(registers.getProgramCounter(), 2); // Convert binary to int
+        int pcIntValue = registers.getPc();
         //System.out.println("PIPELINE DEBUG: Checking for breakpoint at: " + pcIntValue);
         if(breakpoints.contains(pcIntValue)) {
-            System.out.println("PIPELINE DEBUG: Reached breakpoint at: " + pcIntValue);
+            Log.EXEC.info("PIPELINE DEBUG: Reached breakpoint at: " + pcIntValue);
             hasReachedBreakpoint = true;
+            flushTrace();
         }
         return RUN;
     }
 
+    // Decoded instruction at pc, translating pc if paging is on
+    private DecodedInstruction fetch(int programCounter) {
+        return decodeAt(mmu.translate(memory, programCounter, Mmu.FETCH));
+    }
+
+    // Decoded instruction at a physical address, decoding and caching it on first fetch.
+    // The cache is keyed by physical address so a new satp never leaves it stale.
+    private DecodedInstruction decodeAt(int address) {
+        DecodedInstruction decoded = instructionCache.get(address);
+        if (decoded == null) {
+            decoded = Decoder.decode(memory.getInstruction(address));
+            instructionCache.put(address, decoded);
+        }
+        return decoded;
+    }
+
+    // Enter the supervisor trap handler for a trap raised at programCounter, or stop
+    // the program if it has not set stvec. The instruction does not retire.
+    private boolean takeTrap(Trap trap, int programCounter) throws IOException {
+        if (!csrs.hasTrapHandler()) {
+            Log.EXEC.error("PIPELINE DEBUG: Unhandled " + trap.getMessage() + " at pc " + Disassembler.hex(programCounter));
+            stopReason = Simulator.Stop.TRAP;
+            closeTrace();
+            return STOP;
+        }
+        Log.EXEC.debug("PIPELINE DEBUG: Trap, " + trap.getMessage() + " at pc " + Disassembler.hex(programCounter));
+        registers.setPc(csrs.trap(trap, programCounter));
+        return RUN;
+    }
+
+    public InstructionCache getInstructionCache() {
+        return instructionCache;
+    }
+
+    // Disassemble the next instruction and show its effect by running it on a
+    // copy-on-write fork of the machine, leaving the real state untouched
     public String printNextAsmInstruction() {
-        // test
-        // create a bogus instructions so that it does not affect the actual program
-        // and use return (execute) value to return the asm.
-        Instructions bogusInstructions = new Instructions(new Memory(), new Registers(registers));
-        Map<String, InstructionFunction> bogusMap = new HashMap<String, InstructionFunction>();
-        bogusMap.put("lui", bogusInstructions::LUI); // 1
-        bogusMap.put("auipc", bogusInstructions::AUIPC); // 2
-        bogusMap.put("jal", bogusInstructions::JAL); // 3
-        bogusMap.put("jalr", bogusInstructions::JALR); // 4
-        bogusMap.put("beq", bogusInstructions::BEQ); // 5
-        bogusMap.put("bne", bogusInstructions::BNE); // 6
-        bogusMap.put("blt", bogusInstructions::BLT); // 7
-        bogusMap.put("bge", bogusInstructions::BGE); // 8
-        bogusMap.put("bltu", bogusInstructions::BLTU); // 9
-        bogusMap.put("bgeu", bogusInstructions::BGEU); // 10
-        bogusMap.put("lb", bogusInstructions::LB); // 11
-        bogusMap.put("lh", bogusInstructions::LH); // 12
-        bogusMap.put("lw", bogusInstructions::LW); // 13
-        bogusMap.put("lbu", bogusInstructions::LBU); // 14
-        bogusMap.put("lhu", bogusInstructions::LHU); // 15
-        bogusMap.put("sb", bogusInstructions::SB); // 16
-        bogusMap.put("sh", bogusInstructions::SH); // 17
-        bogusMap.put("sw", bogusInstructions::SW); // 18
-        bogusMap.put("addi", bogusInstructions::ADDI); // 19
-        bogusMap.put("slti", bogusInstructions::SLTI); // 20
-        bogusMap.put("sltiu", bogusInstructions::SLTIU); // 21
-        bogusMap.put("xori", bogusInstructions::XORI); // 22
-        bogusMap.put("ori", bogusInstructions::ORI); // 23
-        bogusMap.put("andi", bogusInstructions::ANDI); // 24
-        bogusMap.put("slli", bogusInstructions::SLLI); // 25
-        bogusMap.put("srli", bogusInstructions::SRLI); // 26
-        bogusMap.put("srai", bogusInstructions::SRAI); // 27
-        bogusMap.put("add", bogusInstructions::ADD); // 28
-        bogusMap.put("sub", bogusInstructions::SUB); // 29
-        bogusMap.put("sll", bogusInstructions::SLL); // 30
-        bogusMap.put("slt", bogusInstructions::SLT); // 31
-        bogusMap.put("sltu", bogusInstructions::SLTU); // 32
-        bogusMap.put("xor", bogusInstructions::XOR); // 33
-        bogusMap.put("srl", bogusInstructions::SRL); // 34
-        bogusMap.put("sra", bogusInstructions::SRA); // 35
-        bogusMap.put("or", bogusInstructions::OR); // 36
-        bogusMap.put("and", bogusInstructions::AND); // 37
-        //bogusMap.put("fence", bogusInstructions::FENCE); // 38
-        //bogusMap.put("ecall", bogusInstructions::ECALL); // 39
-        //bogusMap.put("ebreak", bogusInstructions::ERBEAK); // 40
-        String instruction = memory.getInstruction(registers.getProgramCounter());
-        HashMap<String, String> asmComponents = machineToAsm(instruction);
-
-        if (functionMap.containsKey(asmComponents.get("instructionName"))) {
-            String asmInstruction;
-            asmInstruction = bogusMap.get(asmComponents.get("instructionName")).execute(asmComponents);
+        int programCounter = registers.getPc();
+        DecodedInstruction decoded;
+        try {
+            decoded = fetch(programCounter);
+        } catch (Trap trap) {
+            return "Next instruction: " + trap.getMessage();
+        }
+        InstructionFunction function = previewDispatch()[decoded.opcode.ordinal()];
+
+        if (function == null) {
+            return "Instruction not found: " + decoded;
+        }
+        String asmInstruction = Disassembler.disassemble(decoded);
+        if (!memory.canFork()) {
             return "Next assembly instruction: " + asmInstruction;
+        }
+        Memory forkedMemory = memory.fork();
+        Registers forkedRegisters = new Registers(registers);
+        previewInstructions.setState(forkedMemory, forkedRegisters);
+        previewInstructions.getCsrs().copyFrom(csrs);
+        try {
+            function.execute(decoded.rd, decoded.rs1, decoded.rs2, decoded.imm);
+        } catch (Trap trap) {
+            return "Next assembly instruction: " + asmInstruction + " (" + trap.getMessage() + ")";
+        } finally {
+            // Only the registers are looked at, so the real memory can own its pages again
+            forkedMemory.release();
+        }
 
-        } else {
-            return "Instruction not found: " + asmComponents;
+        StringBuilder result = new StringBuilder("Next assembly instruction: ").append(asmInstruction).append(" (");
+        if (decoded.rd != 0 && decoded.opcode.writesRd()) {
+            int value = forkedRegisters.getInt(decoded.rd);
+            result.append('x').append(decoded.rd).append(" = ").append(value).append(", ");
         }
+        result.append("next pc ");
+        Disassembler.appendHex(result, forkedRegisters.getPc());
+        return result.append(')').toString();
     }
 
-    private void writeInstructionToFile(String programCounter, String machineInstruction, String result) {
-		try {
-            if (outputFile == null) {
-                // Open the file for writing
-                outputFile = new FileWriter(datFile);
-                outputFile.write("Address     Code        Basic\n");
-            }
+    // Handler table for previews, built once and pointed at a fresh fork each time
+    private InstructionFunction[] previewDispatch() {
+        if (previewDispatch == null) {
+            previewInstructions = new Instructions(memory, new Registers());
+            previewDispatch = dispatchTable(previewInstructions);
+        }
+        return previewDispatch;
+    }
+
+    // Copy-on-write copy of this machine for exploring what-if paths: memory pages
+    // are shared until written and registers and CSRs are cloned. The fork has its
+    // own instruction cache, TLB and breakpoints, and no trace. release() it when
+    // done so this machine stops copying pages it shares with the fork.
+    public Pipeline fork() {
+        Pipeline fork = new Pipeline(memory.fork(), new Registers(registers), (TraceSink) null);
+        fork.breakpoints.addAll(breakpoints);
+        fork.instructionsRetired = instructionsRetired;
+        fork.csrs.copyFrom(csrs);
+        return fork;
+    }
+
+    // Done with a fork() of another machine; this one must not run afterwards
+    public void release() {
+        memory.release();
+    }
+
+    public Registers getRegisters() {
+        return registers;
+    }
+
+    public Memory getMemory() {
+        return memory;
+    }
 
-            // Write the instruction to the file
-            outputFile.write(programCounter + "  " + machineInstruction + "  "  + result + "\n");
-            
-            // Flush the buffer to ensure data is written immediately
-            outputFile.flush();
+    // Replace the trace sink; null disables tracing
+    public void setTraceSink(TraceSink traceSink) {
+        this.traceSink = traceSink;
+    }
+
+    public TraceSink getTraceSink() {
+        return traceSink;
+    }
+
+    // Attach a timing model fed with every retired instruction; null detaches it
+    public void setTimingModel(TimingModel timingModel) {
+        this.timingModel = timingModel;
+    }
+
+    public TimingModel getTimingModel() {
+        return timingModel;
+    }
+
+    // Attach a cache model fed with every fetch, load and store; null detaches it.
+    // Its miss cycles go to the timing model if there is one.
+    public void setCaches(CacheHierarchy caches) {
+        this.caches = caches;
+        instructions.setCaches(caches);
+    }
+
+    public CacheHierarchy getCaches() {
+        return caches;
+    }
+
+    public Csrs getCsrs() {
+        return csrs;
+    }
+
+    private void recordTrace(int programCounter, DecodedInstruction decoded) {
+        if (traceSink == null) {
+            return;
+        }
+        try {
+            traceSink.record(programCounter, decoded, registers.getInt(decoded.rd));
+        } catch (IOException e) {
+            abandonTrace(e);
+        }
+    }
+
+    private void flushTrace() {
+        if (traceSink == null) {
+            return;
+        }
+        try {
+            traceSink.flush();
         } catch (IOException e) {
-            e.printStackTrace();
+            abandonTrace(e);
+        }
+    }
+
+    // The trace can no longer be written: report it once and run on without one
+    private void abandonTrace(IOException e) {
+        Log.EXEC.error("ERROR: Could not write the trace, tracing stopped: " + e.getMessage());
+        TraceSink sink = traceSink;
+        traceSink = null;
+        try {
+            sink.close();
+        } catch (IOException ignored) {
+            // Already reported the first failure
         }
-	}
+    }
+
+    // Flush and close the trace, e.g. when the simulator quits before the program
+    // halts. The sink is dropped, so later instructions are not traced until
+    // setTraceSink() attaches a new one.
+    public void closeTrace() throws IOException {
+        if (traceSink != null) {
+            TraceSink sink = traceSink;
+            traceSink = null;
+            sink.close();
+        }
+    }
 
 	// Continue execution until the next breakpoint or end
     public boolean continueExecution() throws IOException {
@@ -224,229 +401,53 @@ public class Pipeline {
             continueRunning = runNextInstruction();
             //System.out.println("PIPELINE DEBUG: continueRunning: " + continueRunning);
             if(!continueRunning) {
-                outputFile.close();
+                closeTrace();
                 return STOP;
             }
         }
         return RUN;
     }
 
+    // True if the last instruction run landed on a breakpoint
+    public boolean hasReachedBreakpoint() {
+        return hasReachedBreakpoint;
+    }
+
+    // Why the last runNextInstruction() returned false, null if it never has
+    public Simulator.Stop getStopReason() {
+        return stopReason;
+    }
+
     // Add a breakpoint at a specific address
     public boolean addBreakpoint(int address) {
     	breakpoints.add(address);
         return true;
     }
 
+    // Breakpoint addresses in ascending order
+    public int[] getBreakpoints() {
+        return breakpoints.stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    public void setBreakpoints(int[] addresses) {
+        breakpoints.clear();
+        for (int address : addresses) {
+            breakpoints.add(address);
+        }
+    }
+
+    public long getInstructionsRetired() {
+        return instructionsRetired;
+    }
+
+    public void setInstructionsRetired(long instructionsRetired) {
+        this.instructionsRetired = instructionsRetired;
+    }
+
     // Convert a machine instruction to its assembly components
     // Return a HashMap with components as key-value pairs
     public HashMap<String, String> machineToAsm(String instruction) {
-        HashMap<String, String> decodedInstruction = new HashMap<>();
-
-        String oc = instruction.substring(25, 32); // opcode
-        String rd = instruction.substring(20, 25); // destination register
-        String fc = instruction.substring(17, 20); // function code
-        String rs1 = instruction.substring(12, 17); // source register 1
-        String rs2 = instruction.substring(7, 12); // source register 2
-        String instructionName = "Error: {" + oc + "} Instruction not found"; // Assume an error
-        String imm = instruction.substring(0, 12); // default immediate value
-
-        switch (oc) {
-            case "0110111":
-                imm = instruction.substring(0, 20);
-                instructionName = "lui";
-                break;
-            case "0010111":
-                imm = instruction.substring(0, 20);
-                instructionName = "auipc";
-                break;
-            case "1101111":
-                imm = String.valueOf(instruction.charAt(0)) +
-                        instruction.charAt(12) + instruction.charAt(13) + instruction.charAt(14) +
-                        instruction.charAt(15) + instruction.charAt(16) + instruction.charAt(17) +
-                        instruction.charAt(18) + instruction.charAt(19) + instruction.charAt(11) +
-                        instruction.charAt(1) + instruction.charAt(2) + instruction.charAt(3) +
-                        instruction.charAt(4) + instruction.charAt(5) + instruction.charAt(6) +
-                        instruction.charAt(7) + instruction.charAt(8) + instruction.charAt(9) +
-                        instruction.charAt(10) + "0";
-                instructionName = "jal";
-                break;
-            case "1100111":
-                // Default immediate value
-                instructionName = "jalr";
-                break;
-            case "1100011":
-                imm = String.valueOf(instruction.charAt(0)) +
-                        instruction.charAt(24) + instruction.charAt(1) + instruction.charAt(2) +
-                        instruction.charAt(3) + instruction.charAt(4) + instruction.charAt(5) +
-                        instruction.charAt(6) + instruction.charAt(20) + instruction.charAt(21) +
-                        instruction.charAt(22) + instruction.charAt(23) + "0";
-                System.out.println("PIPELINE DEBUG: branch imm: " + imm);
-                switch (fc) {
-                    default:
-                        instructionName += " fc: " + fc;
-                        break;
-                    case "000":
-                        instructionName = "beq";
-                        break;
-                    case "001":
-                        instructionName = "bne";
-                        break;
-                    case "100":
-                        instructionName = "blt";
-                        break;
-                    case "101":
-                        instructionName = "bge";
-                        break;
-                    case "110":
-                        instructionName = "bltu";
-                        break;
-                    case "111":
-                        instructionName = "bgeu";
-                        break;
-                }
-                break;
-            case "0000011":
-                // Default immediate value
-                switch (fc) {
-                    default:
-                        instructionName += " fc: " + fc;
-                        break;
-                    case "000":
-                        instructionName = "lb";
-                        break;
-                    case "001":
-                        instructionName = "lh";
-                        break;
-                    case "010":
-                        instructionName = "lw";
-                        break;
-                    case "100":
-                        instructionName = "lbu";
-                        break;
-                    case "101":
-                        instructionName = "lhu";
-                        break;
-                }
-                break;
-            case "0100011":
-                imm = String.valueOf(instruction.charAt(0)) +
-                        instruction.charAt(1) + instruction.charAt(2) + instruction.charAt(3) +
-                        instruction.charAt(4) + instruction.charAt(5) + instruction.charAt(6) +
-                        instruction.charAt(20) + instruction.charAt(21) + instruction.charAt(22) +
-                        instruction.charAt(23) + instruction.charAt(24);
-                switch (fc) {
-                    default:
-                        instructionName += " fc: " + fc;
-                        break;
-                    case "000":
-                        instructionName = "sb";
-                        break;
-                    case "001":
-                        instructionName = "sh";
-                        break;
-                    case "010":
-                        instructionName = "sw";
-                        break;
-                }
-                break;
-            case "0010011":
-                switch (fc) {
-                    default:
-                        instructionName += " fc: " + fc;
-                        break;
-                    case "000":
-                        instructionName = "addi";
-                        break;
-                    case "010":
-                        instructionName = "slti";
-                        break;
-                    case "011":
-                        instructionName = "sltiu";
-                        break;
-                    case "100":
-                        instructionName = "xori";
-                        break;
-                    case "110":
-                        instructionName = "ori";
-                        break;
-                    case "111":
-                        instructionName = "andi";
-                        break;
-                    case "001":
-                        decodedInstruction.put("shamt", rs2);
-                        instructionName = "slli";
-                        break;
-                    case "101":
-                        decodedInstruction.put("shamt", rs2);
-                        instructionName = imm.contains("1") ? "srai" : "srli";
-                        break;
-                }
-                break;
-            case "0110011":
-                imm = instruction.substring(0, 7);
-                switch (fc) {
-                    default:
-                        instructionName += " fc: " + fc;
-                        break;
-                    case "000":
-                        if (imm.equals("0000000")) {
-                            instructionName = "add";
-                        } else if (imm.equals("0100000")) {
-                            instructionName = "sub";
-                        }
-                        break;
-                    case "001":
-                        instructionName = "sll";
-                        break;
-                    case "010":
-                        instructionName = "slt";
-                        break;
-                    case "011":
-                        instructionName = "sltu";
-                        break;
-                    case "100":
-                        instructionName = "xor";
-                        break;
-                    case "101":
-                        imm = instruction.substring(0, 7);
-                        if (imm.equals("0000000")) {
-                            instructionName = "srl";
-                        } else if (imm.equals("0100000")) {
-                            instructionName = "sra";
-                        }
-                        break;
-                    case "110":
-                        instructionName = "or";
-                        break;
-                    case "111":
-                        instructionName = "and";
-                        break;
-                }
-                break;
-            case "0001111":
-                decodedInstruction.put("fm", instruction.substring(0, 5));
-                decodedInstruction.put("pred", instruction.substring(5, 9));
-                decodedInstruction.put("succ", instruction.substring(9, 12));
-                instructionName = "fence";
-                break;
-            case "1110011":
-                imm = instruction.substring(0, 12);
-                instructionName = imm.contains("1") ? "ebreak" : "ecall";
-                break;
-            // Additional cases for other instructions, if any
-            default:
-                instructionName = "unknown";
-                break;
-        }
-        
-        decodedInstruction.put("instructionName", instructionName);
-        decodedInstruction.put("rd", registers.getRegisterString(Integer.parseInt(rd, 2)));
-        decodedInstruction.put("rs1", registers.getRegisterString(Integer.parseInt(rs1, 2)));
-        decodedInstruction.put("rs2", registers.getRegisterString(Integer.parseInt(rs2, 2)));
-        decodedInstruction.put("imm", imm);
-        //System.out.println("PIPELINE DEBUG: decodedInstruction: " + decodedInstruction);
-
-        return decodedInstruction;
+        return Decoder.decode(Integer.parseUnsignedInt(instruction, 2)).toComponents();
     }
 
 }
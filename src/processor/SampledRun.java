@@ -0,0 +1,373 @@
+package processor;
+
+import java.io.IOException;
+import java.util.Locale;
+
+// SMARTS-style sampled simulation. Detailed models (the TimingModel with its
+// BranchUnit, and the CacheHierarchy if there is one) cost most of the run time,
+// so a run cycles through three phases until the program stops:
+//   fast-forward  N instructions with the models detached, purely functional
+//   warm-up       W instructions with the models attached, statistics discarded,
+//                 to refill caches, predictor tables and the pipeline scoreboard
+//   measure       M instructions whose cycles give one CPI sample
+// Whole-program CPI is estimated as the mean of the samples, with a 95% confidence
+// interval of mean +- 1.96 s / sqrt(n), so there should be a few dozen samples
+// at least. Phases and the instruction limit are counted in steps: an
+// instruction that traps takes a step but does not retire, so a window holding
+// traps is a little short and its CPI is over the instructions it did retire. A
+// guest that only takes traps for STUCK_STEPS steps in a row ends the run at
+// LIMIT. A window cut off by the end of the program or the instruction limit
+// only counts if the program is too short to finish one. Cycles of the whole run
+// are the CPI times the instructions.
+//
+//   java processor.SimulatorMain --sample <program> [--data <file>] [--fast <N>] [--warm <W>]
+//                                [--measure <M>] [--limit <instructions>] [--noforward]
+//                                [--compare] [--format text|json]
+// picks up -Dsimulator.bpred and -Dsimulator.cache like the REPL. --compare also
+// runs the program in full detail and reports the error of the estimate.
+public class SampledRun {
+
+    private static final double Z_95 = 1.96;
+    private static final long STUCK_STEPS = 4096;   // steps without a retired instruction
+
+    private final long fastForward;
+    private final long warmup;
+    private final long measure;
+    private final long instructionLimit;    // in steps, Long.MAX_VALUE for none
+    private long steps;                     // taken by the current run()
+    private long idleSteps;                 // taken since an instruction last retired
+
+    public SampledRun(long fastForward, long warmup, long measure, long instructionLimit) {
+        if (fastForward < 0 || warmup < 0 || measure < 1) {
+            throw new IllegalArgumentException("Need fast-forward >= 0, warm-up >= 0 and measure >= 1");
+        }
+        this.fastForward = fastForward;
+        this.warmup = warmup;
+        this.measure = measure;
+        this.instructionLimit = instructionLimit;
+    }
+
+    // Counters summed over the measurement windows, see snapshot()
+    private static final int CYCLES = 0;
+    private static final int INSTRUCTIONS = 1;
+    private static final int STALLS = 2;
+    private static final int BRANCHES = STALLS + TimingModel.Stall.values().length;
+    private static final int BRANCH_MISSES = BRANCHES + 1;
+    private static final int JUMPS = BRANCHES + 2;
+    private static final int JUMP_MISSES = BRANCHES + 3;
+    private static final int CACHE_COUNTERS = BRANCHES + 4;    // accesses and misses of L1I, L1D, L2
+    private static final int COUNTERS = CACHE_COUNTERS + 6;
+
+    public static final class Estimate {
+        public final Simulator.Stop stop;
+        public final long instructions;         // retired in the whole run
+        public final long steps;                // taken in the whole run, trapped instructions included
+        public final long detailedInstructions; // warm-up and measured
+        public final int samples;
+        public final double cpi;                // mean of the samples
+        public final double standardDeviation;
+        public final double halfWidth;          // of the 95% confidence interval, NaN below 2 samples
+        public final long nanos;
+        final long[] measured;                  // counters summed over the measured windows
+        final boolean caches;
+        final boolean l2;
+
+        Estimate(Simulator.Stop stop, long instructions, long steps, long detailedInstructions, int samples,
+                double cpi, double standardDeviation, long nanos, long[] measured, boolean caches, boolean l2) {
+            this.stop = stop;
+            this.instructions = instructions;
+            this.steps = steps;
+            this.detailedInstructions = detailedInstructions;
+            this.samples = samples;
+            this.cpi = cpi;
+            this.standardDeviation = standardDeviation;
+            this.halfWidth = samples < 2 ? Double.NaN : Z_95 * standardDeviation / Math.sqrt(samples);
+            this.nanos = nanos;
+            this.measured = measured;
+            this.caches = caches;
+            this.l2 = l2;
+        }
+
+        public long estimatedCycles() {
+            return Math.round(cpi * instructions);
+        }
+
+        // Sum of a counter over the measured windows
+        public long measured(TimingModel.Stall cause) {
+            return measured[STALLS + cause.ordinal()];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder report = new StringBuilder();
+            report.append(String.format(Locale.ROOT, "Sampled run: %s after %d instructions in %.3f s%n",
+                    stop.name().toLowerCase(Locale.ROOT), instructions, nanos / 1e9));
+            report.append(String.format(Locale.ROOT, "  %-20s %d instructions (%.2f%% of the run), %d samples%n",
+                    "detailed", detailedInstructions, percent(detailedInstructions, instructions), samples));
+            report.append(String.format(Locale.ROOT, "  %-20s %.4f%s%n", "CPI", cpi, Double.isNaN(halfWidth) ? ""
+                    : String.format(Locale.ROOT, " +- %.4f (95%%, +- %.2f%%), sample s.d. %.4f",
+                            halfWidth, cpi == 0 ? 0 : 100 * halfWidth / cpi, standardDeviation)));
+            report.append(String.format(Locale.ROOT, "  %-20s %d%n", "estimated cycles", estimatedCycles()));
+            long cycles = measured[CYCLES];
+            for (TimingModel.Stall cause : TimingModel.Stall.values()) {
+                if (cause == TimingModel.Stall.MEMORY && !caches) {
+                    continue;
+                }
+                report.append(String.format(Locale.ROOT, "  %-20s %.1f%% of measured cycles%n",
+                        cause.name().toLowerCase(Locale.ROOT).replace('_', '-') + " stalls",
+                        percent(measured(cause), cycles)));
+            }
+            report.append(String.format(Locale.ROOT, "  %-20s %.2f%% of %d branches, %.2f%% of %d jumps%n", "mispredicted",
+                    percent(measured[BRANCH_MISSES], measured[BRANCHES]), measured[BRANCHES],
+                    percent(measured[JUMP_MISSES], measured[JUMPS]), measured[JUMPS]));
+            if (caches) {
+                String[] names = {"L1I", "L1D", "L2"};
+                for (int level = 0; level < (l2 ? 3 : 2); level++) {
+                    long accesses = measured[CACHE_COUNTERS + 2 * level];
+                    long misses = measured[CACHE_COUNTERS + 2 * level + 1];
+                    report.append(String.format(Locale.ROOT, "  %-20s %.2f%% of %d accesses%n", names[level] + " misses",
+                            percent(misses, accesses), accesses));
+                }
+            }
+            return report.toString();
+        }
+
+        public String toJson() {
+            return String.format(Locale.ROOT,
+                    "{\"exit\":\"%s\",\"instret\":%d,\"detailed\":%d,\"samples\":%d,\"cpi\":%.6f,\"cpi_sd\":%.6f,"
+                            + "\"ci95\":%s,\"cycles\":%d,\"ns\":%d}",
+                    stop.name().toLowerCase(Locale.ROOT), instructions, detailedInstructions, samples, cpi,
+                    standardDeviation, Double.isNaN(halfWidth) ? "null" : String.format(Locale.ROOT, "%.6f", halfWidth),
+                    estimatedCycles(), nanos);
+        }
+    }
+
+    // Sample a loaded program. The simulator's pipeline must have a timing model;
+    // it and any cache model are detached while fast-forwarding and left attached
+    // when the run ends.
+    public Estimate run(Simulator simulator) throws IOException {
+        Pipeline pipeline = simulator.getPipeline();
+        TimingModel timing = pipeline.getTimingModel();
+        if (timing == null) {
+            throw new IllegalStateException("Sampling needs a timing model on the pipeline");
+        }
+        CacheHierarchy caches = pipeline.getCaches();
+
+        long[] measured = new long[COUNTERS];
+        long[] before = new long[COUNTERS];
+        long[] after = new long[COUNTERS];
+        double sum = 0;
+        double sumOfSquares = 0;
+        int samples = 0;
+        double partialCpi = Double.NaN;     // of a window cut off by the end or the limit
+        long detailed = 0;
+        long start = System.nanoTime();
+        long startInstructions = simulator.getInstructionsRetired();
+        Simulator.Stop stop = Simulator.Stop.LIMIT;
+        steps = 0;
+        idleSteps = 0;
+
+        while (stop == Simulator.Stop.LIMIT && remaining() > 0 && idleSteps < STUCK_STEPS) {
+            pipeline.setTimingModel(null);
+            pipeline.setCaches(null);
+            stop = step(simulator, fastForward);
+            if (stop != Simulator.Stop.LIMIT) {
+                break;
+            }
+
+            pipeline.setTimingModel(timing);
+            pipeline.setCaches(caches);
+            long warmed = simulator.getInstructionsRetired();
+            stop = step(simulator, warmup);
+            detailed += simulator.getInstructionsRetired() - warmed;
+            if (stop != Simulator.Stop.LIMIT) {
+                break;
+            }
+
+            snapshot(timing, caches, before);
+            long measuredFrom = simulator.getInstructionsRetired();
+            boolean cutOff = remaining() < measure;
+            stop = step(simulator, measure);
+            long count = simulator.getInstructionsRetired() - measuredFrom;
+            detailed += count;
+            snapshot(timing, caches, after);
+            long cycles = after[CYCLES] - before[CYCLES];
+            // Traps leave a window short of measure instructions, but it still ran
+            // for as many steps as the others
+            boolean complete = !cutOff && stop == Simulator.Stop.LIMIT && count > 0;
+            if (complete) {
+                double cpi = (double) cycles / count;
+                sum += cpi;
+                sumOfSquares += cpi * cpi;
+                samples++;
+            } else if (count > 0 && samples == 0) {
+                partialCpi = (double) cycles / count;
+            }
+            if (complete || samples == 0) {
+                for (int i = 0; i < COUNTERS; i++) {
+                    measured[i] += after[i] - before[i];
+                }
+            }
+        }
+        pipeline.setTimingModel(timing);
+        pipeline.setCaches(caches);
+
+        double cpi;
+        double standardDeviation = 0;
+        if (samples > 0) {
+            cpi = sum / samples;
+            if (samples > 1) {
+                standardDeviation = Math.sqrt(Math.max(0, (sumOfSquares - samples * cpi * cpi) / (samples - 1)));
+            }
+        } else {
+            cpi = Double.isNaN(partialCpi) ? 0 : partialCpi;
+            samples = Double.isNaN(partialCpi) ? 0 : 1;
+        }
+        return new Estimate(stop, simulator.getInstructionsRetired() - startInstructions, steps, detailed, samples,
+                cpi, standardDeviation, System.nanoTime() - start, measured, caches != null,
+                caches != null && caches.getL2() != null);
+    }
+
+    private long remaining() {
+        return instructionLimit == Long.MAX_VALUE ? Long.MAX_VALUE : instructionLimit - steps;
+    }
+
+    // Run count steps or up to the instruction limit, LIMIT if the program is still running
+    private Simulator.Stop step(Simulator simulator, long count) throws IOException {
+        long allowed = Math.min(count, remaining());
+        if (allowed == 0) {
+            return Simulator.Stop.LIMIT;
+        }
+        long retired = simulator.getInstructionsRetired();
+        Simulator.Stop stop = simulator.step(allowed);
+        steps += allowed;
+        idleSteps = simulator.getInstructionsRetired() == retired ? idleSteps + allowed : 0;
+        return stop;
+    }
+
+    private static void snapshot(TimingModel timing, CacheHierarchy caches, long[] counters) {
+        counters[CYCLES] = timing.getCycles();
+        counters[INSTRUCTIONS] = timing.getInstructions();
+        for (TimingModel.Stall cause : TimingModel.Stall.values()) {
+            counters[STALLS + cause.ordinal()] = timing.getStalls(cause);
+        }
+        BranchUnit branches = timing.getBranchUnit();
+        counters[BRANCHES] = branches.getBranches();
+        counters[BRANCH_MISSES] = branches.getBranchMispredicts();
+        counters[JUMPS] = branches.getJumps();
+        counters[JUMP_MISSES] = branches.getJumpMispredicts();
+        if (caches != null) {
+            Cache[] levels = {caches.getInstructionCache(), caches.getDataCache(), caches.getL2()};
+            for (int level = 0; level < levels.length; level++) {
+                if (levels[level] != null) {
+                    counters[CACHE_COUNTERS + 2 * level] = levels[level].getAccesses();
+                    counters[CACHE_COUNTERS + 2 * level + 1] = levels[level].getMisses();
+                }
+            }
+        }
+    }
+
+    private static double percent(long part, long whole) {
+        return whole == 0 ? 0 : 100.0 * part / whole;
+    }
+
+    static int runCommandLine(String[] args) throws IOException {
+        String program = null;
+        String data = "";
+        long fastForward = 100_000;
+        long warmup = 5_000;
+        long measure = 1_000;
+        long limit = Long.MAX_VALUE;
+        boolean forwarding = true;
+        boolean compare = false;
+        boolean json = false;
+        SampledRun sampler;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--data":
+                        data = Utility.flagValue(args, i++);
+                        break;
+                    case "--fast":
+                        fastForward = Long.parseLong(Utility.flagValue(args, i++));
+                        break;
+                    case "--warm":
+                        warmup = Long.parseLong(Utility.flagValue(args, i++));
+                        break;
+                    case "--measure":
+                        measure = Long.parseLong(Utility.flagValue(args, i++));
+                        break;
+                    case "--limit":
+                        limit = Long.parseLong(Utility.flagValue(args, i++));
+                        break;
+                    case "--noforward":
+                        forwarding = false;
+                        break;
+                    case "--compare":
+                        compare = true;
+                        break;
+                    case "--format":
+                        String format = Utility.flagValue(args, i++);
+                        if (!format.equals("text") && !format.equals("json")) {
+                            throw new IllegalArgumentException("Unknown format " + format);
+                        }
+                        json = format.equals("json");
+                        break;
+                    default:
+                        if (args[i].startsWith("--") || program != null) {
+                            throw new IllegalArgumentException("Unexpected argument " + args[i]);
+                        }
+                        program = args[i];
+                }
+            }
+            if (program == null) {
+                throw new IllegalArgumentException("No program file given");
+            }
+            sampler = new SampledRun(fastForward, warmup, measure, limit);
+        } catch (IllegalArgumentException e) {
+            System.err.println("ERROR: " + e.getMessage());
+            System.err.println("Usage: --sample <program> [--data <file>] [--fast <N>] [--warm <W>] [--measure <M>]"
+                    + " [--limit <instructions>] [--noforward] [--compare] [--format text|json]");
+            return 2;
+        }
+
+        // Quiet unless the log level was chosen explicitly
+        if (System.getProperty(Log.PROPERTY) == null) {
+            Log.setAll(Log.Level.OFF);
+        }
+        Simulator simulator = new Simulator();
+        Pipeline pipeline = simulator.getPipeline();
+        pipeline.setTimingModel(new TimingModel(forwarding, BranchUnit.fromProperty()));
+        pipeline.setCaches(CacheHierarchy.fromProperty());
+        try {
+            simulator.load(program, data);
+        } catch (IOException e) {
+            System.err.println("ERROR: " + e.getMessage());
+            return 1;
+        }
+        Estimate estimate = sampler.run(simulator);
+        System.out.print(json ? estimate.toJson() + "\n" : estimate.toString());
+
+        if (compare) {
+            // Same program and models, every instruction in detail. The run is
+            // deterministic, so the same number of steps ends in the same place.
+            simulator.load(program, data);
+            long start = System.nanoTime();
+            simulator.step(estimate.steps);
+            long nanos = System.nanoTime() - start;
+            double cpi = pipeline.getTimingModel().getCpi();
+            double error = cpi == 0 ? 0 : 100 * (estimate.cpi - cpi) / cpi;
+            // No interval below two samples
+            boolean hasInterval = !Double.isNaN(estimate.halfWidth);
+            boolean within = hasInterval && Math.abs(estimate.cpi - cpi) <= estimate.halfWidth;
+            if (json) {
+                System.out.printf(Locale.ROOT, "{\"full_cpi\":%.6f,\"error_pct\":%.3f,\"full_ns\":%d,\"within_ci\":%s}%n",
+                        cpi, error, nanos, hasInterval ? Boolean.toString(within) : "null");
+            } else {
+                System.out.printf(Locale.ROOT, "Full detail: CPI %.4f, estimate off by %.3f%%, %d ns (%s)%n",
+                        cpi, error, nanos, !hasInterval ? "no interval" : within ? "inside the 95% interval" : "outside the 95% interval");
+            }
+        }
+        return 0;
+    }
+}
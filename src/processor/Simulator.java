@@ -0,0 +1,132 @@
+package processor;
+
+import java.io.IOException;
+import java.util.function.Predicate;
+
+// A complete machine for embedding: it owns its memory, registers and pipeline
+// (and through it the instruction handlers), keeps no static state and reports
+// every failure to the caller instead of exiting. An instance can be reset and
+// loaded again, so callers can keep warm simulators around and reuse them.
+//
+//   Simulator simulator = new Simulator();
+//   simulator.load("prog.dat", "data.dat");
+//   Simulator.Stop stop = simulator.runUntil(s -> s.getRegisters().getInt(10) == 42);
+public class Simulator {
+
+    // Why step() or runUntil() returned
+    public enum Stop {
+        HALT,       // reached an all-zero instruction
+        ILLEGAL,    // no handler for the instruction
+        TRAP,       // an exception with no trap handler (stvec is 0)
+        LIMIT,      // ran the requested number of instructions
+        CONDITION   // the runUntil() predicate became true
+    }
+
+    private final Memory memory;
+    private final Registers registers;
+    private final Pipeline pipeline;
+    private SymbolTable symbols = SymbolTable.empty();
+
+    // Heap memory and no trace
+    public Simulator() {
+        this(new Memory(), null);
+    }
+
+    // Simulator on the given memory, writing its trace to traceSink (null for none)
+    public Simulator(Memory memory, TraceSink traceSink) {
+        this.memory = memory;
+        this.registers = new Registers();
+        this.pipeline = new Pipeline(memory, registers, traceSink);
+    }
+
+    // Reset the machine, then load an ELF executable or a .dat program with an
+    // optional .dat data image (dataFile may be empty, it is ignored for ELF)
+    public void load(String programFile, String dataFile) throws IOException {
+        reset();
+        if (ElfLoader.isElf(programFile)) {
+            symbols = new ElfLoader(memory, registers).load(programFile);
+        } else {
+            new Loader(memory).load(programFile, dataFile == null ? "" : dataFile);
+        }
+    }
+
+    // Zero memory, registers and CSRs and forget breakpoints, symbols, the instruction
+    // count and the timing and cache models' state. The trace sink is kept until the
+    // program halts, which closes and drops it, so set a new one through
+    // getPipeline() to trace the next run.
+    public void reset() {
+        memory.clear();
+        registers.setAll(new int[32], 0);
+        pipeline.setBreakpoints(new int[0]);
+        pipeline.setInstructionsRetired(0);
+        if (pipeline.getTimingModel() != null) {
+            pipeline.getTimingModel().reset();
+        }
+        if (pipeline.getCaches() != null) {
+            pipeline.getCaches().reset();
+        }
+        pipeline.getCsrs().reset();
+        symbols = SymbolTable.empty();
+    }
+
+    // Run at most count instructions; breakpoints are ignored
+    public Stop step(long count) throws IOException {
+        for (long i = 0; i < count; i++) {
+            if (!pipeline.runNextInstruction()) {
+                return stopReason();
+            }
+        }
+        return Stop.LIMIT;
+    }
+
+    // Run until condition holds after an instruction, or the program stops.
+    // runUntil(Simulator::atBreakpoint) continues to the next breakpoint.
+    public Stop runUntil(Predicate<Simulator> condition) throws IOException {
+        while (pipeline.runNextInstruction()) {
+            if (condition.test(this)) {
+                return Stop.CONDITION;
+            }
+        }
+        return stopReason();
+    }
+
+    // Run until the program stops, ignoring breakpoints
+    public Stop run() throws IOException {
+        return runUntil(simulator -> false);
+    }
+
+    // The pipeline stopped and recorded why
+    private Stop stopReason() {
+        return pipeline.getStopReason();
+    }
+
+    // True if the last instruction landed on a breakpoint
+    public boolean atBreakpoint() {
+        return pipeline.hasReachedBreakpoint();
+    }
+
+    public void addBreakpoint(int address) {
+        pipeline.addBreakpoint(address);
+    }
+
+    public long getInstructionsRetired() {
+        return pipeline.getInstructionsRetired();
+    }
+
+    public Memory getMemory() {
+        return memory;
+    }
+
+    public Registers getRegisters() {
+        return registers;
+    }
+
+    public Pipeline getPipeline() {
+        return pipeline;
+    }
+
+    // Symbols of the loaded ELF executable, empty for .dat programs
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+}
@@ -1,21 +1,34 @@
 package processor;
 
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Scanner;
 import java.util.HashMap; // TODO: Remove, this is for testing only
 
 public class SimulatorMain {
 
-    // Memory and Register objects to interact with the pseudo RISC-V processor.
-    private static Memory memory = new Memory();
-    private static Registers registers = new Registers();
-    private static Loader loader = new Loader(memory);
-    private static Pipeline pipeline;
     // Define a constant for all zeroes
     private static final String allZeroes = Utility.ALLZEROS;
     private static long startTime = 0;
     private static long elapsedTime = 0;
 
+    // Heap memory, or the sparse file named by -Dsimulator.memory=<file> mapped as guest memory
+    private static Memory createMemory() {
+        String memoryFile = System.getProperty("simulator.memory");
+        if (memoryFile == null) {
+            return new Memory();
+        }
+        try {
+            return new MappedMemory(Paths.get(memoryFile));
+        } catch (IOException e) {
+            System.out.println("ERROR: Could not map memory file " + memoryFile + ": " + e.getMessage());
+            System.out.println("Exiting...");
+            System.exit(1);
+            return null;
+        }
+    }
+
     private static void startTimer() {
         startTime = System.nanoTime();
     }
@@ -40,6 +53,22 @@ public class SimulatorMain {
     }
 
     public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            // Headless: run once and print a single result line, see BatchRun
+            System.exit(BatchRun.runCommandLine(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        if (args.length > 0 && args[0].equals("--manifest")) {
+            // Many headless runs in parallel, see BatchRunner
+            try {
+                System.exit(BatchRunner.runCommandLine(Arrays.copyOfRange(args, 1, args.length)));
+            } catch (InterruptedException e) {
+                System.exit(1);
+            }
+        }
+        if (args.length > 0 && args[0].equals("--sample")) {
+            // Fast-forward with timing windows, CPI with a confidence interval, see SampledRun
+            System.exit(SampledRun.runCommandLine(Arrays.copyOfRange(args, 1, args.length)));
+        }
     	Scanner scanner = new Scanner(System.in);
         String inputFile = "";
         String dataFile = "";
@@ -53,12 +82,27 @@ public class SimulatorMain {
             inputFile = args[0];
         }
 
-        // Pipeline needs main's memory and registers to send to instructions
-        // and the inputfilename to write the .asm file
-        pipeline = new Pipeline(memory, registers, inputFile);
+        // The simulator owns memory, registers and the pipeline; the pipeline
+        // needs the inputfilename to write the .asm file
+        Simulator simulator = new Simulator(createMemory(), Pipeline.traceSinkFor(inputFile));
+        Memory memory = simulator.getMemory();
+        Registers registers = simulator.getRegisters();
+        Pipeline pipeline = simulator.getPipeline();
+        pipeline.setTimingModel(TimingModel.fromProperty());
+        pipeline.setCaches(CacheHierarchy.fromProperty());
 
-        // Load data memory as needed, starting at Utility.DATA_MEMORY_ADDRESS
-        if (args.length == 2) {
+        boolean isElf = false;
+        try {
+            isElf = ElfLoader.isElf(inputFile);
+        } catch (IOException e) {
+            // Reported by the loader below
+        }
+
+        // Load data memory as needed, starting at Utility.DATA_MEMORY_ADDRESS.
+        // ELF executables carry their own data segments.
+        if (isElf) {
+            dataFile = "";
+        } else if (args.length == 2) {
             if (!args[1].equals("n"))
                 dataFile = args[1];
             else
@@ -77,16 +121,17 @@ public class SimulatorMain {
             }
         }
 
-        // Load the .dat file(s) into memory using Loader
+        // Load the ELF executable or .dat file(s) into memory
         try {
-            loader.load(inputFile, dataFile);
+            simulator.load(inputFile, dataFile);
         } catch (IOException e) {
             //e.printStackTrace();
             System.out.println("ERROR: Could not load file(s)! Place files in input_files/ directory and try again.");
             System.out.println("Exiting...");
             System.exit(1);
         }
-        
+        SymbolTable symbols = simulator.getSymbols();  // from an ELF executable
+
         boolean isRunning = true; // Flag to determine if there are still instructions to execute
         printMenu();
         while(isRunning) {
@@ -113,41 +158,85 @@ public class SimulatorMain {
                         values++;
                     }
                     System.out.println("\nData memory:");
-                    dumpDMem();
+                    dumpDMem(memory);
                     break;
                 case "r": // Run the program in one go, ignoring breakpoints
                     startTimer();
-                    isRunning = pipeline.runUntilEnd();
+                    simulator.run();
+                    isRunning = false;
                     stopTimer();
                     break;
                 case "s": // Step through the program one instruction at a time
                     startTimer();
-                    isRunning = pipeline.runNextInstruction();
+                    isRunning = simulator.step(1) == Simulator.Stop.LIMIT;
                     stopTimer();
                     break;
                 case "pc": // Print the program counter
                     System.out.println(registers.getRegisterValue(input));
+                    String symbol = symbols.describe(registers.getPc());
+                    if (symbol != null) {
+                        System.out.println("<" + symbol + ">");
+                    }
                     break;
                 case "insn": // Print the next instruction using current register values and bogus memory
                     System.out.println(pipeline.printNextAsmInstruction());
                     break;
+                case "icache": // Print decoded instruction cache statistics
+                    System.out.println(pipeline.getInstructionCache());
+                    break;
+                case "timing": // Print the cycle estimate of the timing model
+                    System.out.print(pipeline.getTimingModel() != null ? pipeline.getTimingModel()
+                            : "Timing model is off, start with -D" + TimingModel.PROPERTY + "=on or =noforward\n");
+                    break;
+                case "csrs": // Print the supervisor CSRs and MMU state
+                    System.out.print(pipeline.getCsrs());
+                    break;
+                case "caches": // Print hit, miss and eviction counts of the cache model
+                    System.out.print(pipeline.getCaches() != null ? pipeline.getCaches()
+                            : "Cache model is off, start with -D" + CacheHierarchy.PROPERTY + "=on\n");
+                    break;
                 case "c": // Continue execution until next breakpoint or end of program
                     startTimer();
-                    isRunning = pipeline.continueExecution();
+                    isRunning = simulator.runUntil(Simulator::atBreakpoint) == Simulator.Stop.CONDITION;
                     stopTimer();
                     break;
                 case "q": // Quit the simulator, execute no more instructions
                     isRunning = false;
                     break;
                 default: // If the switch case doesn't match, check for other commands
-                    if(input.startsWith("x") || input.startsWith("t")) { // Get register values
+                    if(input.startsWith("save ")) { // Checkpoint the machine to a file
+                        String checkpointFile = input.substring(5).trim();
+                        try {
+                            Checkpoint.save(Paths.get(checkpointFile), registers, memory, pipeline);
+                            System.out.println("Saved checkpoint to " + checkpointFile);
+                        } catch (IOException e) {
+                            System.out.println("ERROR: Could not save checkpoint: " + e.getMessage());
+                        }
+                    } else if(input.startsWith("restore ")) { // Resume from a checkpoint file
+                        String checkpointFile = input.substring(8).trim();
+                        try {
+                            startTimer();
+                            Checkpoint.restore(Paths.get(checkpointFile), registers, memory, pipeline);
+                            stopTimer();
+                            System.out.println("Restored checkpoint from " + checkpointFile + " at instruction "
+                                    + pipeline.getInstructionsRetired());
+                            isRunning = true;
+                        } catch (IOException e) {
+                            stopTimer();
+                            System.out.println("ERROR: Could not restore checkpoint: " + e.getMessage());
+                        }
+                    } else if(input.startsWith("x") || input.startsWith("t")) { // Get register values
                         System.out.print("Register " + input + " contains: ");
                         System.out.println(registers.getRegisterValue(registers.tToX(input)));
                     } else if(input.startsWith("b")) { // Set breakpoints in form of b# or b #
                         // Insert a space after the b
                         input = input.charAt(0) + " " + input.substring(1);
-                        int pcValue = Integer.parseInt(input.split(" ")[1]); // Get the PC value
-                        pipeline.addBreakpoint(pcValue); // Unlimited breakpoints
+                        String target = input.split(" +")[1];
+                        Integer pcValue = symbols.addressOf(target); // A symbol name from an ELF executable
+                        if (pcValue == null) {
+                            pcValue = Integer.parseInt(target); // Get the PC value
+                        }
+                        simulator.addBreakpoint(pcValue); // Unlimited breakpoints
                     } 
                     else if(input.matches("^0x[0-9a-fA-F]{0,8}$")) { // Regex to get 0x# thru 0x######## hex digits
                     	// Remove the "0x" prefix because it exists
@@ -168,17 +257,27 @@ public class SimulatorMain {
                     break;
             }
         }
+        pipeline.closeTrace();
         System.out.println("Execution complete!");
         printTime();
+        if (pipeline.getTimingModel() != null) {
+            System.out.print(pipeline.getTimingModel());
+        }
+        if (pipeline.getCaches() != null) {
+            System.out.print(pipeline.getCaches());
+        }
         System.out.print("Final register states (0's are omitted): \n" + registers.toString());
         if (memory.dataLines > 0) {
             System.out.println("Final data memory states: ");
-            dumpDMem();
+            dumpDMem(memory);
+        }
+        if (memory instanceof MappedMemory) {
+            ((MappedMemory) memory).close();
         }
         scanner.close();
     }
 
-    private static void dumpDMem() {
+    private static void dumpDMem(Memory memory) {
         if (memory.dataLines > 0) {
             String address = Utility.DATA_MEMORY_ADDRESS;
             String value = memory.getMemoryValue(address);
@@ -205,9 +304,16 @@ public class SimulatorMain {
         System.out.println("      pc: View PC value");
         System.out.println("      insn: View next assembly instruction");
         System.out.println("      b [pc]: Set a breakpoint at [pc] where pc is a hex value");
+        System.out.println("      b [symbol]: Set a breakpoint at a symbol of an ELF executable");
         System.out.println("      c: Continue execution till next breakpoint or exit");
         System.out.println("      reg: View all register values");
         System.out.println("      mem: Dump instruction memory");
+        System.out.println("      icache: View decoded instruction cache statistics");
+        System.out.println("      timing: View cycles, stalls and branch prediction of the 5-stage timing model");
+        System.out.println("      caches: View hits, misses and evictions of the cache model");
+        System.out.println("      csrs: View supervisor CSRs, Sv32 translation and TLB statistics");
+        System.out.println("      save [file]: Checkpoint registers, CSRs, memory and breakpoints to a file");
+        System.out.println("      restore [file]: Resume from a checkpoint file");
         System.out.println("      q: Quit simulator");
     }
 }
@@ -0,0 +1,62 @@
+package processor;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Symbols kept from an ELF executable so the debugger can use names for addresses
+public class SymbolTable {
+    private final int[] addresses;          // sorted as unsigned values
+    private final String[] names;           // names[i] is at addresses[i]
+    private final Map<String, Integer> byName;
+
+    public SymbolTable(int[] addresses, String[] names) {
+        Integer[] order = new Integer[addresses.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compareUnsigned(addresses[a], addresses[b]));
+        this.addresses = new int[addresses.length];
+        this.names = new String[addresses.length];
+        this.byName = new HashMap<>();
+        for (int i = 0; i < order.length; i++) {
+            this.addresses[i] = addresses[order[i]];
+            this.names[i] = names[order[i]];
+            byName.putIfAbsent(names[order[i]], addresses[order[i]]);
+        }
+    }
+
+    public static SymbolTable empty() {
+        return new SymbolTable(new int[0], new String[0]);
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    // Address of the named symbol, or null if there is none
+    public Integer addressOf(String name) {
+        return byName.get(name);
+    }
+
+    // "name" or "name+0x1c" for the closest symbol at or below address, or null
+    public String describe(int address) {
+        int low = 0;
+        int high = addresses.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (Integer.compareUnsigned(addresses[middle], address) <= 0) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        if (found == -1) {
+            return null;
+        }
+        int offset = address - addresses[found];
+        return offset == 0 ? names[found] : names[found] + "+0x" + Integer.toHexString(offset);
+    }
+}
@@ -0,0 +1,185 @@
+package processor;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+// Cycle estimate for a classic in-order IF/ID/EX/MEM/WB pipeline, computed next to
+// the functional execution in Pipeline: every retired instruction is given the
+// cycle it enters EX, one after its predecessor unless it has to wait.
+//   data hazards     a value can be forwarded to EX one cycle after an ALU result
+//                    and two cycles after a load (the load-use stall). Without
+//                    forwarding it is read from the register file in ID once the
+//                    producer has written it in WB (write first, read second half).
+//   control hazards  jumps and branches are predicted by a BranchUnit, which
+//                    returns the bubbles of each one. By default branches are
+//                    predicted not taken and resolved in EX, so a taken branch
+//                    flushes 2 instructions; jal is resolved in ID (1 bubble),
+//                    jalr in EX (2).
+//   memory stalls    cache miss cycles reported through memoryStall() before an
+//                    instruction retires hold that instruction back (blocking caches).
+// The first instruction reaches EX in cycle 3 and the last one leaves WB two cycles
+// after its EX, so n independent instructions take n + 4 cycles.
+//
+// Enabled with -Dsimulator.timing=on (forwarding) or =noforward; the branch
+// predictor is chosen with -Dsimulator.bpred, see BranchUnit.
+public class TimingModel {
+
+    public static final String PROPERTY = "simulator.timing";
+
+    // Where lost cycles went
+    public enum Stall {
+        LOAD_USE("load-use stalls"),
+        DATA("data stalls"),
+        BRANCH("branch flushes"),
+        JUMP("jump flushes"),
+        MEMORY("memory stalls");
+
+        private final String description;
+
+        Stall(String description) {
+            this.description = description;
+        }
+    }
+
+    private static final int FIRST_EX_CYCLE = 3;
+    private static final int DRAIN_CYCLES = 2;          // MEM and WB of the last instruction
+
+    private final boolean forwarding;
+    private final BranchUnit branchUnit;
+    private final long[] ready = new long[32];          // first EX cycle that can use each register
+    private final boolean[] loaded = new boolean[32];   // the register's last producer was a load
+    private final long[] stalls = new long[Stall.values().length];
+    private long exCycle;                               // EX cycle of the last instruction
+    private long instructions;
+    private int pendingPenalty;                         // control bubbles before the next instruction
+    private Stall pendingCause;
+    private int pendingMemory;                          // cache miss cycles of the next instruction
+    private boolean modelsMemory;                       // memoryStall() has been called
+
+    public TimingModel(boolean forwarding) {
+        this(forwarding, new BranchUnit());
+    }
+
+    public TimingModel(boolean forwarding, BranchUnit branchUnit) {
+        this.forwarding = forwarding;
+        this.branchUnit = branchUnit;
+    }
+
+    // Model chosen with -Dsimulator.timing, or null if it is unset or "off"
+    public static TimingModel fromProperty() {
+        String mode = System.getProperty(PROPERTY, "off");
+        switch (mode) {
+            case "off":
+                return null;
+            case "on":
+                return new TimingModel(true, BranchUnit.fromProperty());
+            case "noforward":
+                return new TimingModel(false, BranchUnit.fromProperty());
+            default:
+                Log.EXEC.error("ERROR: Unknown " + PROPERTY + " mode " + mode + ", timing model off");
+                return null;
+        }
+    }
+
+    // Cache miss cycles of the instruction about to be retired
+    public void memoryStall(int cycles) {
+        pendingMemory += cycles;
+        modelsMemory = true;
+    }
+
+    // Account for one retired instruction; nextPc is the pc after it executed
+    public void retire(int programCounter, DecodedInstruction decoded, int nextPc) {
+        long cycle = instructions == 0 ? FIRST_EX_CYCLE : exCycle + 1;
+        if (pendingPenalty > 0) {
+            cycle += pendingPenalty;
+            stalls[pendingCause.ordinal()] += pendingPenalty;
+            pendingPenalty = 0;
+        }
+        if (pendingMemory > 0) {
+            cycle += pendingMemory;
+            stalls[Stall.MEMORY.ordinal()] += pendingMemory;
+            pendingMemory = 0;
+        }
+
+        Opcode opcode = decoded.opcode;
+        long operandsReady = 0;
+        boolean fromLoad = false;
+        if (opcode.readsRs1() && decoded.rs1 != 0) {
+            operandsReady = ready[decoded.rs1];
+            fromLoad = loaded[decoded.rs1];
+        }
+        if (opcode.readsRs2() && decoded.rs2 != 0 && ready[decoded.rs2] > operandsReady) {
+            operandsReady = ready[decoded.rs2];
+            fromLoad = loaded[decoded.rs2];
+        }
+        if (operandsReady > cycle) {
+            stalls[(fromLoad && forwarding ? Stall.LOAD_USE : Stall.DATA).ordinal()] += operandsReady - cycle;
+            cycle = operandsReady;
+        }
+        exCycle = cycle;
+        instructions++;
+
+        if (decoded.rd != 0 && opcode.writesRd()) {
+            boolean load = opcode.isLoad();
+            ready[decoded.rd] = cycle + (!forwarding ? 3 : load ? 2 : 1);
+            loaded[decoded.rd] = load;
+        }
+
+        pendingPenalty = branchUnit.resolve(programCounter, decoded, nextPc);
+        pendingCause = opcode.isBranch() ? Stall.BRANCH : Stall.JUMP;
+    }
+
+    public void reset() {
+        Arrays.fill(ready, 0);
+        Arrays.fill(loaded, false);
+        Arrays.fill(stalls, 0);
+        exCycle = 0;
+        instructions = 0;
+        pendingPenalty = 0;
+        pendingMemory = 0;
+        branchUnit.reset();
+    }
+
+    public long getInstructions() {
+        return instructions;
+    }
+
+    public long getCycles() {
+        return instructions == 0 ? 0 : exCycle + DRAIN_CYCLES;
+    }
+
+    public double getCpi() {
+        return instructions == 0 ? 0 : (double) getCycles() / instructions;
+    }
+
+    public long getStalls(Stall cause) {
+        return stalls[cause.ordinal()];
+    }
+
+    public BranchUnit getBranchUnit() {
+        return branchUnit;
+    }
+
+    public boolean hasForwarding() {
+        return forwarding;
+    }
+
+    @Override
+    public String toString() {
+        long cycles = getCycles();
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.ROOT, "5-stage pipeline (%s): %d instructions, %d cycles, CPI %.3f%n",
+                forwarding ? "forwarding" : "no forwarding", instructions, cycles, getCpi()));
+        report.append(String.format(Locale.ROOT, "  %-18s %d%n", "pipeline fill", instructions == 0 ? 0 : FIRST_EX_CYCLE + DRAIN_CYCLES - 1));
+        for (Stall cause : Stall.values()) {
+            if (cause == Stall.MEMORY && !modelsMemory) {
+                continue;
+            }
+            long lost = stalls[cause.ordinal()];
+            report.append(String.format(Locale.ROOT, "  %-18s %d (%.1f%% of cycles)%n", cause.description, lost,
+                    cycles == 0 ? 0 : 100.0 * lost / cycles));
+        }
+        report.append(branchUnit);
+        return report.toString();
+    }
+}
@@ -0,0 +1,17 @@
+package processor;
+
+import java.io.IOException;
+
+// Receives every retired instruction from the Pipeline. Sinks decide whether and
+// when to turn the decoded instruction into text, so execution itself builds none.
+public interface TraceSink {
+    // rdValue is the value of the rd register after the instruction retired; it is
+    // only meaningful when instruction.opcode.writesRd()
+    void record(int programCounter, DecodedInstruction instruction, int rdValue) throws IOException;
+
+    // Push any buffered records to their destination
+    void flush() throws IOException;
+
+    // Flush and release the destination. Closing twice is allowed.
+    void close() throws IOException;
+}
@@ -0,0 +1,121 @@
+package processor;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+// Offline companion for binary traces: converts them to the .asm text layout,
+// optionally keeping only a pc range.
+//
+//   java processor.TraceTool <trace> [-o out.asm] [--from addr] [--to addr] [--values]
+//
+// --from is inclusive and --to exclusive; addresses may be hex (0x...) or decimal.
+// --values appends each rd writeback, e.g. "  # x5 = 5".
+public class TraceTool {
+
+    public static void main(String[] args) throws IOException {
+        String traceFile = null;
+        String outputFile = null;
+        long from = 0;
+        long to = 1L << 32;
+        boolean values = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-o":
+                    outputFile = argument(args, ++i);
+                    break;
+                case "--from":
+                    from = address(argument(args, ++i));
+                    break;
+                case "--to":
+                    to = address(argument(args, ++i));
+                    break;
+                case "--values":
+                    values = true;
+                    break;
+                default:
+                    if (traceFile != null || args[i].startsWith("-")) {
+                        usage("Unexpected argument: " + args[i]);
+                    }
+                    traceFile = args[i];
+                    break;
+            }
+        }
+        if (traceFile == null) {
+            usage("No trace file given");
+        }
+
+        Writer output = outputFile == null
+                ? new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16)
+                : new BufferedWriter(new FileWriter(outputFile), 1 << 16);
+        try (BinaryTraceReader reader = new BinaryTraceReader(traceFile)) {
+            long written = convert(reader, output, from, to, values);
+            output.flush();
+            if (outputFile != null) {
+                System.out.println("Wrote " + written + " of " + reader.getRecordCount() + " records to " + outputFile);
+            }
+        } finally {
+            if (outputFile != null) {
+                output.close();
+            }
+        }
+    }
+
+    // Write every record with from <= pc < to in the .asm layout; returns the number written
+    public static long convert(BinaryTraceReader reader, Writer output, long from, long to, boolean values)
+            throws IOException {
+        StringBuilder line = new StringBuilder(80);
+        long written = 0;
+        output.write("Address     Code        Basic\n");
+        while (reader.next()) {
+            long pc = Integer.toUnsignedLong(reader.getProgramCounter());
+            if (pc < from || pc >= to) {
+                continue;
+            }
+            line.setLength(0);
+            Disassembler.appendHex(line, reader.getProgramCounter());
+            line.append("  ");
+            Disassembler.appendHex(line, reader.getInstruction().instruction);
+            line.append("  ");
+            Disassembler.appendTo(line, reader.getInstruction());
+            if (values && reader.writesRd()) {
+                line.append("  # x").append(reader.getInstruction().rd).append(" = ").append(reader.getRdValue());
+            }
+            line.append('\n');
+            output.append(line);
+            written++;
+        }
+        return written;
+    }
+
+    private static String argument(String[] args, int index) {
+        if (index >= args.length) {
+            usage("Missing value for " + args[index - 1]);
+        }
+        return args[index];
+    }
+
+    private static long address(String text) {
+        try {
+            long value = text.startsWith("0x") || text.startsWith("0X")
+                    ? Long.parseLong(text.substring(2), 16)
+                    : Long.parseLong(text);
+            if (value < 0 || value > 1L << 32) {
+                usage("Address out of range: " + text);
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            usage("Invalid address: " + text);
+            return 0;
+        }
+    }
+
+    private static void usage(String problem) {
+        System.err.println("ERROR: " + problem);
+        System.err.println("Usage: java processor.TraceTool <trace> [-o out.asm] [--from addr] [--to addr] [--values]");
+        System.exit(1);
+    }
+}
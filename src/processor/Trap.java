@@ -0,0 +1,73 @@
+package processor;
+
+import java.util.Locale;
+
+// Synchronous exception raised while fetching or executing an instruction, e.g. a
+// page fault from the Mmu. The instruction has no effect; Pipeline enters the
+// supervisor trap handler (see Csrs) or stops the program if there is none.
+// Traps are rare and caught right away, so they carry no stack trace.
+public class Trap extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    // scause exception codes
+    public static final int ILLEGAL_INSTRUCTION = 2;
+    public static final int BREAKPOINT = 3;
+    public static final int LOAD_ADDRESS_MISALIGNED = 4;
+    public static final int STORE_ADDRESS_MISALIGNED = 6;
+    public static final int ECALL_FROM_USER = 8;
+    public static final int ECALL_FROM_SUPERVISOR = 9;
+    public static final int INSTRUCTION_PAGE_FAULT = 12;
+    public static final int LOAD_PAGE_FAULT = 13;
+    public static final int STORE_PAGE_FAULT = 15;
+
+    private final int code;
+    private final int value;    // stval: the faulting address or instruction, or 0
+
+    public Trap(int code, int value) {
+        super(describe(code, value), null, false, false);
+        this.code = code;
+        this.value = value;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    private static String describe(int code, int value) {
+        String name;
+        switch (code) {
+            case ILLEGAL_INSTRUCTION:
+                return value == 0 ? "illegal instruction" : String.format(Locale.ROOT, "illegal instruction 0x%08x", value);
+            case ECALL_FROM_USER:
+                return "environment call from user mode";
+            case ECALL_FROM_SUPERVISOR:
+                return "environment call from supervisor mode";
+            case BREAKPOINT:
+                name = "breakpoint";
+                break;
+            case LOAD_ADDRESS_MISALIGNED:
+                name = "misaligned load";
+                break;
+            case STORE_ADDRESS_MISALIGNED:
+                name = "misaligned store";
+                break;
+            case INSTRUCTION_PAGE_FAULT:
+                name = "instruction page fault";
+                break;
+            case LOAD_PAGE_FAULT:
+                name = "load page fault";
+                break;
+            case STORE_PAGE_FAULT:
+                name = "store page fault";
+                break;
+            default:
+                name = "exception " + code;
+        }
+        return String.format(Locale.ROOT, "%s at 0x%08x", name, value);
+    }
+}
@@ -58,6 +58,15 @@ public class Utility {
         return binaryString.substring(binaryString.length() - 32);
     }
 
+    // Value of the command-line flag at args[index]. Callers step over the value
+    // with flagValue(args, i++).
+    public static String flagValue(String[] args, int index) {
+        if (index + 1 >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[index]);
+        }
+        return args[index + 1];
+    }
+
     public static void main(String[] args) {
         System.out.println("leftPad with a 0: " + leftPad("0111"));
         System.out.println("leftPad with a 1: " + leftPad("1001"));
@@ -0,0 +1,189 @@
+package processor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Runs what-if continuations of one machine in parallel. Every variant starts from
+// a copy-on-write fork of the same snapshot, changes its own registers or data
+// memory, then runs on a thread pool until it stops or reaches the step limit.
+// Forks share all pages they do not write, so each continuation only costs the
+// pages it touches. Each Outcome keeps its fork's memory; release() it once read,
+// or the snapshot keeps copying the pages it shares before writing them. The
+// console log is shared by all threads, so run with -Dsimulator.log=off (or
+// exec=off) to keep the per-instruction echo quiet.
+public class WhatIfExplorer {
+
+    // Changes made to a fork before it runs
+    @FunctionalInterface
+    public interface Variant {
+        void apply(Registers registers, Memory memory);
+
+        static Variant register(int register, int value) {
+            return (registers, memory) -> registers.setInt(register, value);
+        }
+
+        static Variant word(int address, int value) {
+            return (registers, memory) -> memory.storeWord(address, value);
+        }
+
+        default Variant andThen(Variant next) {
+            return (registers, memory) -> {
+                apply(registers, memory);
+                next.apply(registers, memory);
+            };
+        }
+    }
+
+    // Final state of one continuation
+    public static final class Outcome {
+        public final int variant;           // index in the list given to explore()
+        public final Simulator.Stop stop;   // LIMIT if the step limit was reached, null on an error
+        public final long instructions;     // retired by this continuation
+        public final int pc;
+        public final int[] registers;       // x0..x31
+        public final int[] dirtyPages;      // pages written since the snapshot
+        public final Throwable error;       // set if the continuation threw
+        private final Memory memory;
+
+        private Outcome(int variant, Simulator.Stop stop, long instructions, Registers registers,
+                        Memory memory, Throwable error) {
+            this.variant = variant;
+            this.stop = stop;
+            this.instructions = instructions;
+            this.pc = registers.getPc();
+            this.registers = new int[32];
+            for (int i = 0; i < 32; i++) {
+                this.registers[i] = registers.getInt(i);
+            }
+            this.dirtyPages = memory.dirtyPageAddresses();
+            this.error = error;
+            this.memory = memory;
+        }
+
+        public boolean halted() {
+            return stop == Simulator.Stop.HALT;
+        }
+
+        // Memory as this continuation left it
+        public int loadWord(int address) {
+            return memory.loadWord2(address);
+        }
+
+        public void readPage(int address, byte[] page) {
+            memory.readPage(address, page);
+        }
+
+        // Done with this continuation's memory, which loadWord and readPage must not
+        // use afterwards. Once every outcome is released the snapshot owns its pages
+        // again.
+        public void release() {
+            memory.release();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder result = new StringBuilder("variant ").append(variant)
+                    .append(error != null ? ": error " + error : ": " + stop.name().toLowerCase(Locale.ROOT))
+                    .append(" after ").append(instructions).append(" instructions, pc ");
+            Disassembler.appendHex(result, pc);
+            for (int i = 1; i < 32; i++) {
+                if (registers[i] != 0) {
+                    result.append(", x").append(i).append(" = ").append(registers[i]);
+                }
+            }
+            result.append(", ").append(dirtyPages.length).append(" dirty pages");
+            return result.toString();
+        }
+    }
+
+    private final Pipeline snapshot;
+    private final int threads;
+
+    // The snapshot must use heap Memory, mapped memory cannot be forked
+    public WhatIfExplorer(Pipeline snapshot, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+        if (!snapshot.getMemory().canFork()) {
+            throw new IllegalArgumentException("The snapshot's memory cannot be forked, use heap Memory");
+        }
+        this.snapshot = snapshot;
+        this.threads = threads;
+    }
+
+    public WhatIfExplorer(Pipeline snapshot) {
+        this(snapshot, Runtime.getRuntime().availableProcessors());
+    }
+
+    // Run every variant from the snapshot for at most stepLimit steps. A step runs
+    // one instruction or takes one trap, so a trap loop that never retires anything
+    // still ends. Outcomes are in the order of variants. The snapshot itself is left
+    // unchanged. The caller releases each outcome; if explore() throws, it releases
+    // the forks itself.
+    public List<Outcome> explore(List<Variant> variants, long stepLimit) throws InterruptedException {
+        // Forking updates the snapshot's page ownership, so all forks are taken here
+        // before any continuation starts
+        List<Pipeline> forks = new ArrayList<>(variants.size());
+        for (int i = 0; i < variants.size(); i++) {
+            forks.add(snapshot.fork());
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, variants.size())), runnable -> {
+            Thread thread = new Thread(runnable, "what-if");
+            thread.setDaemon(true);
+            return thread;
+        });
+        boolean returned = false;
+        try {
+            List<Future<Outcome>> futures = new ArrayList<>(variants.size());
+            for (int i = 0; i < variants.size(); i++) {
+                int index = i;
+                futures.add(pool.submit(() -> run(index, forks.get(index), variants.get(index), stepLimit)));
+            }
+            List<Outcome> outcomes = new ArrayList<>(variants.size());
+            for (Future<Outcome> future : futures) {
+                try {
+                    outcomes.add(future.get());
+                } catch (ExecutionException e) {
+                    // run() reports its own failures, so this is a bug in the pool itself
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            returned = true;
+            return outcomes;
+        } finally {
+            pool.shutdownNow();
+            if (!returned) {
+                for (Pipeline fork : forks) {
+                    fork.release();
+                }
+            }
+        }
+    }
+
+    private static Outcome run(int index, Pipeline fork, Variant variant, long stepLimit) {
+        long start = fork.getInstructionsRetired();
+        Simulator.Stop stop = Simulator.Stop.LIMIT;
+        Throwable error = null;
+        try {
+            variant.apply(fork.getRegisters(), fork.getMemory());
+            for (long step = 0; step < stepLimit; step++) {
+                if (!fork.runNextInstruction()) {
+                    stop = fork.getStopReason();
+                    break;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            error = e;
+            stop = null;
+        }
+        return new Outcome(index, stop, fork.getInstructionsRetired() - start,
+                fork.getRegisters(), fork.getMemory(), error);
+    }
+}
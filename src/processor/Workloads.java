@@ -0,0 +1,403 @@
+package processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+// Guest workloads for judging simulator speed, long enough to measure (millions
+// of instructions) and bundled as .dat files in input_files/workloads:
+//   intloop    ALU-only loop: add, xor, shifts, logic
+//   memcpy     fills 64 KiB, then copies it 32 times with unrolled lw/sw
+//   branchy    xorshift random numbers driving unpredictable branches
+//   sort       insertion sort of 1024 random words; a0 = out-of-order pairs (0)
+//   crc        bitwise CRC-32 of crc_data.dat, 8 passes; a0 = the CRC
+// Every program leaves its result in a0 (x10) and halts on the zero word after it.
+// The runner loads each workload, runs it --warmup times, then --repeat timed
+// runs, and reports guest MIPS, host ns per instruction and bytes allocated per
+// instruction. --generate rewrites the .dat files from the programs below.
+//
+//   java processor.Workloads [--dir <dir>] [--warmup <n>] [--repeat <n>] [--format csv|json]
+//   java processor.Workloads --generate <dir>
+public final class Workloads {
+
+    public static final String[] NAMES = {"intloop", "memcpy", "branchy", "sort", "crc"};
+    public static final String CSV_HEADER = "workload,instret,ns,mips,ns_per_instr,bytes_per_instr,a0";
+
+    private static final int DATA_ADDRESS = Integer.parseUnsignedInt(Utility.DATA_MEMORY_ADDRESS, 2);
+    private static final int CRC_DATA_BYTES = 4096;
+    private static final int CRC_POLYNOMIAL = 0xEDB88320;    // reflected CRC-32
+
+    private Workloads() {
+    }
+
+    // Instruction words with addresses from 0, for building branches by address
+    private static final class Program {
+        private int[] words = new int[64];
+        private int size;
+
+        int here() {
+            return size * 4;
+        }
+
+        void emit(int... instructions) {
+            for (int instruction : instructions) {
+                if (size == words.length) {
+                    words = Arrays.copyOf(words, size * 2);
+                }
+                words[size++] = instruction;
+            }
+        }
+
+        // Leave room for a forward branch, filled in by patch()
+        int reserve() {
+            int address = here();
+            emit(0);
+            return address;
+        }
+
+        void patch(int address, int instruction) {
+            words[address / 4] = instruction;
+        }
+
+        int[] words() {
+            return Arrays.copyOf(words, size);
+        }
+    }
+
+    // x = xorshift32(x), using scratch
+    private static void xorshift(Program p, int x, int scratch) {
+        p.emit(Encoder.slli(scratch, x, 13), Encoder.xor(x, x, scratch),
+                Encoder.srli(scratch, x, 17), Encoder.xor(x, x, scratch),
+                Encoder.slli(scratch, x, 5), Encoder.xor(x, x, scratch));
+    }
+
+    static int[] intloop() {
+        Program p = new Program();
+        p.emit(Encoder.li(5, 1_000_000));
+        p.emit(Encoder.addi(6, 0, 1));
+        int loop = p.here();
+        p.emit(Encoder.add(10, 10, 6),
+                Encoder.xor(7, 10, 5),
+                Encoder.slli(8, 7, 3),
+                Encoder.srli(9, 8, 5),
+                Encoder.sub(10, 10, 9),
+                Encoder.addi(6, 6, 3),
+                Encoder.andi(11, 6, 255),
+                Encoder.or(10, 10, 11),
+                Encoder.addi(5, 5, -1));
+        p.emit(Encoder.bne(5, 0, loop - p.here()));
+        return p.words();
+    }
+
+    static int[] memcpy() {
+        int words = 16 * 1024;
+        Program p = new Program();
+        // Fill the source with a changing pattern
+        p.emit(Encoder.li(12, DATA_ADDRESS));
+        p.emit(Encoder.li(5, words));
+        p.emit(Encoder.li(6, 0x01234567));
+        int fill = p.here();
+        p.emit(Encoder.sw(6, 12, 0), Encoder.addi(6, 6, 273), Encoder.addi(12, 12, 4), Encoder.addi(5, 5, -1));
+        p.emit(Encoder.bne(5, 0, fill - p.here()));
+
+        p.emit(Encoder.addi(20, 0, 32));
+        int pass = p.here();
+        p.emit(Encoder.li(12, DATA_ADDRESS));
+        p.emit(Encoder.li(13, DATA_ADDRESS + words * 4));
+        p.emit(Encoder.li(5, words / 4));
+        int copy = p.here();
+        p.emit(Encoder.lw(6, 12, 0), Encoder.lw(7, 12, 4), Encoder.lw(8, 12, 8), Encoder.lw(9, 12, 12),
+                Encoder.sw(6, 13, 0), Encoder.sw(7, 13, 4), Encoder.sw(8, 13, 8), Encoder.sw(9, 13, 12),
+                Encoder.addi(12, 12, 16), Encoder.addi(13, 13, 16), Encoder.addi(5, 5, -1));
+        p.emit(Encoder.bne(5, 0, copy - p.here()));
+        p.emit(Encoder.addi(20, 20, -1));
+        p.emit(Encoder.bne(20, 0, pass - p.here()));
+        p.emit(Encoder.lw(10, 13, -4));
+        return p.words();
+    }
+
+    static int[] branchy() {
+        Program p = new Program();
+        p.emit(Encoder.li(5, 500_000));
+        p.emit(Encoder.li(6, 0x2545F491));
+        int loop = p.here();
+        xorshift(p, 6, 7);
+        p.emit(Encoder.andi(8, 6, 1));
+        int skipOdd = p.reserve();
+        p.emit(Encoder.addi(10, 10, 1));
+        p.patch(skipOdd, Encoder.beq(8, 0, p.here() - skipOdd));
+        p.emit(Encoder.andi(8, 6, 2));
+        int skipTwo = p.reserve();
+        p.emit(Encoder.addi(10, 10, -3));
+        p.patch(skipTwo, Encoder.bne(8, 0, p.here() - skipTwo));
+        int negative = p.reserve();
+        p.emit(Encoder.addi(11, 11, 1));
+        int join = p.reserve();
+        p.patch(negative, Encoder.blt(6, 0, p.here() - negative));
+        p.emit(Encoder.addi(12, 12, 1));
+        p.patch(join, Encoder.jal(0, p.here() - join));
+        p.emit(Encoder.sltu(9, 6, 5), Encoder.add(10, 10, 9), Encoder.addi(5, 5, -1));
+        p.emit(Encoder.bne(5, 0, loop - p.here()));
+        return p.words();
+    }
+
+    static int[] sort() {
+        int count = 1024;
+        Program p = new Program();
+        // Fill the array with xorshift numbers
+        p.emit(Encoder.li(12, DATA_ADDRESS));
+        p.emit(Encoder.li(14, DATA_ADDRESS + count * 4));
+        p.emit(Encoder.li(6, 0x1B873593));
+        p.emit(Encoder.addi(15, 12, 0));
+        int fill = p.here();
+        xorshift(p, 6, 7);
+        p.emit(Encoder.sw(6, 15, 0), Encoder.addi(15, 15, 4));
+        p.emit(Encoder.blt(15, 14, fill - p.here()));
+
+        // Insertion sort: x15 points at the key, x17 walks down the sorted part
+        p.emit(Encoder.addi(15, 12, 4));
+        int outer = p.here();
+        p.emit(Encoder.lw(16, 15, 0), Encoder.addi(17, 15, -4));
+        int inner = p.here();
+        int done = p.reserve();
+        p.emit(Encoder.lw(18, 17, 0));
+        int inPlace = p.reserve();
+        p.emit(Encoder.sw(18, 17, 4), Encoder.addi(17, 17, -4));
+        p.emit(Encoder.jal(0, inner - p.here()));
+        p.patch(done, Encoder.blt(17, 12, p.here() - done));
+        p.patch(inPlace, Encoder.bge(16, 18, p.here() - inPlace));
+        p.emit(Encoder.sw(16, 17, 4), Encoder.addi(15, 15, 4));
+        p.emit(Encoder.blt(15, 14, outer - p.here()));
+
+        // a0 = number of neighbours out of order
+        p.emit(Encoder.addi(15, 12, 4));
+        int check = p.here();
+        p.emit(Encoder.lw(6, 15, -4), Encoder.lw(7, 15, 0), Encoder.slt(8, 7, 6), Encoder.add(10, 10, 8),
+                Encoder.addi(15, 15, 4));
+        p.emit(Encoder.blt(15, 14, check - p.here()));
+        return p.words();
+    }
+
+    static int[] crc() {
+        Program p = new Program();
+        p.emit(Encoder.li(12, DATA_ADDRESS));
+        p.emit(Encoder.li(28, CRC_POLYNOMIAL));
+        p.emit(Encoder.addi(20, 0, 8));
+        int pass = p.here();
+        p.emit(Encoder.addi(10, 0, -1), Encoder.addi(14, 12, 0));
+        p.emit(Encoder.li(15, CRC_DATA_BYTES));
+        int nextByte = p.here();
+        p.emit(Encoder.lbu(6, 14, 0), Encoder.xor(10, 10, 6), Encoder.addi(7, 0, 8));
+        int bit = p.here();
+        p.emit(Encoder.andi(8, 10, 1), Encoder.srli(10, 10, 1));
+        int skip = p.reserve();
+        p.emit(Encoder.xor(10, 10, 28));
+        p.patch(skip, Encoder.beq(8, 0, p.here() - skip));
+        p.emit(Encoder.addi(7, 7, -1));
+        p.emit(Encoder.bne(7, 0, bit - p.here()));
+        p.emit(Encoder.addi(14, 14, 1), Encoder.addi(15, 15, -1));
+        p.emit(Encoder.bne(15, 0, nextByte - p.here()));
+        p.emit(Encoder.xori(10, 10, -1), Encoder.addi(20, 20, -1));
+        p.emit(Encoder.bne(20, 0, pass - p.here()));
+        return p.words();
+    }
+
+    static int[] program(String name) {
+        switch (name) {
+            case "intloop":
+                return intloop();
+            case "memcpy":
+                return memcpy();
+            case "branchy":
+                return branchy();
+            case "sort":
+                return sort();
+            case "crc":
+                return crc();
+            default:
+                throw new IllegalArgumentException("Unknown workload " + name);
+        }
+    }
+
+    static byte[] crcData() {
+        byte[] data = new byte[CRC_DATA_BYTES];
+        new Random(2024).nextBytes(data);
+        return data;
+    }
+
+    // Write <name>.dat for every workload and crc_data.dat into directory
+    static void generate(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        for (String name : NAMES) {
+            int[] words = program(name);
+            byte[] bytes = new byte[words.length * 4];
+            for (int i = 0; i < words.length; i++) {
+                for (int b = 0; b < 4; b++) {
+                    bytes[i * 4 + b] = (byte) (words[i] >>> (8 * b));
+                }
+            }
+            writeDat(directory.resolve(name + ".dat"), bytes);
+        }
+        writeDat(directory.resolve("crc_data.dat"), crcData());
+    }
+
+    private static void writeDat(Path file, byte[] bytes) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            for (byte b : bytes) {
+                out.write(Utility.leftPadSigned(b & 0xFF).substring(24));
+                out.write('\n');
+            }
+        }
+    }
+
+    // a0 a workload must finish with, or null if it is only a checksum
+    private static Integer expectedResult(String name) {
+        switch (name) {
+            case "sort":
+                return 0;
+            case "crc":
+                CRC32 crc = new CRC32();
+                crc.update(crcData());
+                return (int) crc.getValue();
+            default:
+                return null;
+        }
+    }
+
+    static final class Measurement {
+        final String workload;
+        final long instructions;
+        final long nanos;               // median of the timed runs
+        final double bytesPerInstruction;
+        final int result;               // a0
+
+        Measurement(String workload, long instructions, long nanos, double bytesPerInstruction, int result) {
+            this.workload = workload;
+            this.instructions = instructions;
+            this.nanos = nanos;
+            this.bytesPerInstruction = bytesPerInstruction;
+            this.result = result;
+        }
+
+        double mips() {
+            return nanos == 0 ? 0 : instructions * 1e3 / nanos;
+        }
+
+        double nanosPerInstruction() {
+            return instructions == 0 ? 0 : (double) nanos / instructions;
+        }
+
+        String toCsv() {
+            return String.format(Locale.ROOT, "%s,%d,%d,%.3f,%.3f,%.4f,0x%08x", workload, instructions, nanos,
+                    mips(), nanosPerInstruction(), bytesPerInstruction, result);
+        }
+
+        String toJson() {
+            return String.format(Locale.ROOT, "{\"workload\":\"%s\",\"instret\":%d,\"ns\":%d,\"mips\":%.3f,"
+                            + "\"ns_per_instr\":%.3f,\"bytes_per_instr\":%.4f,\"a0\":\"0x%08x\"}", workload, instructions,
+                    nanos, mips(), nanosPerInstruction(), bytesPerInstruction, result);
+        }
+    }
+
+    static Measurement measure(Simulator simulator, Path directory, String name, int warmup, int repeat)
+            throws IOException {
+        String program = directory.resolve(name + ".dat").toString();
+        Path data = directory.resolve(name + "_data.dat");
+        String dataFile = Files.exists(data) ? data.toString() : "";
+        long[] nanos = new long[repeat];
+        long allocated = 0;
+        long instructions = 0;
+        for (int run = -warmup; run < repeat; run++) {
+            simulator.load(program, dataFile);
+            long bytesBefore = Benchmarks.allocatedBytes();
+            long start = System.nanoTime();
+            Simulator.Stop stop = simulator.run();
+            long elapsed = System.nanoTime() - start;
+            long bytes = Benchmarks.allocatedBytes() - bytesBefore;
+            if (stop != Simulator.Stop.HALT) {
+                throw new IOException(program + " stopped with " + stop + " at " + Disassembler.hex(simulator.getRegisters().getPc()));
+            }
+            if (run >= 0) {
+                nanos[run] = elapsed;
+                allocated += bytes;
+                instructions = simulator.getInstructionsRetired();
+            }
+        }
+        Arrays.sort(nanos);
+        int result = simulator.getRegisters().getInt(10);
+        double bytesPerInstruction = Benchmarks.allocatedBytes() < 0 ? -1 : (double) allocated / ((double) instructions * repeat);
+        return new Measurement(name, instructions, nanos[repeat / 2], bytesPerInstruction, result);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Paths.get("src/processor/input_files/workloads");
+        int warmup = 3;
+        int repeat = 5;
+        boolean json = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--generate":
+                        Path output = Paths.get(Utility.flagValue(args, i++));
+                        generate(output);
+                        System.out.println("Wrote " + NAMES.length + " workloads to " + output);
+                        return;
+                    case "--dir":
+                        directory = Paths.get(Utility.flagValue(args, i++));
+                        break;
+                    case "--warmup":
+                        warmup = Integer.parseInt(Utility.flagValue(args, i++));
+                        break;
+                    case "--repeat":
+                        repeat = Math.max(1, Integer.parseInt(Utility.flagValue(args, i++)));
+                        break;
+                    case "--format":
+                        String format = Utility.flagValue(args, i++);
+                        if (!format.equals("json") && !format.equals("csv")) {
+                            throw new IllegalArgumentException("Unknown format " + format);
+                        }
+                        json = format.equals("json");
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unexpected argument " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("ERROR: " + e.getMessage());
+            System.err.println("Usage: [--dir <dir>] [--warmup <n>] [--repeat <n>] [--format csv|json] | --generate <dir>");
+            System.exit(2);
+        }
+
+        if (System.getProperty(Log.PROPERTY) == null) {
+            Log.setAll(Log.Level.OFF);
+        }
+        if (!json) {
+            System.out.println(CSV_HEADER);
+        }
+        Simulator simulator = new Simulator();
+        List<String> failures = new ArrayList<>();
+        for (String name : NAMES) {
+            Measurement measurement = measure(simulator, directory, name, warmup, repeat);
+            System.out.println(json ? measurement.toJson() : measurement.toCsv());
+            Integer expected = expectedResult(name);
+            if (expected != null && expected != measurement.result) {
+                failures.add(String.format("%s: a0 is 0x%08x, expected 0x%08x", name, measurement.result, expected));
+            }
+        }
+        for (String failure : failures) {
+            System.err.println("ERROR: " + failure);
+        }
+        if (!failures.isEmpty()) {
+            System.exit(1);
+        }
+    }
+}